@@ -0,0 +1,384 @@
+package nl.praegus.fitnesse.responders.benchmark;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+import fitnesse.FitNesseContext;
+import fitnesse.http.MockRequest;
+import fitnesse.http.MockResponseSender;
+import fitnesse.http.Response;
+import fitnesse.testutil.FitNesseUtil;
+import fitnesse.wiki.PageData;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.WikiPage;
+import fitnesse.wiki.WikiPageUtil;
+import fitnesse.wiki.fs.FileSystemPageFactory;
+import nl.praegus.fitnesse.responders.AutoCompleteResponder;
+import nl.praegus.fitnesse.responders.cache.ClassLoaderPool;
+import nl.praegus.fitnesse.responders.stats.ResponderStats;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives concurrent autocomplete requests against an in-process FitNesse context over a generated wiki, like a team
+ * editing test pages at the same time, and reports throughput, latency percentiles per kind of request, garbage
+ * collection, open file descriptors and pooled class loaders. Every suite has a fixture jar of its own, so each suite
+ * is a different classpath. Options are given as {@code name=value}, see {@link Options}.
+ */
+
+public final class LoadTest {
+    private static final String[] KINDS = {"full", "summary", "query", "class", "edit"};
+    private static final String EDIT_MARKER = "\n|$edit";
+
+    private final Options options;
+    private final List<String> pages = new ArrayList<>();
+    private final Map<String, Latencies> latencies = new LinkedHashMap<>();
+    private final AtomicInteger remaining;
+    private FitNesseContext context;
+
+    private LoadTest(Options options) {
+        this.options = options;
+        this.remaining = new AtomicInteger(options.requests);
+        for (String kind : KINDS) {
+            latencies.put(kind, new Latencies());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest(Options.parse(args)).run();
+        // class loader pool and scan workers are not daemons
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        System.out.println("Load test: " + options);
+        createWiki(Files.createTempDirectory("autocomplete-load").toFile());
+
+        long[] gcBefore = gcCountAndTime();
+        long fdsBefore = openFileDescriptors();
+        long start = System.nanoTime();
+        ExecutorService testers = Executors.newFixedThreadPool(options.threads);
+        List<Future<?>> running = new ArrayList<>();
+        for (int t = 0; t < options.threads; t++) {
+            Random random = new Random(options.seed + t);
+            running.add(testers.submit(() -> test(random)));
+        }
+        for (Future<?> tester : running) {
+            tester.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        testers.shutdown();
+
+        report(elapsed, gcBefore, fdsBefore);
+    }
+
+    private void createWiki(File directory) throws Exception {
+        context = FitNesseUtil.makeTestContext(new FileSystemPageFactory(), directory.getPath(), "FitNesseRoot", 1999);
+        WikiPage root = context.getRootPage();
+        for (int s = 0; s < options.suites; s++) {
+            File jar = SyntheticFixtures.jar(new File(directory, "fixtures" + s), options.classes, options.methods);
+            String suite = "LoadSuite" + s;
+            WikiPageUtil.addPage(root, PathParser.parse(suite), "!define TEST_SYSTEM {slim}\n");
+            WikiPageUtil.addPage(root, PathParser.parse(suite + ".ScenarioLibrary"),
+                    SyntheticFixtures.scenarioLibrary(options.scenarios, options.templates));
+            for (int p = 0; p < options.pages; p++) {
+                String path = suite + ".TestPage" + p;
+                WikiPage page = WikiPageUtil.addPage(root, PathParser.parse(path), SyntheticFixtures.testPage(jar));
+                PageData data = page.getData();
+                data.setAttribute("Test", "true");
+                page.commit(data);
+                pages.add(path);
+            }
+        }
+    }
+
+    private Void test(Random random) throws Exception {
+        while (remaining.getAndDecrement() > 0) {
+            String kind = options.pickKind(random);
+            String path = pages.get(random.nextInt(pages.size()));
+            long start = System.nanoTime();
+            long bytes;
+            try {
+                bytes = request(kind, path, random);
+            } catch (Exception e) {
+                latencies.get(kind).failed(kind, e);
+                continue;
+            }
+            latencies.get(kind).record(System.nanoTime() - start, bytes);
+        }
+        return null;
+    }
+
+    private long request(String kind, String path, Random random) throws Exception {
+        MockRequest request = new MockRequest();
+        request.setResource(path);
+        if (options.gzip) {
+            request.addHeader("Accept-Encoding", "gzip");
+        }
+        switch (kind) {
+            case "summary":
+                request.addInput("summary", "1");
+                break;
+            case "query":
+                request.addInput("q", "enter val" + random.nextInt(10));
+                break;
+            case "class":
+                request.addInput("class", SyntheticFixtures.PACKAGE + "."
+                        + SyntheticFixtures.className(random.nextInt(options.classes)));
+                break;
+            case "edit":
+                editPage(path, random.nextInt(1000));
+                break;
+            default:
+                break;
+        }
+
+        Response response = new AutoCompleteResponder().makeResponse(context, request);
+        CountingStream sent = new CountingStream();
+        new MockResponseSender(sent).doSending(response);
+        if (response.getStatus() != 200) {
+            throw new IllegalStateException("Status " + response.getStatus() + " for " + kind + " " + path);
+        }
+        return sent.count;
+    }
+
+    private void editPage(String path, int edit) {
+        synchronized (pages) {
+            WikiPage page = context.getRootPage().getPageCrawler().getPage(PathParser.parse(path));
+            PageData data = page.getData();
+            String content = data.getContent();
+            int edited = content.indexOf(EDIT_MARKER);
+            data.setContent((edited < 0 ? content : content.substring(0, edited))
+                    + EDIT_MARKER + edit + "=|enter value number 1 for http request|\n");
+            page.commit(data);
+        }
+    }
+
+    private void report(long elapsedNanos, long[] gcBefore, long fdsBefore) {
+        long[] gcAfter = gcCountAndTime();
+        int completed = 0;
+        System.out.println();
+        System.out.printf("%-8s %8s %7s %9s %9s %9s %9s %10s%n",
+                "kind", "requests", "errors", "p50 ms", "p95 ms", "p99 ms", "max ms", "avg bytes");
+        for (Map.Entry<String, Latencies> kind : latencies.entrySet()) {
+            Latencies l = kind.getValue();
+            completed += l.count();
+            if (l.count() + l.errors.get() > 0) {
+                System.out.printf("%-8s %8d %7d %9.1f %9.1f %9.1f %9.1f %10d%n", kind.getKey(), l.count(),
+                        l.errors.get(), l.percentile(50), l.percentile(95), l.percentile(99), l.percentile(100),
+                        l.averageBytes());
+            }
+        }
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%nthroughput: %.1f requests/s (%d in %.1f s, %d threads)%n", completed / seconds, completed,
+                seconds, options.threads);
+        System.out.printf("gc: %d collections, %d ms%n", gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("heap used: %d MB%n", (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+        System.out.printf("loaded classes: %d%n", ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+        ClassLoaderPool pool = ClassLoaderPool.getInstance();
+        System.out.printf("pooled class loaders: %d (%d evicted)%n", pool.size(), pool.getEvictionCount());
+        long fdsAfter = openFileDescriptors();
+        pool.clear();
+        System.out.printf("open file descriptors: %d before, %d after, %d after closing pooled class loaders%n",
+                fdsBefore, fdsAfter, openFileDescriptors());
+        System.out.println("responder stats: " + ResponderStats.getInstance().toJson());
+    }
+
+    private static long[] gcCountAndTime() {
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return new long[]{count, time};
+    }
+
+    private static long openFileDescriptors() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        return os instanceof UnixOperatingSystemMXBean ? ((UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount() : -1;
+    }
+
+    private static final class Latencies {
+        private final AtomicInteger errors = new AtomicInteger();
+        private final Set<Class<?>> failureTypes = ConcurrentHashMap.newKeySet();
+        private long[] nanos = new long[1024];
+        private int count;
+        private long bytes;
+
+        synchronized void record(long elapsed, long sent) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = elapsed;
+            bytes += sent;
+        }
+
+        /**
+         * Counts the failure, printing it when it is the first of its type for this kind of request.
+         */
+        void failed(String kind, Exception e) {
+            errors.incrementAndGet();
+            if (failureTypes.add(e.getClass())) {
+                System.err.println("First " + e.getClass().getName() + " for " + kind + " requests:");
+                e.printStackTrace();
+            }
+        }
+
+        synchronized int count() {
+            return count;
+        }
+
+        synchronized double percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))] / 1e6;
+        }
+
+        synchronized long averageBytes() {
+            return count == 0 ? 0 : bytes / count;
+        }
+    }
+
+    private static final class CountingStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    /**
+     * {@code threads} (50) testers send {@code requests} (2000) requests in total to {@code pages} (10) test pages in
+     * each of {@code suites} (4) suites, whose fixture jars have {@code classes} (100) classes of {@code methods} (20)
+     * methods and whose scenario libraries have {@code scenarios} (100) scenarios and {@code templates} (20) table
+     * templates. The kind of request is picked by weight: {@code mix} (full:40,summary:20,query:25,class:10,edit:5),
+     * where edit saves the page before asking for its full data. {@code gzip} (false) asks for compressed bodies.
+     */
+    static final class Options {
+        private int threads = 50;
+        private int requests = 2000;
+        private int suites = 4;
+        private int pages = 10;
+        private int classes = 100;
+        private int methods = 20;
+        private int scenarios = 100;
+        private int templates = 20;
+        private boolean gzip;
+        private long seed = 42;
+        private final Map<String, Integer> mix = new LinkedHashMap<>();
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            options.parseMix("full:40,summary:20,query:25,class:10,edit:5");
+            for (String arg : args) {
+                String[] nameValue = arg.split("=", 2);
+                if (nameValue.length != 2) {
+                    throw new IllegalArgumentException("Expected name=value instead of " + arg);
+                }
+                options.set(nameValue[0], nameValue[1]);
+            }
+            return options;
+        }
+
+        private void set(String name, String value) {
+            switch (name) {
+                case "threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "requests":
+                    requests = Integer.parseInt(value);
+                    break;
+                case "suites":
+                    suites = Integer.parseInt(value);
+                    break;
+                case "pages":
+                    pages = Integer.parseInt(value);
+                    break;
+                case "classes":
+                    classes = Integer.parseInt(value);
+                    break;
+                case "methods":
+                    methods = Integer.parseInt(value);
+                    break;
+                case "scenarios":
+                    scenarios = Integer.parseInt(value);
+                    break;
+                case "templates":
+                    templates = Integer.parseInt(value);
+                    break;
+                case "gzip":
+                    gzip = Boolean.parseBoolean(value);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "mix":
+                    parseMix(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+
+        private void parseMix(String value) {
+            mix.clear();
+            for (String weighted : value.split(",")) {
+                String[] kindWeight = weighted.split(":");
+                if (!Arrays.asList(KINDS).contains(kindWeight[0])) {
+                    throw new IllegalArgumentException("Unknown kind of request " + kindWeight[0]);
+                }
+                mix.put(kindWeight[0], Integer.parseInt(kindWeight[1]));
+            }
+        }
+
+        private String pickKind(Random random) {
+            int total = 0;
+            for (int weight : mix.values()) {
+                total += weight;
+            }
+            int pick = random.nextInt(total);
+            for (Map.Entry<String, Integer> kind : mix.entrySet()) {
+                pick -= kind.getValue();
+                if (pick < 0) {
+                    return kind.getKey();
+                }
+            }
+            throw new IllegalStateException("Empty mix");
+        }
+
+        @Override
+        public String toString() {
+            return "threads=" + threads + " requests=" + requests + " suites=" + suites + " pages=" + pages
+                    + " classes=" + classes + " methods=" + methods + " scenarios=" + scenarios
+                    + " templates=" + templates + " gzip=" + gzip + " mix=" + mix;
+        }
+    }
+}
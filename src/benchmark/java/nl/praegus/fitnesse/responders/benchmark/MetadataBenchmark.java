@@ -0,0 +1,97 @@
+package nl.praegus.fitnesse.responders.benchmark;
+
+import nl.praegus.fitnesse.responders.metadata.ClassSignature;
+import nl.praegus.fitnesse.responders.metadata.FixtureClass;
+import nl.praegus.fitnesse.responders.metadata.FixtureMetadataJson;
+import nl.praegus.fitnesse.responders.metadata.MetadataEngine;
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding the classes of an imported package and describing their constructors and methods, with a new class loader
+ * for every invocation, like the first request for a classpath.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MetadataBenchmark {
+    @Param({"50", "200"})
+    public int classes;
+
+    @Param({"20"})
+    public int methods;
+
+    @Param({"reflection", "classfile"})
+    public String engine;
+
+    private File jar;
+    private MetadataEngine metadataEngine;
+    private List<String> methodNames;
+    private URLClassLoader classLoader;
+
+    @Setup(Level.Trial)
+    public void createJar() throws Exception {
+        jar = SyntheticFixtures.jar(Files.createTempDirectory("autocomplete-benchmark").toFile(), classes, methods);
+        System.setProperty(MetadataEngine.ENGINE_SYSPROP, engine);
+        metadataEngine = MetadataEngine.fromSystemProperty();
+        methodNames = new ArrayList<>();
+        for (int m = 0; m < methods; m++) {
+            methodNames.add("enterValueNumber" + m + "ForHTTPRequest");
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createClassLoader() throws Exception {
+        classLoader = new URLClassLoader(new URL[]{jar.toURI().toURL()}, null);
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeClassLoader() throws IOException {
+        classLoader.close();
+    }
+
+    @Benchmark
+    public List<FixtureClass> findClasses() throws Exception {
+        return metadataEngine.findClasses(SyntheticFixtures.PACKAGE, classLoader);
+    }
+
+    @Benchmark
+    public void describeClasses(Blackhole blackhole) throws Exception {
+        for (FixtureClass fixtureClass : metadataEngine.findClasses(SyntheticFixtures.PACKAGE, classLoader)) {
+            ClassSignature signature = metadataEngine.readSignature(fixtureClass, classLoader);
+            JSONArray described = FixtureMetadataJson.methods(signature);
+            blackhole.consume(described);
+            blackhole.consume(FixtureMetadataJson.constructors(signature));
+        }
+    }
+
+    @Benchmark
+    public void splitCamelCase(Blackhole blackhole) {
+        for (int i = 0; i < classes; i++) {
+            blackhole.consume(FixtureMetadataJson.splitCamelCase(SyntheticFixtures.className(i)));
+            for (String methodName : methodNames) {
+                blackhole.consume(FixtureMetadataJson.splitCamelCase(methodName));
+            }
+        }
+    }
+}
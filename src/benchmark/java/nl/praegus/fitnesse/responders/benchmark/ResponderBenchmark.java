@@ -0,0 +1,108 @@
+package nl.praegus.fitnesse.responders.benchmark;
+
+import fitnesse.FitNesseContext;
+import fitnesse.http.MockRequest;
+import fitnesse.http.MockResponseSender;
+import fitnesse.testutil.FitNesseUtil;
+import fitnesse.wiki.PageData;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.WikiPage;
+import fitnesse.wiki.WikiPageUtil;
+import nl.praegus.fitnesse.responders.AutoCompleteResponder;
+import nl.praegus.fitnesse.responders.cache.ClassLoaderPool;
+import nl.praegus.fitnesse.responders.cache.ClassMetadataCache;
+import nl.praegus.fitnesse.responders.cache.PageResultCache;
+import nl.praegus.fitnesse.responders.query.CompletionIndexCache;
+import nl.praegus.fitnesse.responders.wiki.ScenarioLibraryIndex;
+import nl.praegus.fitnesse.responders.wiki.WikiSourceTableScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Complete autocomplete responses, including sending the json, for a test page with a large scenario library.
+ * {@code cold} clears all caches before every invocation, {@code warm} only varies the page data cache.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResponderBenchmark {
+    @Param({"100", "500"})
+    public int scenarios;
+
+    @Param({"50"})
+    public int templates;
+
+    @Param({"100"})
+    public int classes;
+
+    @Param({"20"})
+    public int methods;
+
+    @Param({"true", "false"})
+    public boolean sourceScanner;
+
+    private FitNesseContext context;
+
+    @Setup(Level.Trial)
+    public void createWiki() throws Exception {
+        File jar = SyntheticFixtures.jar(Files.createTempDirectory("autocomplete-benchmark").toFile(), classes, methods);
+        System.setProperty(WikiSourceTableScanner.ENABLED_SYSPROP, Boolean.toString(sourceScanner));
+        context = FitNesseUtil.makeTestContext();
+        WikiPage root = context.getRootPage();
+        WikiPageUtil.addPage(root, PathParser.parse("SuitePage"), "!define TEST_SYSTEM {slim}\n");
+        WikiPageUtil.addPage(root, PathParser.parse("SuitePage.ScenarioLibrary"),
+                SyntheticFixtures.scenarioLibrary(scenarios, templates));
+        WikiPage page = WikiPageUtil.addPage(root, PathParser.parse("SuitePage.TestPage"),
+                SyntheticFixtures.testPage(jar));
+        PageData data = page.getData();
+        data.setAttribute("Test", "true");
+        page.commit(data);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearPageData() {
+        PageResultCache.getInstance().clear();
+        ScenarioLibraryIndex.getInstance().clear();
+        CompletionIndexCache.getInstance().clear();
+    }
+
+    @Benchmark
+    public String cold() throws Exception {
+        ClassMetadataCache.clear();
+        ClassLoaderPool.getInstance().clear();
+        return respond(null);
+    }
+
+    @Benchmark
+    public String warm() throws Exception {
+        return respond(null);
+    }
+
+    @Benchmark
+    public String query() throws Exception {
+        return respond("enter val");
+    }
+
+    private String respond(String query) throws Exception {
+        MockRequest request = new MockRequest();
+        request.setResource("SuitePage.TestPage");
+        if (query != null) {
+            request.addInput("q", query);
+        }
+        MockResponseSender sender = new MockResponseSender();
+        sender.doSending(new AutoCompleteResponder().makeResponse(context, request));
+        return sender.sentData();
+    }
+}
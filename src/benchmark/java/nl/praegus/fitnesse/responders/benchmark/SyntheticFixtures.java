@@ -0,0 +1,117 @@
+package nl.praegus.fitnesse.responders.benchmark;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Generates fixture jars and wiki pages of a configurable size for the benchmarks.
+ */
+
+final class SyntheticFixtures {
+    static final String PACKAGE = "bench.fixtures";
+    private static final String[] PARAMETER_TYPES = {"String", "int", "java.util.List<String>", "java.util.Map<String, Integer>"};
+
+    private SyntheticFixtures() {
+    }
+
+    /**
+     * Compiles {@code classes} fixture classes with {@code methods} public methods each into a jar in the directory.
+     */
+    static File jar(File directory, int classes, int methods) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("A JDK is needed to compile the synthetic fixtures");
+        }
+
+        Path sources = Files.createDirectories(directory.toPath().resolve("src"));
+        Path output = Files.createDirectories(directory.toPath().resolve("classes"));
+        List<String> arguments = new ArrayList<>();
+        arguments.add("-d");
+        arguments.add(output.toString());
+        for (int i = 0; i < classes; i++) {
+            Path source = sources.resolve(className(i) + ".java");
+            Files.write(source, fixtureSource(i, methods).getBytes(StandardCharsets.UTF_8));
+            arguments.add(source.toString());
+        }
+        if (compiler.run(null, null, null, arguments.toArray(new String[0])) != 0) {
+            throw new IllegalStateException("Compiling the synthetic fixtures failed");
+        }
+
+        File jar = new File(directory, "fixtures-" + classes + "x" + methods + ".jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath()));
+             Stream<Path> files = Files.walk(output)) {
+            // with directory entries like the jar tool makes, packages are found as resources
+            for (Path file : (Iterable<Path>) files.filter(file -> !file.equals(output)).sorted()::iterator) {
+                String name = output.relativize(file).toString().replace(File.separatorChar, '/');
+                if (Files.isDirectory(file)) {
+                    out.putNextEntry(new JarEntry(name + "/"));
+                } else {
+                    out.putNextEntry(new JarEntry(name));
+                    Files.copy(file, out);
+                }
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    static String className(int i) {
+        return "SyntheticFixture" + i;
+    }
+
+    private static String fixtureSource(int i, int methods) {
+        StringBuilder source = new StringBuilder("package " + PACKAGE + ";\n\n")
+                .append("public class ").append(className(i)).append(" {\n")
+                .append("    public ").append(className(i)).append("() {\n    }\n\n")
+                .append("    public ").append(className(i)).append("(String name, int size) {\n    }\n\n");
+        for (int m = 0; m < methods; m++) {
+            int arity = m % 4;
+            source.append("    public String enterValueNumber").append(m).append("ForHTTPRequest(");
+            for (int p = 0; p < arity; p++) {
+                source.append(p == 0 ? "" : ", ").append(PARAMETER_TYPES[(m + p) % PARAMETER_TYPES.length])
+                        .append(" arg").append(p);
+            }
+            source.append(") {\n        return null;\n    }\n\n");
+        }
+        return source.append("    private void notAFixtureMethod() {\n    }\n}\n").toString();
+    }
+
+    /**
+     * @return a scenario library with the scenarios and table templates, each template using the previous one
+     */
+    static String scenarioLibrary(int scenarios, int templates) {
+        StringBuilder content = new StringBuilder();
+        for (int s = 0; s < scenarios; s++) {
+            content.append("|scenario|log in number ").append(s).append(" _ with _|user, password|\n")
+                    .append("|enter value number 0 for http request|@user|\n")
+                    .append("|$result").append(s).append("=|enter value number 1 for http request|@password|\n\n");
+        }
+        for (int t = 0; t < templates; t++) {
+            content.append("|table template|place order ").append(t).append("|\n")
+                    .append("|enter value number 2 for http request|@{product").append(t).append("}|\n")
+                    .append("|$order").append(t).append("=|enter value number 3 for http request|\n");
+            if (t > 0) {
+                content.append("|place order ").append(t - 1).append("|\n");
+            }
+            content.append('\n');
+        }
+        return content.toString();
+    }
+
+    static String testPage(File jar) {
+        return "!path " + jar.getAbsolutePath() + "\n\n"
+                + "|import|\n|" + PACKAGE + "|\n\n"
+                + "|script|" + className(0) + "|\n"
+                + "|$id=|enter value number 0 for http request|\n";
+    }
+}
@@ -5,105 +5,401 @@ import fitnesse.http.Request;
 import fitnesse.http.Response;
 import fitnesse.http.SimpleResponse;
 import fitnesse.responders.WikiPageResponder;
+import fitnesse.testrunner.TestPageWithSuiteSetUpAndTearDown;
 import fitnesse.testrunner.WikiTestPage;
 import fitnesse.testsystems.ClassPath;
-import fitnesse.testsystems.slim.HtmlTable;
 import fitnesse.testsystems.slim.HtmlTableScanner;
 import fitnesse.testsystems.slim.Table;
 import fitnesse.testsystems.slim.TableScanner;
+import fitnesse.wiki.PathParser;
 import fitnesse.wiki.WikiPage;
+import fitnesse.wiki.WikiPageUtil;
+import nl.praegus.fitnesse.responders.cache.ClassLoaderPool;
+import nl.praegus.fitnesse.responders.cache.ClassMetadataCache;
+import nl.praegus.fitnesse.responders.cache.CompressedResponseCache;
+import nl.praegus.fitnesse.responders.cache.PageResultCache;
+import nl.praegus.fitnesse.responders.handlers.BatchHandler;
+import nl.praegus.fitnesse.responders.handlers.ClassHandler;
+import nl.praegus.fitnesse.responders.handlers.PageReader;
+import nl.praegus.fitnesse.responders.handlers.QueryHandler;
+import nl.praegus.fitnesse.responders.http.ContentEncoding;
+import nl.praegus.fitnesse.responders.http.EntityTags;
+import nl.praegus.fitnesse.responders.json.JsonStreamResponse;
+import nl.praegus.fitnesse.responders.json.JsonStreamWriter;
+import nl.praegus.fitnesse.responders.metadata.ClassSignature;
+import nl.praegus.fitnesse.responders.metadata.FixtureClass;
+import nl.praegus.fitnesse.responders.metadata.FixtureMetadataJson;
+import nl.praegus.fitnesse.responders.metadata.MetadataEngine;
+import nl.praegus.fitnesse.responders.stats.RequestTimings;
+import nl.praegus.fitnesse.responders.stats.ResponderStats;
 import nl.praegus.fitnesse.responders.util.ClassFinder;
+import nl.praegus.fitnesse.responders.util.ClassPathFingerprint;
+import nl.praegus.fitnesse.responders.util.ClassPathIndex;
+import nl.praegus.fitnesse.responders.util.ContentDigest;
+import nl.praegus.fitnesse.responders.util.ScanExecutor;
+import nl.praegus.fitnesse.responders.warmup.MetadataWarmUp;
+import nl.praegus.fitnesse.responders.wiki.PageAutoCompleteData;
+import nl.praegus.fitnesse.responders.wiki.PageFingerprint;
+import nl.praegus.fitnesse.responders.wiki.TableTemplates;
+import nl.praegus.fitnesse.responders.wiki.WikiSourceTableScanner;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.io.File;
+import java.io.IOException;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Responder for use with autocomplete javascript.
  * Adds testrunner classpaths to classloader, finds all classes that are imported and lists scenario's available
  * Returns JSON containing all classes for the requested page with their public methods, including parameters (types) using reflection
  * Also returns any scenario's on the testPage with their paramaters (names)
+ * Queries, single classes and batches of pages are answered by the handlers in
+ * {@link nl.praegus.fitnesse.responders.handlers}, the caching and other options are described in the README
  */
 
 public class AutoCompleteResponder extends WikiPageResponder {
-    private static final String APIDOCS_LOCATION = "META-INF/apidocs/";
     private static final Logger LOGGER = LoggerFactory.getLogger(AutoCompleteResponder.class);
-    private static final Pattern ARG_PATTERN = Pattern.compile("@\\{(.+?)}");
-    private static final Pattern OUT_PATTERN = Pattern.compile("\\$(.+?)=");
     private static final Pattern UNDERSCORE_PATTERN = Pattern.compile("\\W_(?=\\W|$)");
-    private static final Set<String> METHODS_TO_IGNORE;
     private static final String TDEND = "</td>";
     private static final String NAME = "name";
-    private static final String READABLE_NAME = "readableName";
-    private static final String TYPE = "type";
-    private static final String EXCEPTIONS = "exceptions";
-    private static final String ANNOTATIONS = "annotations";
     private static final String PARAMETERS = "parameters";
     private static final String WIKI_TEXT = "wikiText";
-    private static final String USAGE = "usage";
     private static final String CONTEXT_STR = "contexthelp";
-    private static final String INTERPOSING_SYSPROP = "interposeMethodsInWiki";
-
+    private static final String QUERY = "q";
+    private static final String LIMIT = "limit";
+    private static final String SUMMARY = "summary";
+    private static final String CLASS = "class";
+    private static final String QUALIFIED_NAME = "qualifiedName";
+    private static final String READABLE_NAME = "readableName";
+    private static final String PAGES = "pages";
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 500;
+    // classes are described while the body is written, after the Server-Timing header is sent
+    private static final List<String> STREAMED_PHASES = Arrays.asList("describe", "javadoc", "write");
 
-    static {
-        METHODS_TO_IGNORE = new HashSet<>();
-        METHODS_TO_IGNORE.add("toString");
-        METHODS_TO_IGNORE.add("aroundSlimInvoke");
-        METHODS_TO_IGNORE.add("getClass");
-        METHODS_TO_IGNORE.add("equals");
-        METHODS_TO_IGNORE.add("notify");
-        METHODS_TO_IGNORE.add("notifyAll");
-        METHODS_TO_IGNORE.add("wait");
-        METHODS_TO_IGNORE.add("hashCode");
-    }
 
-    private final JSONObject json = new JSONObject();
-    private final JSONArray classes = new JSONArray();
     private final JSONArray scenarios = new JSONArray();
     private final Set<String> packages = new HashSet<>();
     private final JSONArray variables = new JSONArray();
     private WikiPage page;
     private FitNesseContext context;
     private URLClassLoader classLoader;
-    private final Map<String, Table> tableTemplateTables = new HashMap<>();
+    private ClassLoaderPool.Lease classLoaderLease;
+    private List<ClassPathIndex> documentedEntries = Collections.emptyList();
+    private String classPathKey;
+    private final TableTemplates tableTemplates = new TableTemplates();
+    private final MetadataEngine metadataEngine = MetadataEngine.fromSystemProperty();
+    private final RequestTimings timings;
+    private long requestStart;
+    private int scannedClasses;
+    private boolean describingWhileStreaming;
+    private JsonStreamResponse jsonResponse;
+    private boolean gzip;
+    private String etag;
+
+    public AutoCompleteResponder() {
+        this(new RequestTimings());
+    }
+
+    /**
+     * Responder reading one of the pages of a batch, adding its timings to those of the batch request.
+     */
+    private AutoCompleteResponder(RequestTimings timings) {
+        this.timings = timings;
+    }
 
     @Override
     public Response makeResponse(FitNesseContext pageContext, Request request) throws Exception {
+        requestStart = System.nanoTime();
         context = pageContext;
+        MetadataWarmUp.startOnce(context);
+        boolean pretty = request.hasInput("pretty");
+        gzip = ContentEncoding.acceptsGzip(request);
+        String pagePaths = request.getInput(PAGES);
+        if (pagePaths != null) {
+            return batchResponse(request, pagePaths, pretty);
+        }
         page = loadPage(context, request.getResource(), request.getMap());
-        setClassPathsForPage();
-        getAutoCompleteDataFromPage();
+        String query = request.getInput(QUERY);
+        String className = request.getInput(CLASS);
+        boolean summary = request.hasInput(SUMMARY);
+        int limit = queryLimit(request.getInput(LIMIT));
+        List<String> classPath = classPathForPage();
+        String pageFingerprint = PageFingerprint.of(page);
+        String contentDigest = contentDigest(pageFingerprint, classPath);
+        timings.add("page", System.nanoTime() - requestStart);
+        // the compressed and uncompressed body are different representations, with their own entity tag
+        etag = EntityTags.quote(new ContentDigest()
+                .add(contentDigest)
+                .add(pretty)
+                .add(query)
+                .add(limit)
+                .add(summary)
+                .add(className)
+                .toHex() + (gzip ? "-" + ContentEncoding.GZIP : ""));
+        if (EntityTags.matches(request, etag)) {
+            return notModified();
+        }
+
+        PageReader reader = new Reader(this, classPath, pageFingerprint, contentDigest);
+        Response response;
+        if (className != null) {
+            JsonStreamResponse.Body body = new ClassHandler(reader).respond(className);
+            response = body == null ? classNotFound(className) : jsonResponse(pretty, body, () -> { });
+        } else if (query != null) {
+            response = jsonResponse(pretty, new QueryHandler(reader).respond(query, limit), () -> { });
+        } else {
+            response = autoCompleteResponse(classPath, pageFingerprint, pretty, summary);
+        }
+        return withHeaders(response);
+    }
+
+    private Response notModified() {
+        Response notModified = EntityTags.notModified(etag);
+        notModified.addHeader(ContentEncoding.VARY, ContentEncoding.ACCEPT_ENCODING);
+        notModified.addHeader(RequestTimings.SERVER_TIMING, timings.serverTiming());
+        recordStats(0);
+        return notModified;
+    }
+
+    private Response withHeaders(Response response) {
+        response.addHeader(EntityTags.ETAG, etag);
+        response.addHeader(ContentEncoding.VARY, ContentEncoding.ACCEPT_ENCODING);
+        // the phases of writing the body are only in the stats, the header is sent before them
+        response.addHeader(RequestTimings.SERVER_TIMING, describingWhileStreaming
+                ? timings.serverTiming(STREAMED_PHASES) : timings.serverTiming());
+        return response;
+    }
+
+    private Response batchResponse(Request request, String pagePaths, boolean pretty) {
+        BatchHandler batch = new BatchHandler(pagePaths, path -> {
+            AutoCompleteResponder reader = new AutoCompleteResponder(timings);
+            reader.context = context;
+            reader.page = loadPage(context, path, request.getMap());
+            return Reader.of(reader);
+        });
+        String contentDigest = batch.getContentDigest();
+        timings.add("page", System.nanoTime() - requestStart);
+        etag = EntityTags.quote(new ContentDigest().add(PAGES).add(pretty).add(contentDigest).toHex()
+                + (gzip ? "-" + ContentEncoding.GZIP : ""));
+        if (EntityTags.matches(request, etag)) {
+            return notModified();
+        }
+
+        byte[] compressed = cachedCompressedBody();
+        if (compressed != null) {
+            return withHeaders(ContentEncoding.gzipped(compressed, "application/json"));
+        }
+        JsonStreamResponse.Body body = batch.respond();
+        scannedClasses = batch.getDescribedClassCount();
+        return withHeaders(jsonResponse(pretty, body, this::keepCompressedBody));
+    }
+
+    private Response autoCompleteResponse(List<String> classPath, String pageFingerprint, boolean pretty,
+                                          boolean summary) {
+        byte[] compressed = cachedCompressedBody();
+        if (compressed != null) {
+            return ContentEncoding.gzipped(compressed, "application/json");
+        }
+
+        PageAutoCompleteData pageData;
+        Iterable<JSONObject> classes;
+        try {
+            acquireClassLoader(classPath);
+            pageData = autoCompleteDataForPage(pageFingerprint);
+            classes = summary
+                    ? summarizeClasses(findFixtureClasses(pageData.getPackages()))
+                    : addClassesToAutocompleteList(pageData.getPackages());
+            describingWhileStreaming = !summary;
+        } catch (Exception | Error e) {
+            releaseClassLoader();
+            throw e;
+        }
+
+        JsonStreamResponse.Body body = summary
+                ? json -> writeSummary(json, pageData, classes)
+                : json -> writeAutoCompleteData(json, pageData, classes);
+        return jsonResponse(pretty, body, this::keepCompressedBody);
+    }
+
+    /**
+     * @return the compressed body sent before for the entity tag, or null when the client doesn't accept it or it
+     * is not cached
+     */
+    private byte[] cachedCompressedBody() {
+        byte[] compressed = gzip ? CompressedResponseCache.getInstance().get(etag) : null;
+        if (compressed != null) {
+            recordStats(compressed.length);
+        }
+        return compressed;
+    }
 
-        SimpleResponse response = new SimpleResponse();
+    private void keepCompressedBody() {
+        byte[] compressedBody = jsonResponse.getCompressedBody();
+        if (compressedBody != null) {
+            CompressedResponseCache.getInstance().put(etag, compressedBody);
+        }
+    }
+
+    private Response classNotFound(String className) {
+        SimpleResponse response = new SimpleResponse(404);
         response.setMaxAge(0);
-        response.setStatus(200);
         response.setContentType("application/json");
-        response.setContent(json.toString(3));
-
+        response.setContent(new JSONObject().put("error", "Class not found: " + className).toString().getBytes(
+                StandardCharsets.UTF_8));
+        recordStats(0);
         return response;
     }
 
-    private void getAutoCompleteDataFromPage() {
-        TableScanner<HtmlTable> scanner = new HtmlTableScanner(makeHtml(context, page));
+    private Response jsonResponse(boolean pretty, JsonStreamResponse.Body body, Runnable onSent) {
+        jsonResponse = new JsonStreamResponse(pretty, gzip, json -> {
+            long start = System.nanoTime();
+            try {
+                body.writeTo(json);
+            } finally {
+                timings.add("write", System.nanoTime() - start);
+            }
+        }, () -> {
+            releaseClassLoader();
+            onSent.run();
+            recordStats(jsonResponse.getBytesWritten());
+            // after the response is sent, so the client doesn't wait for the disk
+            ClassMetadataCache.persist();
+        });
+        return jsonResponse.getResponse();
+    }
+
+    private void recordStats(long bytesReturned) {
+        ResponderStats.getInstance().record(timings, System.nanoTime() - requestStart, scannedClasses, bytesReturned);
+    }
+
+    /**
+     * Loads the class loader and the metadata of all classes imported on the page into the caches, without making a
+     * response. Without a context, pages that can't be read from source are rendered without page header and footer.
+     */
+    public void warmUp(WikiPage warmUpPage) {
+        page = warmUpPage;
+        try {
+            List<String> classPath = classPathForPage();
+            acquireClassLoader(classPath);
+            if (classPath != null) {
+                ClassMetadataCache.preload(classPath);
+            }
+            // describing the classes is what fills the metadata cache
+            addClassesToAutocompleteList(getAutoCompleteDataFromPage().getPackages()).forEach(described -> { });
+        } finally {
+            releaseClassLoader();
+            ClassMetadataCache.persist();
+        }
+    }
+
+    private static int queryLimit(String limit) {
+        try {
+            return limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limit.trim())));
+        } catch (NumberFormatException e) {
+            return DEFAULT_LIMIT;
+        }
+    }
+
+    /**
+     * Digest of everything the response content is derived from: the wiki text, the classpath and the metadata
+     * settings.
+     */
+    private String contentDigest(String pageFingerprint, List<String> classPath) {
+        return new ContentDigest()
+                .add(pageFingerprint)
+                .add(ClassPathFingerprint.of(classPath == null ? Collections.<String>emptyList() : classPath))
+                .add(metadataVariant())
+                .toHex();
+    }
+
+    private void writeAutoCompleteData(JsonStreamWriter json, PageAutoCompleteData pageData,
+                                       Iterable<JSONObject> classes) throws IOException {
+        Iterator<JSONObject> remaining = classes.iterator();
+        try {
+            json.beginObject()
+                    .array("scenarios", pageData.getScenarios())
+                    .array("variables", pageData.getVariables())
+                    .beginArray("classes");
+            while (remaining.hasNext()) {
+                json.value(remaining.next());
+            }
+            json.endArray()
+                    .endObject();
+        } finally {
+            // classes still being described must not outlive the class loader lease
+            while (remaining.hasNext()) {
+                remaining.next();
+            }
+        }
+    }
+
+    private void writeSummary(JsonStreamWriter json, PageAutoCompleteData pageData,
+                              Iterable<JSONObject> classes) throws IOException {
+        json.beginObject()
+                .beginArray("scenarios");
+        for (int i = 0; i < pageData.getScenarios().length(); i++) {
+            JSONObject scenario = pageData.getScenarios().getJSONObject(i);
+            JSONObject summary = new JSONObject().put(NAME, scenario.get(NAME));
+            for (String key : new String[]{"insertText", PARAMETERS}) {
+                if (scenario.has(key)) {
+                    summary.put(key, scenario.get(key));
+                }
+            }
+            json.value(summary);
+        }
+        json.endArray()
+                .beginArray("variables");
+        for (int i = 0; i < pageData.getVariables().length(); i++) {
+            json.value(new JSONObject().put("varName", pageData.getVariables().getJSONObject(i).get("varName")));
+        }
+        json.endArray()
+                .array("classes", classes)
+                .endObject();
+    }
+
+    private void releaseClassLoader() {
+        if (classLoaderLease != null) {
+            classLoaderLease.close();
+        }
+    }
+
+    private PageAutoCompleteData autoCompleteDataForPage(String pageFingerprint) {
+        if (page == null) {
+            return getAutoCompleteDataFromPage();
+        }
+        return PageResultCache.getInstance().get(PathParser.render(page.getFullPath()), pageFingerprint,
+                this::getAutoCompleteDataFromPage);
+    }
+
+    private PageAutoCompleteData getAutoCompleteDataFromPage() {
+        long start = System.nanoTime();
+        long renderTime = 0;
+        TableScanner<? extends Table> scanner = null;
+        if (WikiSourceTableScanner.isEnabled()) {
+            scanner = WikiSourceTableScanner.scan(page);
+        }
+        if (scanner == null) {
+            long renderStart = System.nanoTime();
+            String html = context == null ? renderWithoutContext() : makeHtml(context, page);
+            renderTime = System.nanoTime() - renderStart;
+            timings.add("render", renderTime);
+            scanner = new HtmlTableScanner(html);
+        }
         for (int i = 0; i < scanner.getTableCount(); i++) {
             Table t = scanner.getTable(i);
             if (t.getColumnCountInRow(0) > 0) {
@@ -129,11 +425,12 @@ public class AutoCompleteResponder extends WikiPageResponder {
                 addVariables(t);
             }
         }
+        timings.add("scan", System.nanoTime() - start - renderTime);
+        return new PageAutoCompleteData(scenarios, variables, packages);
+    }
 
-        addClassesToAutocompleteList();
-        json.put("classes", classes);
-        json.put("scenarios", scenarios);
-        json.put("variables", variables);
+    private String renderWithoutContext() {
+        return WikiPageUtil.isTestPage(page) ? new TestPageWithSuiteSetUpAndTearDown(page).getHtml() : page.getHtml();
     }
 
     private void addVariables(Table t) {
@@ -166,195 +463,80 @@ public class AutoCompleteResponder extends WikiPageResponder {
         return result.toString();
     }
 
-    private void addClassesToAutocompleteList() {
-        for (String pkg : packages) {
-            Set<Class> classList = new HashSet<>();
-
-            try {
-                classList.addAll(ClassFinder.getClasses(pkg, false, classLoader));
-            } catch (Exception e) {
-                LOGGER.error("Exception for package: " + pkg + " - " + e.getMessage());
-            }
-
-            for (Class klass : classList) {
-                JSONObject thisClass = new JSONObject();
-                JSONObject javaDocForClass = javadocForClass(klass);
-
-                if (javaDocForClass.length() > 0) {
-                    thisClass.put("methods", javaDocForClass.get("publicMethods"));
-                    thisClass.put("constructors", javaDocForClass.get("constructors"));
-                } else {
-                    thisClass.put("methods", getMethodsByReflection(klass));
-                    thisClass.put("constructors", getConstructorsByReflection(klass));
-                }
-
-                thisClass.put("qualifiedName", klass.getName());
-                thisClass.put("readableName", splitCamelCase(klass.getSimpleName()));
-
-                classes.put(thisClass);
-            }
-        }
+    private Iterable<JSONObject> addClassesToAutocompleteList(Set<String> sortedPackages) {
+        List<FixtureClass> fixtureClasses = findFixtureClasses(sortedPackages);
+        String variant = metadataVariant();
+        return ScanExecutor.mapLazily(fixtureClasses, fixtureClass -> describeCached(fixtureClass, variant));
     }
 
-    private JSONArray getConstructorsByReflection(Class klass) {
-        JSONArray cConstructors = new JSONArray();
-        try {
-            Constructor[] constructors = klass.getConstructors();
-            for (Constructor constructor : constructors) {
-                String usage = generateConstructorUsageString(klass.getSimpleName(), constructor.getParameterTypes());
-                JSONObject thisConstructor = new JSONObject();
-
-                thisConstructor.put(NAME, klass.getSimpleName());
-                thisConstructor.put(READABLE_NAME, splitCamelCase(klass.getSimpleName()));
-                thisConstructor.put(PARAMETERS, parseParameterTypes(constructor.getParameterTypes()));
-                thisConstructor.put(ANNOTATIONS, parseAnnotations(constructor.getDeclaredAnnotations()));
-                thisConstructor.put(EXCEPTIONS, parseExceptionTypes(constructor.getExceptionTypes()));
-                thisConstructor.put(USAGE, usage);
-                thisConstructor.put(WIKI_TEXT, usage.substring(2));
-
-                cConstructors.put(thisConstructor);
-            }
-        } catch (NoClassDefFoundError err) {
-            //intentionally ignore classes that cannot be found
+    private static List<JSONObject> summarizeClasses(List<FixtureClass> fixtureClasses) {
+        List<JSONObject> summaries = new ArrayList<>(fixtureClasses.size());
+        for (FixtureClass fixtureClass : fixtureClasses) {
+            summaries.add(new JSONObject()
+                    .put(QUALIFIED_NAME, fixtureClass.getName())
+                    .put(READABLE_NAME, FixtureMetadataJson.splitCamelCase(fixtureClass.getSimpleName())));
         }
-        return cConstructors;
+        return summaries;
     }
 
-    private JSONArray getMethodsByReflection(Class klass) {
-        JSONArray cMethods = new JSONArray();
-        try {
-            Method[] methods = klass.getMethods();
-            for (Method method : methods) {
-                if (!METHODS_TO_IGNORE.contains(method.getName()) || method.getDeclaringClass().equals(klass)) {
-
-                    String readableMethodName = splitCamelCase(method.getName());
-                    String usage;
-
-                    if(System.getProperty(INTERPOSING_SYSPROP, "false").equalsIgnoreCase("true")) {
-                        usage = interposingNotationUsageString(method.getName(), method.getParameterTypes());
-                    } else {
-                        usage = generateMethodUsageString(readableMethodName, method.getParameterTypes());
-                    }
-                    String contextHelp = usage.substring(2)
-                            .replaceAll("\\| \\[(\\w+)] \\|", "&lt;$1&gt;")
-                            .replace("|", "")
-                            .trim();
-
-                    JSONObject thisMethod = new JSONObject();
-
-                    thisMethod.put(NAME, splitCamelCase(method.getName()));
-                    thisMethod.put(READABLE_NAME, readableMethodName);
-                    thisMethod.put(PARAMETERS, parseParameterTypes(method.getParameterTypes()));
-                    thisMethod.put(EXCEPTIONS, parseExceptionTypes(method.getExceptionTypes()));
-                    thisMethod.put(ANNOTATIONS, parseAnnotations(method.getDeclaredAnnotations()));
-                    thisMethod.put(USAGE, usage);
-                    thisMethod.put(CONTEXT_STR, contextHelp);
-                    thisMethod.put(WIKI_TEXT, usage.substring(2));
-
-                    cMethods.put(thisMethod);
-                }
-            }
-        } catch (NoClassDefFoundError err) {
-            //intentionally ignore classes that cannot be found
-        }
-        return cMethods;
+    private List<FixtureClass> findFixtureClasses(Set<String> sortedPackages) {
+        List<FixtureClass> fixtureClasses = FixtureClass.inPackages(sortedPackages,
+                findClassesByPackage(sortedPackages));
+        scannedClasses = fixtureClasses.size();
+        return fixtureClasses;
     }
 
-    private JSONArray parseParameterTypes(Class<?>[] parameterTypes) {
-        JSONArray parameters = new JSONArray();
-        for (Class<?> p : parameterTypes) {
-            JSONObject thisParam = new JSONObject();
-            thisParam.put(TYPE, p.getSimpleName());
-            parameters.put(thisParam);
+    private Map<String, List<FixtureClass>> findClassesByPackage(Set<String> packageNames) {
+        long start = System.nanoTime();
+        List<String> packageList = new ArrayList<>(packageNames);
+        List<List<FixtureClass>> packageClasses = ScanExecutor.map(packageList, this::findClasses);
+        Map<String, List<FixtureClass>> classesByPackage = new HashMap<>();
+        for (int i = 0; i < packageList.size(); i++) {
+            classesByPackage.put(packageList.get(i), packageClasses.get(i));
         }
-        return parameters;
+        timings.add("find", System.nanoTime() - start);
+        return classesByPackage;
     }
 
-    private JSONArray parseExceptionTypes(Class<?>[] exceptionTypes) {
-        JSONArray exceptions = new JSONArray();
-        for (Class<?> e : exceptionTypes) {
-            exceptions.put(e.getSimpleName());
-        }
-        return exceptions;
-    }
-
-    private JSONArray parseAnnotations(Annotation[] declaredAnnotations) {
-        JSONArray annotations = new JSONArray();
-        for (Annotation a : declaredAnnotations) {
-            annotations.put(a.annotationType().getSimpleName());
+    private List<FixtureClass> findClasses(String pkg) {
+        try {
+            return metadataEngine.findClasses(pkg, classLoader);
+        } catch (Exception e) {
+            LOGGER.error("Exception for package: " + pkg + " - " + e.getMessage());
+            return Collections.emptyList();
         }
-        return annotations;
     }
 
-    private static String generateConstructorUsageString(String name, Class<?>[] parameterTypes) {
-        StringBuilder wikiText = new StringBuilder("| ");
-        wikiText.append(splitCamelCase(name))
-                .append(" |");
-        for (Class<?> parameterType : parameterTypes) {
-            String paramDisplay = String.format(" [%s]", parameterType.getName());
-            wikiText.append(paramDisplay)
-                    .append(" |");
-        }
-        return wikiText.toString();
+    private JSONObject describeCached(FixtureClass fixtureClass, String variant) {
+        return ClassMetadataCache.get(fixtureClass, classPathKey, variant,
+                sources -> describeClass(fixtureClass, sources));
     }
 
-    private String generateMethodUsageString(String readableMethodName, Class<?>[] parameterTypes) {
-        String[] methodNameParts = readableMethodName.split(" ");
-
-        int numberOfParts = methodNameParts.length;
-        int numberOfParams = parameterTypes.length;
+    private JSONObject describeClass(FixtureClass fixtureClass, Set<File> supertypeSources) {
+        long start = System.nanoTime();
+        JSONObject thisClass = new JSONObject();
+        JSONObject javaDocForClass = javadocForClass(fixtureClass.getName(), supertypeSources);
+        long javadocDone = System.nanoTime();
+        timings.add("javadoc", javadocDone - start);
 
-        StringBuilder result = new StringBuilder("| ");
-        if (numberOfParams > numberOfParts) {
-            result.append(readableMethodName)
-                    .append(" | ");
-            for (Class<?> param : parameterTypes) {
-                result.append(param.getSimpleName())
-                        .append(", ");
-            }
-            result.append(" |");
+        if (javaDocForClass.length() > 0) {
+            thisClass.put("methods", javaDocForClass.get("publicMethods"));
+            thisClass.put("constructors", javaDocForClass.get("constructors"));
         } else {
-            int totalCells = numberOfParts + numberOfParams;
-
-            List<Integer> paramPositions = new ArrayList<>();
-            int paramPosition = totalCells - 1;
-
-            int n = 0;
-            while (n < numberOfParams) {
-                paramPositions.add(paramPosition);
-                paramPosition -= 2;
-                n++;
-            }
-            int prm = 0;
-            for (int p = 0; p < totalCells; p++) {
-                if (!paramPositions.contains(p)) {
-                    result.append(methodNameParts[p - prm])
-                            .append(" ");
-                } else {
-                    result.append("| [")
-                            .append(parameterTypes[prm].getSimpleName())
-                            .append("] | ");
-                    prm++;
-                }
-            }
-            if (numberOfParams == 0) {
-                result.append("|");
-            }
+            ClassSignature signature = metadataEngine.readSignature(fixtureClass, classLoader);
+            supertypeSources.addAll(signature.getSupertypeSources());
+            thisClass.put("methods", FixtureMetadataJson.methods(signature));
+            thisClass.put("constructors", FixtureMetadataJson.constructors(signature));
         }
-        return result.toString();
-    }
 
-    private String interposingNotationUsageString(String methodName, Class<?>[] parameterTypes) {
-        StringBuilder wikiText = new StringBuilder("| ");
-        wikiText.append(methodName)
-                .append("; |");
-        for (Class<?> parameterType : parameterTypes) {
-            String paramDisplay = String.format(" [%s]", parameterType.getName());
-            wikiText.append(paramDisplay)
-                    .append(" |");
-        }
+        thisClass.put(QUALIFIED_NAME, fixtureClass.getName());
+        thisClass.put(READABLE_NAME, FixtureMetadataJson.splitCamelCase(fixtureClass.getSimpleName()));
+        timings.add("describe", System.nanoTime() - javadocDone);
+        return thisClass;
+    }
 
-        return wikiText.toString();
+    private String metadataVariant() {
+        return metadataEngine.getName() + ";interposing=" + FixtureMetadataJson.isInterposing();
     }
 
     private void addPackage(Table t, boolean library) {
@@ -433,21 +615,22 @@ public class AutoCompleteResponder extends WikiPageResponder {
         if(t.getColumnCountInRow(0) == 1) {
             return; //Invalid table template
         }
-        StringBuilder insertText = new StringBuilder("|");
         JSONObject thisScenario = new JSONObject();
-        JSONArray parameters = new JSONArray();
+        String tplName = t.getCellContents(1, 0);
 
-        Set<String> inputs = new LinkedHashSet<>();
-        Set<String> outputs = new LinkedHashSet<>();
+        thisScenario.put(NAME, tplName);
+        thisScenario.put(CONTEXT_STR, tplName);
+
+        TableTemplates.Parameters templateParameters = tableTemplates.add(t);
+        StringBuilder insertText = new StringBuilder("|");
+        JSONArray parameters = new JSONArray();
 
-        String tplName = t.getCellContents(1, 0);
         insertText.append(" ")
-                .append(tplName)
+                .append(thisScenario.getString(NAME))
                 .append(" |");
 
-        addAllMatchesFromTable(ARG_PATTERN, inputs, t);
-        addAllMatchesFromTable(OUT_PATTERN, outputs, t);
-
+        Set<String> inputs = templateParameters.getInputs();
+        Set<String> outputs = templateParameters.getOutputs();
         if (!inputs.isEmpty() || !outputs.isEmpty()) {
             insertText.append("\r\n" + "|");
             for (String input : inputs) {
@@ -460,42 +643,11 @@ public class AutoCompleteResponder extends WikiPageResponder {
             }
         }
 
-        thisScenario.put(NAME, tplName);
-        thisScenario.put(CONTEXT_STR, tplName);
         thisScenario.put(WIKI_TEXT, insertText.substring(2));
         thisScenario.put("insertText", insertText.toString());
         thisScenario.put(PARAMETERS, parameters);
         thisScenario.put("html", tableToHtml(t));
         scenarios.put(thisScenario);
-        tableTemplateTables.put(tplName, t);
-    }
-
-    private void addAllMatchesFromTable(Pattern pattern, Set<String> found, Table t) {
-
-        for (int row = 1; row < t.getRowCount(); row++) {
-
-            StringBuilder potentialTableTemplateName = new StringBuilder();
-
-            for (int col = 0; col < t.getColumnCountInRow(row); col++) {
-
-                if ((col % 2) == 0) {
-                    potentialTableTemplateName.append(t.getCellContents(col, row))
-                            .append(" ");
-                }
-
-                String cellContent = t.getCellContents(col, row);
-                Matcher m = pattern.matcher(cellContent);
-                while (m.find()) {
-                    String input = m.group(1);
-                    found.add(input);
-                }
-            }
-
-            String cleanPotentialTemplateName = potentialTableTemplateName.toString().trim().replaceAll(";$", "");
-            if (tableTemplateTables.containsKey(cleanPotentialTemplateName)) {
-                addAllMatchesFromTable(pattern, found, tableTemplateTables.get(cleanPotentialTemplateName));
-            }
-        }
     }
 
     private String tableToHtml(Table t) {
@@ -532,65 +684,122 @@ public class AutoCompleteResponder extends WikiPageResponder {
         return html.toString();
     }
 
-    private void setClassPathsForPage() {
+    private List<String> classPathForPage() {
 
         WikiTestPage testPage = new WikiTestPage(page);
         try {
             ClassPath classPath = testPage.getClassPath();
-
-            URL[] urls = new URL[classPath.getElements().size()];
-
-            int i = 0;
-            for (String path : classPath.getElements()) {
-                File classPathItem = new File(path);
-                try {
-                    urls[i] = classPathItem.toURI().toURL();
-                } catch (MalformedURLException e) {
-                    //this shouldn't happen!
-                    LOGGER.error(e.getMessage());
-                }
-                i++;
-            }
-            addToClassPath(urls);
-
+            return classPath.getElements();
         } catch (NullPointerException e) {
             // Silently continue when there are no classpaths (new page)
+            return null;
         }
     }
 
-    private void addToClassPath(URL[] urls) {
-        try {
-            classLoader = new URLClassLoader(urls, ClassLoader.getSystemClassLoader());
-        } catch (Exception e) {
-            LOGGER.error(e.getMessage());
+    private void acquireClassLoader(List<String> classPath) {
+        if (classPath != null) {
+            long start = System.nanoTime();
+            classLoaderLease = ClassLoaderPool.getInstance().acquire(classPath);
+            classLoader = classLoaderLease.getClassLoader();
+            classPathKey = ClassMetadataCache.classPathKey(classPath);
+            documentedEntries = new ArrayList<>();
+            for (ClassPathIndex index : ClassFinder.getIndexes(classLoader)) {
+                if (index.hasApidocs()) {
+                    documentedEntries.add(index);
+                }
+            }
+            timings.add("classloader", System.nanoTime() - start);
         }
     }
 
-    private static String splitCamelCase(String s) {
-        return s.replaceAll(
-                String.format("%s|%s|%s",
-                        "(?<=[A-Z])(?=[A-Z][a-z])",
-                        "(?<=[^A-Z])(?=[A-Z])",
-                        "(?<=[A-Za-z])(?=[^A-Za-z])"
-                ),
-                " "
-        ).toLowerCase();
+    private JSONObject javadocForClass(String className, Set<File> sources) {
+        for (ClassPathIndex index : documentedEntries) {
+            JSONObject javadoc = index.getApidocs(className);
+            if (javadoc != null) {
+                sources.add(index.getEntry());
+                return javadoc;
+            }
+        }
+        return new JSONObject();
     }
 
-    private JSONObject javadocForClass(Class klass) {
-        String javadoc = "";
-        try (InputStream stream = klass.getClassLoader().getResourceAsStream(APIDOCS_LOCATION + klass.getName() + ".json")) {
-            javadoc = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8)).lines()
-                    .collect(Collectors.joining(System.lineSeparator()));
-        } catch (Exception e) {
-            //Ignore missing documentation
+    /**
+     * The page of a responder, for the handlers.
+     */
+    private static final class Reader implements PageReader {
+        private final AutoCompleteResponder responder;
+        private final List<String> classPath;
+        private final String pageFingerprint;
+        private final String contentDigest;
+
+        private Reader(AutoCompleteResponder responder, List<String> classPath, String pageFingerprint,
+                       String contentDigest) {
+            this.responder = responder;
+            this.classPath = classPath;
+            this.pageFingerprint = pageFingerprint;
+            this.contentDigest = contentDigest;
         }
-        if (!javadoc.isEmpty()) {
-            return new JSONObject(javadoc);
-        } else {
-            return new JSONObject();
+
+        private static Reader of(AutoCompleteResponder responder) {
+            if (responder.page == null) {
+                return new Reader(responder, null, null, "");
+            }
+            List<String> classPath = responder.classPathForPage();
+            String pageFingerprint = PageFingerprint.of(responder.page);
+            return new Reader(responder, classPath, pageFingerprint,
+                    responder.contentDigest(pageFingerprint, classPath));
         }
 
+        @Override
+        public boolean exists() {
+            return responder.page != null;
+        }
+
+        @Override
+        public List<String> getClassPath() {
+            return classPath;
+        }
 
+        @Override
+        public String getContentDigest() {
+            return contentDigest;
+        }
+
+        @Override
+        public PageAutoCompleteData read() {
+            return responder.autoCompleteDataForPage(pageFingerprint);
+        }
+
+        @Override
+        public RequestTimings getTimings() {
+            return responder.timings;
+        }
+
+        @Override
+        public void acquireClassLoader() {
+            responder.acquireClassLoader(classPath);
+        }
+
+        @Override
+        public void releaseClassLoader() {
+            responder.releaseClassLoader();
+        }
+
+        @Override
+        public Map<String, List<FixtureClass>> findClassesByPackage(Set<String> packageNames) {
+            return responder.classLoader == null
+                    ? Collections.<String, List<FixtureClass>>emptyMap()
+                    : responder.findClassesByPackage(packageNames);
+        }
+
+        @Override
+        public JSONObject describe(FixtureClass fixtureClass) {
+            return responder.describeCached(fixtureClass, responder.metadataVariant());
+        }
+
+        @Override
+        public Iterable<JSONObject> describeClasses(Set<String> packageNames) {
+            return responder.addClassesToAutocompleteList(packageNames);
+        }
     }
 }
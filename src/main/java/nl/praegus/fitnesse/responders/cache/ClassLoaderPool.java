@@ -0,0 +1,329 @@
+package nl.praegus.fitnesse.responders.cache;
+
+import nl.praegus.fitnesse.responders.util.DirectoryWatcher;
+import nl.praegus.fitnesse.responders.util.FileFingerprint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares one class loader between all requests for pages with the same classpath.
+ * Loaders are reference counted through {@link Lease}s. The least recently used loaders are evicted when the pool
+ * grows beyond its maximum size, idle loaders are evicted after a timeout, and a loader is replaced as soon as one of
+ * its jars or loaded class files changed on disk. Loaded class files are only checked in the package directories the
+ * {@link DirectoryWatcher} reports changed, when it watches all class directories of the loader. The watcher's sequence
+ * is taken before the pool is locked, and changes older than the sequences of all pooled loaders are forgotten.
+ * Evicted loaders are closed once the last lease on them is released.
+ * Size and timeout can be set with the system properties {@value #MAX_SIZE_SYSPROP} and {@value #IDLE_MINUTES_SYSPROP}.
+ */
+
+public final class ClassLoaderPool {
+    public static final String MAX_SIZE_SYSPROP = "autoCompleteClassLoaderPoolSize";
+    public static final String IDLE_MINUTES_SYSPROP = "autoCompleteClassLoaderIdleMinutes";
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassLoaderPool.class);
+    private static final ClassLoaderPool INSTANCE = new ClassLoaderPool(
+            Integer.getInteger(MAX_SIZE_SYSPROP, 16),
+            TimeUnit.MINUTES.toMillis(Integer.getInteger(IDLE_MINUTES_SYSPROP, 30)));
+
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final Map<List<String>, PooledLoader> loaders = new LinkedHashMap<>(16, 0.75f, true);
+    private long evictionCount;
+
+    ClassLoaderPool(int maxSize, long idleTimeoutMillis) {
+        this.maxSize = Math.max(1, maxSize);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public static ClassLoaderPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Normalizes the classpath elements to absolute paths without duplicates, in their original order.
+     */
+    public static List<String> normalize(List<String> classPathElements) {
+        Set<String> normalized = new LinkedHashSet<>();
+        for (String element : classPathElements) {
+            normalized.add(new File(element).getAbsoluteFile().toPath().normalize().toString());
+        }
+        return Collections.unmodifiableList(new ArrayList<>(normalized));
+    }
+
+    /**
+     * Returns a lease on the shared class loader for the given classpath, creating it when needed.
+     * The lease must be closed when the caller is done with the loader and the classes loaded through it.
+     */
+    public Lease acquire(List<String> classPathElements) {
+        List<String> key = normalize(classPathElements);
+        long watchSequence = watchDirectories(key);
+        List<PooledLoader> toClose = new ArrayList<>();
+        PooledLoader loader;
+        long oldestWatchSequence;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            oldestWatchSequence = oldestWatchSequence();
+            loader = loaders.get(key);
+            if (loader != null && loader.isStale(watchSequence)) {
+                loaders.remove(key);
+                evict(loader, toClose);
+                loader = null;
+            }
+            if (loader == null) {
+                loader = new PooledLoader(key, watchSequence);
+                loaders.put(key, loader);
+            }
+            loader.refCount++;
+            loader.lastUsed = now;
+            evictIdleAndOverflow(now, toClose);
+        }
+        if (oldestWatchSequence < Long.MAX_VALUE) {
+            DirectoryWatcher.getInstance().forgetChangesUpTo(oldestWatchSequence);
+        }
+        closeAll(toClose);
+        return new Lease(this, loader);
+    }
+
+    public synchronized int size() {
+        return loaders.size();
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Evicts all loaders, closing those that are not in use.
+     */
+    public void clear() {
+        List<PooledLoader> toClose = new ArrayList<>();
+        synchronized (this) {
+            for (PooledLoader loader : loaders.values()) {
+                evict(loader, toClose);
+            }
+            loaders.clear();
+        }
+        closeAll(toClose);
+    }
+
+    /**
+     * Starts watching the class directories of the classpath.
+     * @return the watcher's sequence, taken after the directories are watched
+     */
+    private static long watchDirectories(List<String> classPath) {
+        DirectoryWatcher watcher = DirectoryWatcher.getInstance();
+        for (String element : classPath) {
+            File file = new File(element);
+            if (file.isDirectory()) {
+                watcher.watch(file);
+            }
+        }
+        return watcher.getSequence();
+    }
+
+    /**
+     * @return the oldest watcher sequence a pooled loader still asks changes for, taken before the loader of the
+     * request is checked, as the indexes of its directories are only brought up to date after that
+     */
+    private long oldestWatchSequence() {
+        long oldest = Long.MAX_VALUE;
+        for (PooledLoader loader : loaders.values()) {
+            for (long sequence : loader.watchedDirectories.values()) {
+                oldest = Math.min(oldest, sequence);
+            }
+        }
+        return oldest;
+    }
+
+    private void release(PooledLoader loader) {
+        boolean close;
+        synchronized (this) {
+            loader.refCount--;
+            loader.lastUsed = System.currentTimeMillis();
+            close = loader.evicted && loader.refCount == 0;
+        }
+        if (close) {
+            closeAll(Collections.singletonList(loader));
+        }
+    }
+
+    private void evictIdleAndOverflow(long now, List<PooledLoader> toClose) {
+        Iterator<PooledLoader> eldestFirst = loaders.values().iterator();
+        while (eldestFirst.hasNext()) {
+            PooledLoader loader = eldestFirst.next();
+            boolean idle = loader.refCount == 0 && now - loader.lastUsed > idleTimeoutMillis;
+            if (idle || loaders.size() > maxSize) {
+                eldestFirst.remove();
+                evict(loader, toClose);
+            }
+        }
+    }
+
+    private void evict(PooledLoader loader, List<PooledLoader> toClose) {
+        loader.evicted = true;
+        evictionCount++;
+        if (loader.refCount == 0) {
+            toClose.add(loader);
+        }
+    }
+
+    private static void closeAll(List<PooledLoader> toClose) {
+        for (PooledLoader loader : toClose) {
+            try {
+                loader.close();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to close class loader for " + loader.classPath + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A reference to a pooled class loader; closing it releases the reference.
+     */
+    public static final class Lease implements AutoCloseable {
+        private final ClassLoaderPool pool;
+        private final PooledLoader loader;
+        private boolean released;
+
+        private Lease(ClassLoaderPool pool, PooledLoader loader) {
+            this.pool = pool;
+            this.loader = loader;
+        }
+
+        public URLClassLoader getClassLoader() {
+            return loader;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                pool.release(loader);
+            }
+        }
+    }
+
+    /**
+     * Class loader that remembers the fingerprints of its jars and of the class files it loaded from directories,
+     * so the pool can tell when it no longer reflects what is on disk.
+     */
+    private static final class PooledLoader extends URLClassLoader {
+        static {
+            ClassLoader.registerAsParallelCapable();
+        }
+
+        private final List<String> classPath;
+        private final Map<File, FileFingerprint> jarFingerprints = new LinkedHashMap<>();
+        private final Map<File, FileFingerprint> classFileFingerprints = new ConcurrentHashMap<>();
+        private final Map<File, Long> watchedDirectories = new LinkedHashMap<>();
+        private boolean watchingAllDirectories = true;
+        private int refCount;
+        private long lastUsed;
+        private boolean evicted;
+
+        private PooledLoader(List<String> classPath, long watchSequence) {
+            super(toUrls(classPath), ClassLoader.getSystemClassLoader());
+            this.classPath = classPath;
+            for (String element : classPath) {
+                File file = new File(element);
+                if (file.isFile()) {
+                    jarFingerprints.put(file, FileFingerprint.of(file));
+                } else if (file.isDirectory()) {
+                    DirectoryWatcher watcher = DirectoryWatcher.getInstance();
+                    if (watcher.watch(file)) {
+                        watchedDirectories.put(file, watchSequence);
+                    } else {
+                        watchingAllDirectories = false;
+                    }
+                }
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            Class<?> klass = super.findClass(name);
+            URL resource = findResource(name.replace('.', '/') + ".class");
+            if (resource != null && "file".equals(resource.getProtocol())) {
+                try {
+                    File classFile = new File(resource.toURI());
+                    classFileFingerprints.put(classFile, FileFingerprint.of(classFile));
+                } catch (URISyntaxException e) {
+                    //class file changes cannot be tracked, the jar or directory fingerprint still applies
+                }
+            }
+            return klass;
+        }
+
+        /**
+         * @return whether a jar or loaded class file changed; when not, the changes up to the given watcher sequence
+         * have been checked and are not asked for again
+         */
+        private boolean isStale(long watchSequence) {
+            for (Map.Entry<File, FileFingerprint> jar : jarFingerprints.entrySet()) {
+                if (!FileFingerprint.of(jar.getKey()).equals(jar.getValue())) {
+                    return true;
+                }
+            }
+            Set<File> changedDirectories = changedDirectories();
+            for (Map.Entry<File, FileFingerprint> classFile : classFileFingerprints.entrySet()) {
+                if ((changedDirectories == null || changedDirectories.contains(classFile.getKey().getParentFile()))
+                        && !FileFingerprint.of(classFile.getKey()).equals(classFile.getValue())) {
+                    return true;
+                }
+            }
+            if (changedDirectories != null) {
+                watchedDirectories.replaceAll((directory, sequence) -> Math.max(sequence, watchSequence));
+            }
+            return false;
+        }
+
+        /**
+         * @return the directories changed since the loader was made, or null when not all directories are watched
+         */
+        private Set<File> changedDirectories() {
+            if (!watchingAllDirectories) {
+                return null;
+            }
+            Set<File> changed = new HashSet<>();
+            for (Map.Entry<File, Long> directory : watchedDirectories.entrySet()) {
+                Set<File> changedInDirectory = DirectoryWatcher.getInstance()
+                        .getChangedSince(directory.getKey(), directory.getValue());
+                if (changedInDirectory == null) {
+                    return null;
+                }
+                changed.addAll(changedInDirectory);
+            }
+            return changed;
+        }
+
+        private static URL[] toUrls(List<String> classPath) {
+            List<URL> urls = new ArrayList<>();
+            for (String element : classPath) {
+                try {
+                    urls.add(new File(element).toURI().toURL());
+                } catch (MalformedURLException e) {
+                    //this shouldn't happen!
+                    LOGGER.error(e.getMessage());
+                }
+            }
+            return urls.toArray(new URL[0]);
+        }
+    }
+}
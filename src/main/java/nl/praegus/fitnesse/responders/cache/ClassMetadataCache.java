@@ -0,0 +1,368 @@
+package nl.praegus.fitnesse.responders.cache;
+
+import nl.praegus.fitnesse.responders.metadata.FixtureClass;
+import nl.praegus.fitnesse.responders.util.ContentDigest;
+import nl.praegus.fitnesse.responders.util.FileFingerprint;
+import nl.praegus.fitnesse.responders.util.PersistentJarCache;
+import nl.praegus.fitnesse.responders.util.SingleFlight;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Process-wide cache of the autocomplete metadata (methods, constructors, names) of fixture classes.
+ * Entries are keyed by the classpath entry a class was loaded from, its class name and the classpath it was loaded
+ * with (super classes and javadoc may come from other entries of the classpath), and are only reused while
+ * the fingerprint (size and modification time) of the jar, or of the class file for directory entries, is unchanged,
+ * and so are those of the jars and class files its super classes and interfaces were read from: inherited methods
+ * change when a jar with a base class is replaced, even when the jar of the class itself is not.
+ * Classes without a known location on disk (e.g. bootstrap classes) are never cached. The metadata is kept in a
+ * {@link MetadataStore}, bounded by its estimated size. A class that is being described for one request is not
+ * described again for concurrent requests with the same key, they wait for it (see {@link SingleFlight}); a request
+ * with another classpath describes it itself.
+ * When the {@link PersistentJarCache} is enabled, the metadata of classes in jars is also written to disk in the
+ * background after {@link #persist()}, and read back for all classes of a jar at once, by {@link #preload(List)} or
+ * the first time one of them is asked for.
+ */
+
+public final class ClassMetadataCache {
+    private static final MetadataStore<Key> STORE = MetadataStore.fromSystemProperties();
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final SingleFlight<Key, JSONObject> FLIGHTS = new SingleFlight<>();
+    private static final String CLASSES_SECTION = "metadata";
+    private static final String METADATA = "metadata";
+    private static final String SUPERTYPES = "supertypes";
+    private static final ConcurrentMap<File, FileFingerprint> LOADED_JARS = new ConcurrentHashMap<>();
+    private static final Map<File, PendingJar> PENDING = new HashMap<>();
+    private static final AtomicLong DISK_LOADS = new AtomicLong();
+    private static final AtomicBoolean WRITE_SCHEDULED = new AtomicBoolean();
+    private static final AtomicBoolean PRUNED = new AtomicBoolean();
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "autocomplete-disk-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ClassMetadataCache() {
+    }
+
+    /**
+     * @return the key of a classpath for {@link #get(FixtureClass, String, String, Function)}
+     */
+    public static String classPathKey(List<String> classPathElements) {
+        ContentDigest digest = new ContentDigest();
+        for (String element : ClassLoaderPool.normalize(classPathElements)) {
+            digest.add(element);
+        }
+        return digest.toHex();
+    }
+
+    /**
+     * @param fixtureClass the class to describe
+     * @param classPath    key of the classpath the class was loaded with, see {@link #classPathKey(List)}
+     * @param variant      anything besides the class itself that influences the metadata (e.g. notation settings)
+     * @param builder      computes the metadata when there is no valid cached entry, adding the jars and class files
+     *                     of the super classes and interfaces, and of the javadoc, it was read from to the given set
+     * @return the cached or freshly built metadata; callers must not modify it
+     */
+    public static JSONObject get(FixtureClass fixtureClass, String classPath, String variant,
+                                 Function<Set<File>, JSONObject> builder) {
+        File entry = fixtureClass.getClassPathEntry();
+        if (entry == null) {
+            return builder.apply(new HashSet<>());
+        }
+
+        Key key = new Key(entry.getPath(), classPath, fixtureClass.getName(), variant);
+        FileFingerprint fingerprint = fingerprintOf(entry, fixtureClass);
+        JSONObject cached = cached(key, fingerprint);
+        if (cached != null) {
+            HITS.incrementAndGet();
+            return cached;
+        }
+
+        return FLIGHTS.get(key, () -> {
+            JSONObject metadata = cached(key, fingerprint);
+            if (metadata != null) {
+                HITS.incrementAndGet();
+                return metadata;
+            }
+            if (loadPersisted(entry, fingerprint)) {
+                metadata = cached(key, fingerprint);
+                if (metadata != null) {
+                    HITS.incrementAndGet();
+                    return metadata;
+                }
+            }
+            MISSES.incrementAndGet();
+            Set<File> supertypeSources = new LinkedHashSet<>();
+            metadata = builder.apply(supertypeSources);
+            supertypeSources.remove(entry);
+            supertypeSources.remove(new File(entry, fixtureClass.getResourceName()));
+            Version version = new Version(fingerprint, Version.fingerprintsOf(supertypeSources));
+            metadata = STORE.put(key, version, metadata);
+            if (entry.isFile() && PersistentJarCache.getInstance().isEnabled()) {
+                addPending(entry, fingerprint, key, version, metadata);
+            }
+            return metadata;
+        });
+    }
+
+    /**
+     * Has the metadata described since the last call written to the {@link PersistentJarCache}, if it is enabled.
+     * Writing is done on a background thread; calls made while it is pending are written together, and only the
+     * classes described since are added to the files of their jars.
+     */
+    public static void persist() {
+        synchronized (PENDING) {
+            if (PENDING.isEmpty() || !WRITE_SCHEDULED.compareAndSet(false, true)) {
+                return;
+            }
+        }
+        WRITER.execute(() -> {
+            WRITE_SCHEDULED.set(false);
+            writePending();
+        });
+    }
+
+    /**
+     * Reads the metadata kept on disk for the jars on the classpath into the cache, if it is not read already.
+     */
+    public static void preload(List<String> classPathElements) {
+        for (String element : classPathElements) {
+            File jar = new File(element).getAbsoluteFile();
+            if (jar.isFile()) {
+                loadPersisted(jar, FileFingerprint.of(jar));
+            }
+        }
+    }
+
+    private static void writePending() {
+        if (PRUNED.compareAndSet(false, true)) {
+            // once per run, files of jars that were removed or replaced since are of no use anymore
+            PersistentJarCache.getInstance().prune();
+        }
+        Map<File, PendingJar> pending;
+        synchronized (PENDING) {
+            pending = new HashMap<>(PENDING);
+            PENDING.clear();
+        }
+        for (Map.Entry<File, PendingJar> jar : pending.entrySet()) {
+            JSONObject classPaths = new JSONObject();
+            for (Map.Entry<Key, PendingClass> described : jar.getValue().classes.entrySet()) {
+                Key key = described.getKey();
+                JSONObject variants = classPaths.optJSONObject(key.classPath);
+                if (variants == null) {
+                    variants = new JSONObject();
+                    classPaths.put(key.classPath, variants);
+                }
+                JSONObject classes = variants.optJSONObject(key.variant);
+                if (classes == null) {
+                    classes = new JSONObject();
+                    variants.put(key.variant, classes);
+                }
+                classes.put(key.className, new JSONObject()
+                        .put(METADATA, described.getValue().metadata)
+                        .put(SUPERTYPES, new JSONObject(described.getValue().version.supertypeFingerprints)));
+            }
+            PersistentJarCache.getInstance().append(jar.getKey(), jar.getValue().fingerprint, CLASSES_SECTION,
+                    classPaths);
+        }
+    }
+
+    /**
+     * @return whether metadata of the jar was read from disk
+     */
+    private static boolean loadPersisted(File jar, FileFingerprint fingerprint) {
+        if (!jar.isFile() || !PersistentJarCache.getInstance().isEnabled()) {
+            return false;
+        }
+        synchronized (LOADED_JARS) {
+            if (fingerprint.equals(LOADED_JARS.get(jar))) {
+                return false;
+            }
+            LOADED_JARS.put(jar, fingerprint);
+            JSONObject classPaths = PersistentJarCache.getInstance().read(jar, fingerprint, CLASSES_SECTION);
+            if (classPaths == null) {
+                return false;
+            }
+            for (String classPath : classPaths.keySet()) {
+                JSONObject variants = classPaths.getJSONObject(classPath);
+                for (String variant : variants.keySet()) {
+                    JSONObject classes = variants.getJSONObject(variant);
+                    for (String className : classes.keySet()) {
+                        loadPersisted(new Key(jar.getPath(), classPath, className, variant), fingerprint,
+                                classes.getJSONObject(className));
+                    }
+                }
+            }
+            DISK_LOADS.incrementAndGet();
+            return true;
+        }
+    }
+
+    private static void loadPersisted(Key key, FileFingerprint fingerprint, JSONObject persisted) {
+        JSONObject metadata = persisted.optJSONObject(METADATA);
+        JSONObject supertypes = persisted.optJSONObject(SUPERTYPES);
+        if (metadata != null && supertypes != null) {
+            Map<File, String> supertypeFingerprints = new HashMap<>();
+            for (String path : supertypes.keySet()) {
+                supertypeFingerprints.put(new File(path), supertypes.getString(path));
+            }
+            STORE.put(key, new Version(fingerprint, supertypeFingerprints), metadata);
+        }
+    }
+
+    private static void addPending(File jar, FileFingerprint fingerprint, Key key, Version version,
+                                   JSONObject metadata) {
+        synchronized (PENDING) {
+            PendingJar pending = PENDING.get(jar);
+            if (pending == null || !pending.fingerprint.equals(fingerprint)) {
+                pending = new PendingJar(fingerprint);
+                PENDING.put(jar, pending);
+            }
+            pending.classes.put(key, new PendingClass(version, metadata));
+        }
+    }
+
+    private static JSONObject cached(Key key, FileFingerprint fingerprint) {
+        return STORE.get(key, version -> ((Version) version).isCurrent(fingerprint));
+    }
+
+    public static long getHitCount() {
+        return HITS.get();
+    }
+
+    public static long getMissCount() {
+        return MISSES.get();
+    }
+
+    /**
+     * @return the number of jars whose metadata was read from disk
+     */
+    public static long getDiskLoadCount() {
+        return DISK_LOADS.get();
+    }
+
+    public static SingleFlight<?, JSONObject> getFlights() {
+        return FLIGHTS;
+    }
+
+    public static MetadataStore<?> getStore() {
+        return STORE;
+    }
+
+    public static int size() {
+        return STORE.size();
+    }
+
+    public static void clear() {
+        STORE.clear();
+        LOADED_JARS.clear();
+    }
+
+    private static FileFingerprint fingerprintOf(File entry, FixtureClass fixtureClass) {
+        if (entry.isDirectory()) {
+            return FileFingerprint.of(new File(entry, fixtureClass.getResourceName()));
+        }
+        return FileFingerprint.of(entry);
+    }
+
+    private static final class Key {
+        private final String classPathEntry;
+        private final String classPath;
+        private final String className;
+        private final String variant;
+
+        private Key(String classPathEntry, String classPath, String className, String variant) {
+            this.classPathEntry = classPathEntry;
+            this.classPath = classPath;
+            this.className = className;
+            this.variant = variant;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return classPathEntry.equals(other.classPathEntry)
+                    && Objects.equals(classPath, other.classPath)
+                    && className.equals(other.className)
+                    && Objects.equals(variant, other.variant);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(classPathEntry, classPath, className, variant);
+        }
+    }
+
+    /**
+     * The state of the files metadata was read from: the jar or class file of the class itself, and those of its super
+     * classes and interfaces. The latter are kept as text, as they are on disk.
+     */
+    private static final class Version {
+        private final FileFingerprint fingerprint;
+        private final Map<File, String> supertypeFingerprints;
+
+        private Version(FileFingerprint fingerprint, Map<File, String> supertypeFingerprints) {
+            this.fingerprint = fingerprint;
+            this.supertypeFingerprints = supertypeFingerprints;
+        }
+
+        private static Map<File, String> fingerprintsOf(Set<File> files) {
+            Map<File, String> fingerprints = new HashMap<>();
+            for (File file : files) {
+                fingerprints.put(file, FileFingerprint.of(file).toString());
+            }
+            return fingerprints;
+        }
+
+        private boolean isCurrent(FileFingerprint current) {
+            if (!fingerprint.equals(current)) {
+                return false;
+            }
+            for (Map.Entry<File, String> supertype : supertypeFingerprints.entrySet()) {
+                if (!FileFingerprint.of(supertype.getKey()).toString().equals(supertype.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class PendingClass {
+        private final Version version;
+        private final JSONObject metadata;
+
+        private PendingClass(Version version, JSONObject metadata) {
+            this.version = version;
+            this.metadata = metadata;
+        }
+    }
+
+    private static final class PendingJar {
+        private final FileFingerprint fingerprint;
+        private final Map<Key, PendingClass> classes = new HashMap<>();
+
+        private PendingJar(FileFingerprint fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
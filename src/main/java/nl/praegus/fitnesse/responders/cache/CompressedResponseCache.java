@@ -0,0 +1,95 @@
+package nl.praegus.fitnesse.responders.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the gzip compressed bodies of the most recent responses, so a client asking for a page again gets the same
+ * bytes without the page being scanned and the json being compressed again. Bodies are keyed by the entity tag of the
+ * response, which is derived from everything the body depends on. Least recently used bodies are evicted while the
+ * bodies and their tags take more than {@value #MAX_MEGABYTES_SYSPROP} megabytes (default 16).
+ */
+
+public final class CompressedResponseCache {
+    public static final String MAX_MEGABYTES_SYSPROP = "autoCompleteCompressedCacheMegabytes";
+    private static final int ENTRY_SIZE = 120;
+    private static final CompressedResponseCache INSTANCE = new CompressedResponseCache(
+            Long.getLong(MAX_MEGABYTES_SYSPROP, 16) * 1024 * 1024);
+
+    private final long maxBytes;
+    private final Map<String, byte[]> bodies = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long bytes;
+    private long evictions;
+
+    CompressedResponseCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    public static CompressedResponseCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the compressed body of the response with the entity tag, or null when it is not cached
+     */
+    public byte[] get(String etag) {
+        byte[] body;
+        synchronized (this) {
+            body = bodies.get(etag);
+        }
+        (body == null ? misses : hits).incrementAndGet();
+        return body;
+    }
+
+    public synchronized void put(String etag, byte[] body) {
+        byte[] previous = bodies.put(etag, body);
+        bytes += sizeOf(etag, body) - (previous == null ? 0 : sizeOf(etag, previous));
+        Iterator<Map.Entry<String, byte[]>> eldestFirst = bodies.entrySet().iterator();
+        while (bytes > maxBytes && eldestFirst.hasNext()) {
+            Map.Entry<String, byte[]> eldest = eldestFirst.next();
+            bytes -= sizeOf(eldest.getKey(), eldest.getValue());
+            eldestFirst.remove();
+            evictions++;
+        }
+    }
+
+    private static long sizeOf(String etag, byte[] body) {
+        return ENTRY_SIZE + 2L * etag.length() + body.length;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public synchronized int size() {
+        return bodies.size();
+    }
+
+    /**
+     * @return the estimated heap used by the cached bodies and their entity tags
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized void clear() {
+        bodies.clear();
+        bytes = 0;
+    }
+}
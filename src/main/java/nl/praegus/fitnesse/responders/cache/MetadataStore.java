@@ -0,0 +1,247 @@
+package nl.praegus.fitnesse.responders.cache;
+
+import nl.praegus.fitnesse.responders.util.StringPool;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Memory bounded store of metadata json, used by {@link ClassMetadataCache}. Entries are kept while their estimated
+ * size fits in a byte budget; beyond it the least recently used entries are evicted, to a tier of soft references
+ * when enabled, which the garbage collector clears when the heap runs short. The json is stored as a copy in which
+ * strings are replaced by canonical instances (see {@link StringPool}), so names repeated across classes are kept
+ * once; a string is counted while at least one entry within the budget holds it.
+ * The budget only covers this store: a {@link nl.praegus.fitnesse.responders.query.CompletionIndexCache} keeps the
+ * members of the classes it indexed, also after they are evicted here, and has a byte budget of its own.
+ * The budget is set in megabytes with {@value #MAX_MEGABYTES_SYSPROP} (default 64), the soft tier is switched with
+ * {@value #SOFT_TIER_SYSPROP} (default true).
+ */
+
+public final class MetadataStore<K> {
+    public static final String MAX_MEGABYTES_SYSPROP = "autoCompleteMetadataCacheMegabytes";
+    public static final String SOFT_TIER_SYSPROP = "autoCompleteMetadataSoftCache";
+    private static final int OBJECT_SIZE = 56;
+    private static final int MEMBER_SIZE = 48;
+    private static final int ARRAY_SIZE = 40;
+    private static final int REFERENCE_SIZE = 8;
+    private static final int STRING_SIZE = 40;
+    private static final int BOXED_SIZE = 16;
+
+    private final long maxBytes;
+    private final boolean softTier;
+    private final StringPool strings = new StringPool();
+    private final Map<String, Integer> stringHolders = new HashMap<>();
+    private final Map<K, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<K, SoftEntry<K>> softEntries = new HashMap<>();
+    private final ReferenceQueue<Entry> cleared = new ReferenceQueue<>();
+    private long bytes;
+    private long evictions;
+    private long softHits;
+
+    MetadataStore(long maxBytes, boolean softTier) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.softTier = softTier;
+    }
+
+    static <K> MetadataStore<K> fromSystemProperties() {
+        return new MetadataStore<>(Long.getLong(MAX_MEGABYTES_SYSPROP, 64) << 20,
+                Boolean.parseBoolean(System.getProperty(SOFT_TIER_SYSPROP, "true")));
+    }
+
+    /**
+     * @return the metadata stored for the key with an equal fingerprint, or null
+     */
+    JSONObject get(K key, Object fingerprint) {
+        return get(key, fingerprint::equals);
+    }
+
+    /**
+     * @return the metadata stored for the key when its fingerprint is current, or null
+     */
+    synchronized JSONObject get(K key, Predicate<Object> isCurrent) {
+        purgeCleared();
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            SoftEntry<K> softEntry = softEntries.remove(key);
+            entry = softEntry == null ? null : softEntry.get();
+            if (entry == null || !isCurrent.test(entry.fingerprint)) {
+                return null;
+            }
+            softHits++;
+            add(key, entry);
+            return entry.metadata;
+        }
+        return isCurrent.test(entry.fingerprint) ? entry.metadata : null;
+    }
+
+    /**
+     * Stores a copy of the metadata in which strings are replaced by canonical instances; the given metadata is left
+     * as it is.
+     * @return the stored copy, which must not be modified
+     */
+    synchronized JSONObject put(K key, Object fingerprint, JSONObject metadata) {
+        purgeCleared();
+        softEntries.remove(key);
+        CanonicalCopy copy = new CanonicalCopy();
+        JSONObject canonical = (JSONObject) copy.of(metadata);
+        add(key, new Entry(fingerprint, canonical, copy.size, copy.strings.toArray(new String[0])));
+        return canonical;
+    }
+
+    private void add(K key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            remove(previous);
+        }
+        bytes += entry.size;
+        for (String string : entry.strings) {
+            if (stringHolders.merge(string, 1, Integer::sum) == 1) {
+                bytes += sizeOf(string);
+            }
+        }
+
+        Iterator<Map.Entry<K, Entry>> eldestFirst = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldestFirst.hasNext()) {
+            Map.Entry<K, Entry> eldest = eldestFirst.next();
+            eldestFirst.remove();
+            remove(eldest.getValue());
+            evictions++;
+            if (softTier) {
+                softEntries.put(eldest.getKey(), new SoftEntry<>(eldest.getKey(), eldest.getValue(), cleared));
+            }
+        }
+    }
+
+    private void remove(Entry entry) {
+        bytes -= entry.size;
+        for (String string : entry.strings) {
+            int holders = stringHolders.get(string) - 1;
+            if (holders == 0) {
+                stringHolders.remove(string);
+                bytes -= sizeOf(string);
+            } else {
+                stringHolders.put(string, holders);
+            }
+        }
+    }
+
+    private void purgeCleared() {
+        for (Reference<? extends Entry> reference = cleared.poll(); reference != null; reference = cleared.poll()) {
+            SoftEntry<?> softEntry = (SoftEntry<?>) reference;
+            softEntries.remove(softEntry.key, softEntry);
+        }
+    }
+
+    private static long sizeOf(String string) {
+        return STRING_SIZE + 2L * string.length();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int softSize() {
+        purgeCleared();
+        return softEntries.size();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        softEntries.clear();
+        stringHolders.clear();
+        bytes = 0;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized long getSoftHitCount() {
+        return softHits;
+    }
+
+    public long getDeduplicatedCount() {
+        return strings.getDeduplicatedCount();
+    }
+
+    private static final class Entry {
+        private final Object fingerprint;
+        private final JSONObject metadata;
+        private final long size;
+        private final String[] strings;
+
+        private Entry(Object fingerprint, JSONObject metadata, long size, String[] strings) {
+            this.fingerprint = Objects.requireNonNull(fingerprint);
+            this.metadata = metadata;
+            this.size = size;
+            this.strings = strings;
+        }
+    }
+
+    /**
+     * Copies json with canonical strings, estimating the heap used by everything but the strings, which are
+     * collected to be counted once for all entries holding them.
+     */
+    private final class CanonicalCopy {
+        private final Set<String> strings = new HashSet<>();
+        private long size;
+
+        private Object of(Object value) {
+            if (value instanceof String) {
+                String canonical = MetadataStore.this.strings.canonical((String) value);
+                strings.add(canonical);
+                return canonical;
+            }
+            if (value instanceof JSONObject) {
+                JSONObject object = (JSONObject) value;
+                JSONObject copy = new JSONObject();
+                size += OBJECT_SIZE;
+                for (String name : object.keySet()) {
+                    size += MEMBER_SIZE;
+                    copy.put((String) of(name), of(object.get(name)));
+                }
+                return copy;
+            }
+            if (value instanceof JSONArray) {
+                JSONArray array = (JSONArray) value;
+                JSONArray copy = new JSONArray();
+                size += ARRAY_SIZE;
+                for (int i = 0; i < array.length(); i++) {
+                    size += REFERENCE_SIZE;
+                    copy.put(of(array.get(i)));
+                }
+                return copy;
+            }
+            size += BOXED_SIZE;
+            return value;
+        }
+    }
+
+    private static final class SoftEntry<K> extends SoftReference<Entry> {
+        private final K key;
+
+        private SoftEntry(K key, Entry entry, ReferenceQueue<Entry> queue) {
+            super(entry, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package nl.praegus.fitnesse.responders.cache;
+
+import nl.praegus.fitnesse.responders.util.SingleFlight;
+import nl.praegus.fitnesse.responders.wiki.PageAutoCompleteData;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of the autocomplete data read from the tables of a page, so a page is only rendered and scanned
+ * again after it, or one of the pages it includes or inherits, changed. There is one entry per page path, reused
+ * while the page fingerprint (see {@link nl.praegus.fitnesse.responders.wiki.PageFingerprint}) is unchanged; the least
+ * recently used pages are evicted when there are more than {@value #MAX_SIZE_SYSPROP} (default 64) entries.
+ * Concurrent requests for the same version of a page wait for the one reading it (see {@link SingleFlight}).
+ */
+
+public final class PageResultCache {
+    public static final String MAX_SIZE_SYSPROP = "autoCompletePageCacheSize";
+    private static final PageResultCache INSTANCE = new PageResultCache(Integer.getInteger(MAX_SIZE_SYSPROP, 64));
+
+    private final int maxSize;
+    private final Map<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final SingleFlight<String, PageAutoCompleteData> flights = new SingleFlight<>();
+
+    PageResultCache(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > PageResultCache.this.maxSize;
+            }
+        };
+    }
+
+    public static PageResultCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param pagePath    full path of the page
+     * @param fingerprint fingerprint of the page and the pages it includes or inherits
+     * @param builder     renders and scans the page when there is no valid cached entry
+     */
+    public PageAutoCompleteData get(String pagePath, String fingerprint, Supplier<PageAutoCompleteData> builder) {
+        PageAutoCompleteData cached = cached(pagePath, fingerprint);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        return flights.get(pagePath + '\n' + fingerprint, () -> {
+            // the page may have been read by a request that just finished
+            PageAutoCompleteData data = cached(pagePath, fingerprint);
+            if (data != null) {
+                hits.incrementAndGet();
+                return data;
+            }
+            misses.incrementAndGet();
+            data = builder.get();
+            synchronized (this) {
+                entries.put(pagePath, new Entry(fingerprint, data));
+            }
+            return data;
+        });
+    }
+
+    private synchronized PageAutoCompleteData cached(String pagePath, String fingerprint) {
+        Entry cached = entries.get(pagePath);
+        return cached != null && cached.fingerprint.equals(fingerprint) ? cached.data : null;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public SingleFlight<String, PageAutoCompleteData> getFlights() {
+        return flights;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final PageAutoCompleteData data;
+
+        private Entry(String fingerprint, PageAutoCompleteData data) {
+            this.fingerprint = fingerprint;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package nl.praegus.fitnesse.responders.handlers;
+
+import nl.praegus.fitnesse.responders.cache.ClassLoaderPool;
+import nl.praegus.fitnesse.responders.json.JsonStreamResponse;
+import nl.praegus.fitnesse.responders.metadata.FixtureClass;
+import nl.praegus.fitnesse.responders.util.ContentDigest;
+import nl.praegus.fitnesse.responders.util.ScanExecutor;
+import nl.praegus.fitnesse.responders.wiki.PageAutoCompleteData;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Answers a request for the data of several pages at once ({@code ?pages=Suite.PageOne,Suite.PageTwo}). Pages with the
+ * same classpath share one class loader and package scan, and each class is described and returned once, in a shared
+ * class section the pages refer to by index.
+ */
+
+public final class BatchHandler {
+    private final Map<String, PageReader> pages = new LinkedHashMap<>();
+    private int describedClasses;
+
+    /**
+     * @param pagePaths comma separated full page names, duplicates are read once
+     */
+    public BatchHandler(String pagePaths, Function<String, PageReader> reader) {
+        for (String pagePath : pagePaths.split(",")) {
+            String trimmed = pagePath.trim();
+            if (!trimmed.isEmpty() && !pages.containsKey(trimmed)) {
+                pages.put(trimmed, reader.apply(trimmed));
+            }
+        }
+    }
+
+    /**
+     * @return digest of the page names and of everything their data is derived from
+     */
+    public String getContentDigest() {
+        ContentDigest digest = new ContentDigest();
+        for (Map.Entry<String, PageReader> page : pages.entrySet()) {
+            digest.add(page.getKey()).add(page.getValue().exists() ? page.getValue().getContentDigest() : "");
+        }
+        return digest.toHex();
+    }
+
+    /**
+     * Reads the pages and describes their classes, before the body is written.
+     */
+    public JsonStreamResponse.Body respond() {
+        Map<List<String>, List<PageReader>> pagesByClassPath = new LinkedHashMap<>();
+        for (PageReader page : pages.values()) {
+            if (page.exists()) {
+                pagesByClassPath.computeIfAbsent(page.getClassPath() == null
+                        ? null : ClassLoaderPool.normalize(page.getClassPath()), c -> new ArrayList<>()).add(page);
+            }
+        }
+        Map<PageReader, JSONObject> results = new IdentityHashMap<>();
+        List<JSONObject> classes = new ArrayList<>();
+        Map<JSONObject, Integer> classIndexes = new IdentityHashMap<>();
+        for (List<PageReader> samePath : pagesByClassPath.values()) {
+            PageReader first = samePath.get(0);
+            try {
+                first.acquireClassLoader();
+                addClasses(first, samePath, results, classes, classIndexes);
+            } finally {
+                first.releaseClassLoader();
+            }
+        }
+        describedClasses = classes.size();
+
+        List<JSONObject> pageResults = new ArrayList<>(pages.size());
+        for (Map.Entry<String, PageReader> page : pages.entrySet()) {
+            JSONObject result = results.get(page.getValue());
+            pageResults.add(result == null
+                    ? new JSONObject().put("page", page.getKey()).put("error", "Page not found")
+                    : result.put("page", page.getKey()));
+        }
+        return json -> json.beginObject()
+                .array("pages", pageResults)
+                .array("classes", classes)
+                .endObject();
+    }
+
+    /**
+     * @return the number of classes in the shared class section
+     */
+    public int getDescribedClassCount() {
+        return describedClasses;
+    }
+
+    /**
+     * Scans the packages imported by pages with the same classpath once, with the class loader acquired by one of
+     * them, and describes each of their classes once. The classes are added to the shared class section, the pages
+     * get the indexes of their classes in it.
+     */
+    private static void addClasses(PageReader reader, List<PageReader> samePath, Map<PageReader, JSONObject> results,
+                                   List<JSONObject> classes, Map<JSONObject, Integer> classIndexes) {
+        Map<PageReader, PageAutoCompleteData> pageData = new LinkedHashMap<>();
+        Set<String> allPackages = new LinkedHashSet<>();
+        for (PageReader page : samePath) {
+            PageAutoCompleteData data = page.read();
+            pageData.put(page, data);
+            allPackages.addAll(data.getPackages());
+        }
+        Map<String, List<FixtureClass>> classesByPackage = reader.findClassesByPackage(allPackages);
+
+        List<FixtureClass> fixtureClasses = FixtureClass.inPackages(allPackages, classesByPackage);
+        List<JSONObject> described = ScanExecutor.map(fixtureClasses, reader::describe);
+        Map<String, JSONObject> describedByName = new LinkedHashMap<>();
+        for (int i = 0; i < fixtureClasses.size(); i++) {
+            describedByName.put(fixtureClasses.get(i).getName(), described.get(i));
+        }
+
+        for (Map.Entry<PageReader, PageAutoCompleteData> page : pageData.entrySet()) {
+            JSONArray pageClasses = new JSONArray();
+            for (FixtureClass fixtureClass : FixtureClass.inPackages(page.getValue().getPackages(), classesByPackage)) {
+                JSONObject metadata = describedByName.get(fixtureClass.getName());
+                Integer index = classIndexes.get(metadata);
+                if (index == null) {
+                    index = classes.size();
+                    classes.add(metadata);
+                    classIndexes.put(metadata, index);
+                }
+                pageClasses.put(index);
+            }
+            results.put(page.getKey(), new JSONObject()
+                    .put("scenarios", page.getValue().getScenarios())
+                    .put("variables", page.getValue().getVariables())
+                    .put("classes", pageClasses));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package nl.praegus.fitnesse.responders.handlers;
+
+import nl.praegus.fitnesse.responders.json.JsonStreamResponse;
+import nl.praegus.fitnesse.responders.metadata.FixtureClass;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Answers a request for the members of one class ({@code ?class=fq.Name}) on the classpath of a page, from the same
+ * metadata cache as the full response.
+ */
+
+public final class ClassHandler {
+    private final PageReader page;
+
+    public ClassHandler(PageReader page) {
+        this.page = page;
+    }
+
+    /**
+     * Keeps the class loader of the page acquired for the response, which releases it once it is sent.
+     * @return the body, or null when there is no such fixture class
+     */
+    public JsonStreamResponse.Body respond(String className) {
+        JSONObject described;
+        try {
+            page.acquireClassLoader();
+            described = describeClassNamed(className);
+        } catch (Exception | Error e) {
+            page.releaseClassLoader();
+            throw e;
+        }
+        if (described == null) {
+            page.releaseClassLoader();
+            return null;
+        }
+        return json -> json.beginObject()
+                .member("class", described)
+                .endObject();
+    }
+
+    private JSONObject describeClassNamed(String className) {
+        int packageEnd = className.lastIndexOf('.');
+        String packageName = packageEnd < 0 ? "" : className.substring(0, packageEnd);
+        List<FixtureClass> classes = page.findClassesByPackage(Collections.singleton(packageName))
+                .getOrDefault(packageName, Collections.<FixtureClass>emptyList());
+        for (FixtureClass fixtureClass : classes) {
+            if (fixtureClass.getName().equals(className)) {
+                return page.describe(fixtureClass);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,56 @@
+package nl.praegus.fitnesse.responders.handlers;
+
+import nl.praegus.fitnesse.responders.metadata.FixtureClass;
+import nl.praegus.fitnesse.responders.stats.RequestTimings;
+import nl.praegus.fitnesse.responders.wiki.PageAutoCompleteData;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A page as the autocomplete responder reads it, for the handlers of the other kinds of requests. Classes can only be
+ * found and described between acquiring and releasing the class loader of the page's classpath.
+ */
+
+public interface PageReader {
+
+    boolean exists();
+
+    /**
+     * @return the classpath of the page, or null when it has none
+     */
+    List<String> getClassPath();
+
+    /**
+     * @return digest of everything the data of the page is derived from, see {@link #read()}
+     */
+    String getContentDigest();
+
+    /**
+     * @return the scenarios, variables and imported packages of the page
+     */
+    PageAutoCompleteData read();
+
+    RequestTimings getTimings();
+
+    void acquireClassLoader();
+
+    void releaseClassLoader();
+
+    /**
+     * @return the fixture classes per package, none when the page has no classpath
+     */
+    Map<String, List<FixtureClass>> findClassesByPackage(Set<String> packageNames);
+
+    /**
+     * @return the metadata of the class, from the class metadata cache
+     */
+    JSONObject describe(FixtureClass fixtureClass);
+
+    /**
+     * @return the metadata of the classes in the packages, described while they are iterated
+     */
+    Iterable<JSONObject> describeClasses(Set<String> packageNames);
+}
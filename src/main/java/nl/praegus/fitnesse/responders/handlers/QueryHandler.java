@@ -0,0 +1,43 @@
+package nl.praegus.fitnesse.responders.handlers;
+
+import nl.praegus.fitnesse.responders.json.JsonStreamResponse;
+import nl.praegus.fitnesse.responders.query.CompletionIndex;
+import nl.praegus.fitnesse.responders.query.CompletionIndexCache;
+import nl.praegus.fitnesse.responders.wiki.PageAutoCompleteData;
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * Answers a query ({@code ?q=click on&limit=20}) with the best matching scenarios, variables, methods and
+ * constructors of a page, from the {@link CompletionIndex} kept for the page.
+ */
+
+public final class QueryHandler {
+    private final PageReader page;
+
+    public QueryHandler(PageReader page) {
+        this.page = page;
+    }
+
+    public JsonStreamResponse.Body respond(String query, int limit) {
+        CompletionIndex index = CompletionIndexCache.getInstance().get(page.getContentDigest(), this::buildIndex);
+        List<JSONObject> results = page.getTimings().time("query", () -> index.query(query, limit));
+        return json -> json.beginObject()
+                .member("query", query)
+                .array("results", results)
+                .endObject();
+    }
+
+    private CompletionIndex buildIndex() {
+        try {
+            page.acquireClassLoader();
+            PageAutoCompleteData pageData = page.read();
+            Iterable<JSONObject> classes = page.describeClasses(pageData.getPackages());
+            return page.getTimings().time("index",
+                    () -> CompletionIndex.build(pageData.getScenarios(), pageData.getVariables(), classes));
+        } finally {
+            page.releaseClassLoader();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package nl.praegus.fitnesse.responders.http;
+
+import fitnesse.http.Request;
+import fitnesse.http.Response;
+import fitnesse.http.SimpleResponse;
+
+/**
+ * Gzip content coding: whether a client accepts it, according to its Accept-Encoding header (a comma separated list
+ * of codings with optional quality values, {@code gzip;q=0} refuses it), and responses with a compressed body.
+ */
+
+public final class ContentEncoding {
+    public static final String ACCEPT_ENCODING = "Accept-Encoding";
+    public static final String CONTENT_ENCODING = "Content-Encoding";
+    public static final String VARY = "Vary";
+    public static final String GZIP = "gzip";
+
+    private ContentEncoding() {
+    }
+
+    /**
+     * @return whether the request accepts a gzip compressed body
+     */
+    public static boolean acceptsGzip(Request request) {
+        String acceptEncoding = request.getHeader(ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean accepted = false;
+        for (String candidate : acceptEncoding.split(",")) {
+            String[] parts = candidate.split(";");
+            String coding = parts[0].trim();
+            if (coding.equalsIgnoreCase(GZIP) || coding.equalsIgnoreCase("x-gzip")) {
+                return quality(parts) > 0;
+            }
+            if (coding.equals("*")) {
+                accepted = quality(parts) > 0;
+            }
+        }
+        return accepted;
+    }
+
+    private static double quality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * @return a response with an already compressed body
+     */
+    public static Response gzipped(byte[] body, String contentType) {
+        SimpleResponse response = new SimpleResponse(200);
+        response.setMaxAge(0);
+        response.setContentType(contentType);
+        response.addHeader(CONTENT_ENCODING, GZIP);
+        response.setContent(body);
+        return response;
+    }
+}
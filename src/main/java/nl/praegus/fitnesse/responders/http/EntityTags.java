@@ -0,0 +1,49 @@
+package nl.praegus.fitnesse.responders.http;
+
+import fitnesse.http.Request;
+import fitnesse.http.Response;
+import fitnesse.http.SimpleResponse;
+
+/**
+ * Conditional request support: entity tags are quoted (strong) validators, compared against the comma separated
+ * list a client sends in If-None-Match.
+ */
+
+public final class EntityTags {
+    public static final String ETAG = "ETag";
+    public static final String IF_NONE_MATCH = "If-None-Match";
+
+    private EntityTags() {
+    }
+
+    public static String quote(String value) {
+        return '"' + value + '"';
+    }
+
+    /**
+     * @return whether the request's If-None-Match header matches the entity tag
+     */
+    public static boolean matches(Request request, String etag) {
+        String ifNoneMatch = request.getHeader(IF_NONE_MATCH);
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static Response notModified(String etag) {
+        SimpleResponse response = new SimpleResponse(304);
+        response.setMaxAge(0);
+        response.addHeader(ETAG, etag);
+        return response;
+    }
+}
@@ -0,0 +1,162 @@
+package nl.praegus.fitnesse.responders.json;
+
+import fitnesse.http.ChunkedDataProvider;
+import fitnesse.http.ChunkedResponse;
+import fitnesse.http.Response;
+import fitnesse.http.ResponseSender;
+import nl.praegus.fitnesse.responders.http.ContentEncoding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Chunked json response whose body is written while the response is being sent, instead of being built in memory
+ * first. The body is produced when FitNesse sends the response; the completion callback runs once afterwards, also when
+ * writing the body failed or the headers could not be sent, so resources held for the body are always released.
+ * A gzip compressed body is compressed while it is sent, and kept so it can be sent again
+ * without compressing it again (see {@link #getCompressedBody()}).
+ */
+
+public final class JsonStreamResponse implements ChunkedDataProvider {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonStreamResponse.class);
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ChunkedResponse response;
+    private final boolean pretty;
+    private final boolean gzip;
+    private final Body body;
+    private final Runnable onComplete;
+    private final ByteArrayOutputStream compressedBody;
+    private long bytesWritten;
+    private boolean completed;
+    private boolean callbackRun;
+
+    public JsonStreamResponse(boolean pretty, Body body, Runnable onComplete) {
+        this(pretty, false, body, onComplete);
+    }
+
+    public JsonStreamResponse(boolean pretty, boolean gzip, Body body, Runnable onComplete) {
+        this.response = new CompletingResponse();
+        this.pretty = pretty;
+        this.gzip = gzip;
+        this.body = body;
+        this.onComplete = onComplete;
+        this.compressedBody = gzip ? new ByteArrayOutputStream() : null;
+        response.setMaxAge(0);
+        response.setStatus(200);
+        response.setContentType("application/json");
+        if (gzip) {
+            response.addHeader(ContentEncoding.CONTENT_ENCODING, ContentEncoding.GZIP);
+        }
+    }
+
+    public Response getResponse() {
+        return response;
+    }
+
+    @Override
+    public void startSending() throws IOException {
+        try {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(bodyStream(), StandardCharsets.UTF_8),
+                    BUFFER_SIZE)) {
+                JsonStreamWriter json = pretty ? JsonStreamWriter.pretty(writer) : JsonStreamWriter.compact(writer);
+                body.writeTo(json);
+                json.flush();
+            }
+            completed = true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Unable to write json response: " + e.getMessage());
+        } finally {
+            try {
+                response.close();
+            } finally {
+                runCallback();
+            }
+        }
+    }
+
+    private synchronized void runCallback() {
+        if (!callbackRun) {
+            callbackRun = true;
+            onComplete.run();
+        }
+    }
+
+    private OutputStream bodyStream() throws IOException {
+        OutputStream chunks = new BufferedOutputStream(new ChunkStream(), BUFFER_SIZE);
+        return gzip ? new GZIPOutputStream(chunks, BUFFER_SIZE) : chunks;
+    }
+
+    /**
+     * @return the number of bytes of the body (after compression) written so far
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return the gzip compressed body, when it was compressed and written completely, otherwise null
+     */
+    public byte[] getCompressedBody() {
+        return completed && gzip ? compressedBody.toByteArray() : null;
+    }
+
+    /**
+     * Writes the json document.
+     */
+    public interface Body {
+        void writeTo(JsonStreamWriter json) throws IOException;
+    }
+
+    /**
+     * Chunked response that runs the completion callback when sending it fails before the body is written, e.g. when
+     * the client disconnected before the headers were sent.
+     */
+    private final class CompletingResponse extends ChunkedResponse {
+        private CompletingResponse() {
+            super("json", JsonStreamResponse.this);
+        }
+
+        @Override
+        public void sendTo(ResponseSender sender) throws IOException {
+            try {
+                super.sendTo(sender);
+            } finally {
+                runCallback();
+            }
+        }
+    }
+
+    /**
+     * Sends what is written as chunks of the response; closing it leaves the response open.
+     */
+    private final class ChunkStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            response.add(off == 0 && len == bytes.length ? bytes : Arrays.copyOfRange(bytes, off, off + len));
+            bytesWritten += len;
+            if (compressedBody != null) {
+                compressedBody.write(bytes, off, len);
+            }
+        }
+    }
+}
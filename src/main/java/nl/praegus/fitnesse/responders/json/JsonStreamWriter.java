@@ -0,0 +1,135 @@
+package nl.praegus.fitnesse.responders.json;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Writes a json document to a writer piece by piece, so large arrays never have to exist in memory as a whole.
+ * Output is compact by default; the pretty variant indents like {@link JSONObject#toString(int)}.
+ */
+
+public final class JsonStreamWriter {
+    private static final int PRETTY_INDENT = 3;
+
+    private final Writer out;
+    private final int indentFactor;
+    private final Deque<Boolean> hasElements = new ArrayDeque<>();
+
+    private JsonStreamWriter(Writer out, int indentFactor) {
+        this.out = out;
+        this.indentFactor = indentFactor;
+    }
+
+    public static JsonStreamWriter compact(Writer out) {
+        return new JsonStreamWriter(out, 0);
+    }
+
+    public static JsonStreamWriter pretty(Writer out) {
+        return new JsonStreamWriter(out, PRETTY_INDENT);
+    }
+
+    public JsonStreamWriter beginObject() throws IOException {
+        out.write('{');
+        hasElements.push(false);
+        return this;
+    }
+
+    public JsonStreamWriter endObject() throws IOException {
+        close('}');
+        return this;
+    }
+
+    /**
+     * Starts an array as member of the current object.
+     */
+    public JsonStreamWriter beginArray(String name) throws IOException {
+        nextElement();
+        JSONObject.quote(name, out);
+        out.write(indentFactor > 0 ? ": [" : ":[");
+        hasElements.push(false);
+        return this;
+    }
+
+    public JsonStreamWriter endArray() throws IOException {
+        close(']');
+        return this;
+    }
+
+    /**
+     * Adds a value (json object, json array, string, number or boolean) to the current array.
+     */
+    public JsonStreamWriter value(Object value) throws IOException {
+        nextElement();
+        write(value);
+        return this;
+    }
+
+    /**
+     * Adds a member with a value (json object, json array, string, number or boolean) to the current object.
+     */
+    public JsonStreamWriter member(String name, Object value) throws IOException {
+        nextElement();
+        JSONObject.quote(name, out);
+        out.write(indentFactor > 0 ? ": " : ":");
+        write(value);
+        return this;
+    }
+
+    private void write(Object value) throws IOException {
+        int indent = hasElements.size() * indentFactor;
+        if (value instanceof JSONObject) {
+            ((JSONObject) value).write(out, indentFactor, indent);
+        } else if (value instanceof JSONArray) {
+            ((JSONArray) value).write(out, indentFactor, indent);
+        } else if (value instanceof String) {
+            JSONObject.quote((String) value, out);
+        } else {
+            out.write(JSONObject.valueToString(value));
+        }
+    }
+
+    /**
+     * Adds a complete array as member of the current object.
+     */
+    public JsonStreamWriter array(String name, Iterable<?> values) throws IOException {
+        beginArray(name);
+        for (Object value : values) {
+            value(value);
+        }
+        return endArray();
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void nextElement() throws IOException {
+        if (hasElements.pop()) {
+            out.write(',');
+        }
+        hasElements.push(true);
+        newLine(hasElements.size());
+    }
+
+    private void close(char bracket) throws IOException {
+        boolean empty = !hasElements.pop();
+        if (!empty) {
+            newLine(hasElements.size());
+        }
+        out.write(bracket);
+    }
+
+    private void newLine(int depth) throws IOException {
+        if (indentFactor > 0) {
+            out.write('\n');
+            for (int i = 0; i < depth * indentFactor; i++) {
+                out.write(' ');
+            }
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package nl.praegus.fitnesse.responders.metadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Minimal class file parser: reads the constant pool, access flags, super class, interfaces and methods with their
+ * exceptions and runtime visible annotations. Fields, code and all other attributes are skipped.
+ * See chapter 4 of the Java Virtual Machine Specification for the format.
+ */
+
+public final class ClassFile {
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_BRIDGE = 0x0040;
+    public static final int ACC_INTERFACE = 0x0200;
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private final int accessFlags;
+    private final String name;
+    private final String superName;
+    private final List<String> interfaces;
+    private final List<Method> methods;
+
+    private ClassFile(int accessFlags, String name, String superName, List<String> interfaces, List<Method> methods) {
+        this.accessFlags = accessFlags;
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.methods = methods;
+    }
+
+    public static ClassFile read(InputStream stream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return parse(bytes.toByteArray());
+    }
+
+    public static ClassFile parse(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+
+        String[] utf8 = new String[in.readUnsignedShort()];
+        int[] classNameIndex = new int[utf8.length];
+        readConstantPool(in, utf8, classNameIndex);
+
+        int accessFlags = in.readUnsignedShort();
+        String name = utf8[classNameIndex[in.readUnsignedShort()]];
+        int superIndex = in.readUnsignedShort();
+        String superName = superIndex == 0 ? null : utf8[classNameIndex[superIndex]];
+
+        int interfaceCount = in.readUnsignedShort();
+        List<String> interfaces = new ArrayList<>(interfaceCount);
+        for (int i = 0; i < interfaceCount; i++) {
+            interfaces.add(utf8[classNameIndex[in.readUnsignedShort()]]);
+        }
+
+        int fieldCount = in.readUnsignedShort();
+        for (int i = 0; i < fieldCount; i++) {
+            in.readUnsignedShort(); // access flags
+            in.readUnsignedShort(); // name
+            in.readUnsignedShort(); // descriptor
+            skipAttributes(in);
+        }
+
+        int methodCount = in.readUnsignedShort();
+        List<Method> methods = new ArrayList<>(methodCount);
+        for (int i = 0; i < methodCount; i++) {
+            methods.add(readMethod(in, utf8, classNameIndex));
+        }
+        return new ClassFile(accessFlags, name, superName, Collections.unmodifiableList(interfaces),
+                Collections.unmodifiableList(methods));
+    }
+
+    private static void readConstantPool(DataInputStream in, String[] utf8, int[] classNameIndex) throws IOException {
+        for (int i = 1; i < utf8.length; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    utf8[i] = in.readUTF();
+                    break;
+                case CONSTANT_CLASS:
+                    classNameIndex[i] = in.readUnsignedShort();
+                    break;
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    in.readUnsignedShort();
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    in.readInt();
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    in.readLong();
+                    i++; // takes two entries
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag + " at index " + i);
+            }
+        }
+    }
+
+    private static Method readMethod(DataInputStream in, String[] utf8, int[] classNameIndex) throws IOException {
+        int accessFlags = in.readUnsignedShort();
+        String name = utf8[in.readUnsignedShort()];
+        String descriptor = utf8[in.readUnsignedShort()];
+        List<String> exceptions = Collections.emptyList();
+        List<String> annotations = Collections.emptyList();
+
+        int attributeCount = in.readUnsignedShort();
+        for (int a = 0; a < attributeCount; a++) {
+            String attributeName = utf8[in.readUnsignedShort()];
+            int length = in.readInt();
+            if ("Exceptions".equals(attributeName)) {
+                int count = in.readUnsignedShort();
+                exceptions = new ArrayList<>(count);
+                for (int e = 0; e < count; e++) {
+                    exceptions.add(utf8[classNameIndex[in.readUnsignedShort()]]);
+                }
+            } else if ("RuntimeVisibleAnnotations".equals(attributeName)) {
+                int count = in.readUnsignedShort();
+                annotations = new ArrayList<>(count);
+                for (int n = 0; n < count; n++) {
+                    annotations.add(readAnnotation(in, utf8));
+                }
+            } else {
+                skipFully(in, length);
+            }
+        }
+        return new Method(accessFlags, name, descriptor, exceptions, annotations);
+    }
+
+    /**
+     * Reads an annotation structure and returns its type descriptor; element values are skipped.
+     */
+    private static String readAnnotation(DataInputStream in, String[] utf8) throws IOException {
+        String type = utf8[in.readUnsignedShort()];
+        int pairs = in.readUnsignedShort();
+        for (int p = 0; p < pairs; p++) {
+            in.readUnsignedShort(); // element name
+            skipElementValue(in, utf8);
+        }
+        return type;
+    }
+
+    private static void skipElementValue(DataInputStream in, String[] utf8) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case 'e':
+                in.readUnsignedShort();
+                in.readUnsignedShort();
+                break;
+            case '@':
+                readAnnotation(in, utf8);
+                break;
+            case '[':
+                int values = in.readUnsignedShort();
+                for (int v = 0; v < values; v++) {
+                    skipElementValue(in, utf8);
+                }
+                break;
+            default:
+                // const_value_index or class_info_index
+                in.readUnsignedShort();
+                break;
+        }
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int attributeCount = in.readUnsignedShort();
+        for (int a = 0; a < attributeCount; a++) {
+            in.readUnsignedShort();
+            skipFully(in, in.readInt());
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int skipped = 0;
+        while (skipped < length) {
+            int n = in.skipBytes(length - skipped);
+            if (n <= 0) {
+                throw new IOException("Unexpected end of class file");
+            }
+            skipped += n;
+        }
+    }
+
+    public int getAccessFlags() {
+        return accessFlags;
+    }
+
+    public boolean isInterface() {
+        return (accessFlags & ACC_INTERFACE) != 0;
+    }
+
+    /**
+     * @return the internal name of the class, e.g. {@code nl/praegus/Fixture}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the internal name of the super class, {@code null} for {@code java/lang/Object}
+     */
+    public String getSuperName() {
+        return superName;
+    }
+
+    public List<String> getInterfaces() {
+        return interfaces;
+    }
+
+    public List<Method> getMethods() {
+        return methods;
+    }
+
+    /**
+     * A method or constructor declared in the class file.
+     */
+    public static final class Method {
+        private final int accessFlags;
+        private final String name;
+        private final String descriptor;
+        private final List<String> exceptions;
+        private final List<String> annotations;
+
+        private Method(int accessFlags, String name, String descriptor, List<String> exceptions,
+                       List<String> annotations) {
+            this.accessFlags = accessFlags;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.exceptions = exceptions;
+            this.annotations = annotations;
+        }
+
+        public int getAccessFlags() {
+            return accessFlags;
+        }
+
+        public boolean isPublic() {
+            return (accessFlags & ACC_PUBLIC) != 0;
+        }
+
+        public boolean isStatic() {
+            return (accessFlags & ACC_STATIC) != 0;
+        }
+
+        public boolean isBridge() {
+            return (accessFlags & ACC_BRIDGE) != 0;
+        }
+
+        public boolean isConstructor() {
+            return "<init>".equals(name);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        /**
+         * @return the part of the descriptor describing the parameters, e.g. {@code (ILjava/lang/String;)}
+         */
+        public String getParameterDescriptor() {
+            return descriptor.substring(0, descriptor.indexOf(')') + 1);
+        }
+
+        public List<TypeName> getParameterTypes() {
+            List<TypeName> types = new ArrayList<>();
+            int i = 1;
+            while (descriptor.charAt(i) != ')') {
+                int start = i;
+                while (descriptor.charAt(i) == '[') {
+                    i++;
+                }
+                if (descriptor.charAt(i) == 'L') {
+                    i = descriptor.indexOf(';', i);
+                }
+                i++;
+                types.add(TypeName.fromDescriptor(descriptor.substring(start, i)));
+            }
+            return types;
+        }
+
+        /**
+         * @return internal names of the declared exceptions
+         */
+        public List<String> getExceptions() {
+            return exceptions;
+        }
+
+        /**
+         * @return type descriptors of the runtime visible annotations
+         */
+        public List<String> getAnnotations() {
+            return annotations;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package nl.praegus.fitnesse.responders.metadata;
+
+import nl.praegus.fitnesse.responders.util.ClassFinder;
+import nl.praegus.fitnesse.responders.util.ClassPathIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads constructors and methods from the class files themselves, without loading (and linking) the classes.
+ * Inherited public methods are collected and merged the way {@link Class#getMethods()} does on Java 9 and later,
+ * bridge methods and covariant overrides included. Methods of {@code java.lang.Object} are left out: they are never
+ * offered for autocompletion anyway, unless the class declares them itself.
+ */
+
+public final class ClassFileMetadataEngine implements MetadataEngine {
+    static final ClassFileMetadataEngine INSTANCE = new ClassFileMetadataEngine();
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassFileMetadataEngine.class);
+    private static final String OBJECT = "java/lang/Object";
+
+    // Jar classes without a public constructor are skipped, which requires reading them: remember the outcome per index
+    private final Map<ClassPathIndex, Map<String, List<FixtureClass>>> fixturesByIndex =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private ClassFileMetadataEngine() {
+    }
+
+    @Override
+    public String getName() {
+        return "classfile";
+    }
+
+    @Override
+    public List<FixtureClass> findClasses(String packageName, URLClassLoader classLoader) throws IOException {
+        List<FixtureClass> fixtureClasses = new ArrayList<>();
+        for (ClassPathIndex index : ClassFinder.findIndexes(packageName, classLoader)) {
+            if (index.isJar()) {
+                Map<String, List<FixtureClass>> fixturesByPackage =
+                        fixturesByIndex.computeIfAbsent(index, i -> new ConcurrentHashMap<>());
+                fixtureClasses.addAll(fixturesByPackage.computeIfAbsent(packageName,
+                        p -> classesWithPublicConstructor(index, p, classLoader)));
+            } else {
+                for (String className : index.getClassNames(packageName)) {
+                    fixtureClasses.add(new FixtureClass(className, index.getEntry()));
+                }
+            }
+        }
+        return fixtureClasses;
+    }
+
+    @Override
+    public ClassSignature readSignature(FixtureClass fixtureClass, URLClassLoader classLoader) {
+        try {
+            ClassFile classFile = read(fixtureClass.getName().replace('.', '/'), classLoader);
+            if (classFile == null) {
+                return ClassSignature.empty(fixtureClass.getName());
+            }
+            Set<File> supertypeSources = new LinkedHashSet<>();
+            List<MemberSignature> methods = getMethods(classFile, classLoader, supertypeSources);
+            return new ClassSignature(fixtureClass.getName(), getConstructors(classFile), methods, supertypeSources);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to read class file of " + fixtureClass.getName() + ": " + e.getMessage());
+            return ClassSignature.empty(fixtureClass.getName());
+        }
+    }
+
+    private List<FixtureClass> classesWithPublicConstructor(ClassPathIndex index, String packageName,
+                                                            URLClassLoader classLoader) {
+        List<FixtureClass> fixtureClasses = new ArrayList<>();
+        for (String className : index.getClassNames(packageName)) {
+            try {
+                ClassFile classFile = read(className.replace('.', '/'), classLoader);
+                //Ignore classes without any public constructor
+                if (classFile != null && !getConstructors(classFile).isEmpty()) {
+                    fixtureClasses.add(new FixtureClass(className, index.getEntry()));
+                }
+            } catch (IOException e) {
+                //intentionally ignore classes that cannot be read
+            }
+        }
+        return Collections.unmodifiableList(fixtureClasses);
+    }
+
+    private static List<MemberSignature> getConstructors(ClassFile classFile) {
+        List<MemberSignature> constructors = new ArrayList<>();
+        if (classFile.isInterface()) {
+            return constructors;
+        }
+        String className = classFile.getName().replace('/', '.');
+        for (ClassFile.Method method : classFile.getMethods()) {
+            if (method.isConstructor() && method.isPublic()) {
+                constructors.add(toSignature(TypeName.simpleNameOf(className), className, method));
+            }
+        }
+        return constructors;
+    }
+
+    private static List<MemberSignature> getMethods(ClassFile classFile, URLClassLoader classLoader,
+                                                    Set<File> supertypeSources) throws IOException {
+        List<MemberSignature> methods = new ArrayList<>();
+        for (List<PublicMethod> sameParameters : new Hierarchy(classFile, classLoader, supertypeSources)
+                .publicMethodsOf(classFile).values()) {
+            for (PublicMethod method : sameParameters) {
+                methods.add(method.signature);
+            }
+        }
+        return methods;
+    }
+
+    private static MemberSignature toSignature(String name, String declaringClass, ClassFile.Method method) {
+        List<String> exceptions = new ArrayList<>();
+        for (String exception : method.getExceptions()) {
+            exceptions.add(TypeName.fromInternalName(exception).getSimpleName());
+        }
+        List<String> annotations = new ArrayList<>();
+        for (String annotation : method.getAnnotations()) {
+            annotations.add(TypeName.fromDescriptor(annotation).getSimpleName());
+        }
+        return new MemberSignature(name, declaringClass, method.getParameterTypes(), exceptions, annotations);
+    }
+
+    private static ClassFile read(String internalName, URLClassLoader classLoader) throws IOException {
+        try (InputStream stream = classLoader.getResourceAsStream(internalName + ".class")) {
+            return stream == null ? null : ClassFile.read(stream);
+        }
+    }
+
+    /**
+     * The super classes and interfaces of a class, read as they are needed. Public methods are collected the way
+     * {@link Class#getMethods()} does since Java 9: the public methods a type declares (bridge methods included),
+     * merged with those of its super class and the non-static ones of its interfaces. Of the methods with the same
+     * name, parameter types and return type only the most specific are kept: a method declared by a class is more
+     * specific than one declared by an interface, and one declared by a sub type more than one of its super type.
+     */
+    private static final class Hierarchy {
+        private final URLClassLoader classLoader;
+        private final Set<File> supertypeSources;
+        private final Map<String, ClassFile> classFiles = new HashMap<>();
+        private final Map<String, Set<String>> supertypes = new HashMap<>();
+        private final Map<String, Map<String, List<PublicMethod>>> publicMethods = new HashMap<>();
+
+        private Hierarchy(ClassFile classFile, URLClassLoader classLoader, Set<File> supertypeSources) {
+            this.classLoader = classLoader;
+            this.supertypeSources = supertypeSources;
+            classFiles.put(classFile.getName(), classFile);
+        }
+
+        /**
+         * @return the public methods by name and parameter descriptor
+         */
+        private Map<String, List<PublicMethod>> publicMethodsOf(ClassFile classFile) throws IOException {
+            Map<String, List<PublicMethod>> methods = publicMethods.get(classFile.getName());
+            if (methods != null) {
+                return methods;
+            }
+            methods = new LinkedHashMap<>();
+            for (ClassFile.Method method : classFile.getMethods()) {
+                if (method.isPublic() && !method.getName().startsWith("<")) {
+                    merge(methods, new PublicMethod(classFile, method));
+                }
+            }
+            ClassFile superClass = superClassOf(classFile);
+            if (superClass != null) {
+                for (List<PublicMethod> inherited : publicMethodsOf(superClass).values()) {
+                    for (PublicMethod method : inherited) {
+                        merge(methods, method);
+                    }
+                }
+            }
+            for (String interfaceName : classFile.getInterfaces()) {
+                ClassFile anInterface = read(interfaceName);
+                if (anInterface != null) {
+                    for (List<PublicMethod> inherited : publicMethodsOf(anInterface).values()) {
+                        for (PublicMethod method : inherited) {
+                            // static interface methods are not inherited
+                            if (!method.isStatic) {
+                                merge(methods, method);
+                            }
+                        }
+                    }
+                }
+            }
+            publicMethods.put(classFile.getName(), methods);
+            return methods;
+        }
+
+        private void merge(Map<String, List<PublicMethod>> methods, PublicMethod method) throws IOException {
+            List<PublicMethod> sameParameters = methods.computeIfAbsent(method.key, k -> new ArrayList<>());
+            Iterator<PublicMethod> existing = sameParameters.iterator();
+            while (existing.hasNext()) {
+                PublicMethod other = existing.next();
+                if (!other.returnType.equals(method.returnType)) {
+                    continue;
+                }
+                if (other.isInterface == method.isInterface) {
+                    if (isSubtype(other.declaringType, method.declaringType)) {
+                        return;
+                    }
+                    if (isSubtype(method.declaringType, other.declaringType)) {
+                        existing.remove();
+                    }
+                } else if (method.isInterface) {
+                    return;
+                } else {
+                    existing.remove();
+                }
+            }
+            sameParameters.add(method);
+        }
+
+        private boolean isSubtype(String type, String supertype) throws IOException {
+            return supertypesOf(type).contains(supertype);
+        }
+
+        /**
+         * @return the type itself and all its super classes and interfaces that could be read
+         */
+        private Set<String> supertypesOf(String type) throws IOException {
+            Set<String> result = supertypes.get(type);
+            if (result != null) {
+                return result;
+            }
+            result = new HashSet<>();
+            result.add(type);
+            ClassFile classFile = read(type);
+            if (classFile != null) {
+                ClassFile superClass = superClassOf(classFile);
+                if (superClass != null) {
+                    result.addAll(supertypesOf(superClass.getName()));
+                }
+                for (String interfaceName : classFile.getInterfaces()) {
+                    result.addAll(supertypesOf(interfaceName));
+                }
+            }
+            supertypes.put(type, result);
+            return result;
+        }
+
+        private ClassFile superClassOf(ClassFile classFile) throws IOException {
+            String superName = classFile.getSuperName();
+            return superName == null || OBJECT.equals(superName) ? null : read(superName);
+        }
+
+        private ClassFile read(String internalName) throws IOException {
+            if (classFiles.containsKey(internalName)) {
+                return classFiles.get(internalName);
+            }
+            ClassFile classFile = ClassFileMetadataEngine.read(internalName, classLoader);
+            classFiles.put(internalName, classFile);
+            if (classFile != null) {
+                File source = FixtureClass.sourceOf(classLoader.getResource(internalName + ".class"));
+                if (source != null) {
+                    supertypeSources.add(source);
+                }
+            }
+            return classFile;
+        }
+    }
+
+    /**
+     * A public method with the type that declares it.
+     */
+    private static final class PublicMethod {
+        private final String key;
+        private final String returnType;
+        private final String declaringType;
+        private final boolean isInterface;
+        private final boolean isStatic;
+        private final MemberSignature signature;
+
+        private PublicMethod(ClassFile declaringType, ClassFile.Method method) {
+            key = method.getName() + method.getParameterDescriptor();
+            returnType = method.getDescriptor().substring(method.getDescriptor().indexOf(')') + 1);
+            this.declaringType = declaringType.getName();
+            isInterface = declaringType.isInterface();
+            isStatic = method.isStatic();
+            signature = toSignature(method.getName(), declaringType.getName().replace('/', '.'), method);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package nl.praegus.fitnesse.responders.metadata;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Public constructors and methods (including inherited ones) of a fixture class, and the files (jars, or class files
+ * in directories) its super classes and interfaces were read from: inherited methods change when those files do.
+ */
+
+public final class ClassSignature {
+    private final String name;
+    private final List<MemberSignature> constructors;
+    private final List<MemberSignature> methods;
+    private final Set<File> supertypeSources;
+
+    public ClassSignature(String name, List<MemberSignature> constructors, List<MemberSignature> methods) {
+        this(name, constructors, methods, Collections.<File>emptySet());
+    }
+
+    public ClassSignature(String name, List<MemberSignature> constructors, List<MemberSignature> methods,
+                          Set<File> supertypeSources) {
+        this.name = name;
+        this.constructors = constructors;
+        this.methods = methods;
+        this.supertypeSources = supertypeSources;
+    }
+
+    public static ClassSignature empty(String name) {
+        return new ClassSignature(name, Collections.<MemberSignature>emptyList(), Collections.<MemberSignature>emptyList());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSimpleName() {
+        return TypeName.simpleNameOf(name);
+    }
+
+    public List<MemberSignature> getConstructors() {
+        return constructors;
+    }
+
+    public List<MemberSignature> getMethods() {
+        return methods;
+    }
+
+    /**
+     * @return the jars and class files the super classes and interfaces were read from, without JDK classes
+     */
+    public Set<File> getSupertypeSources() {
+        return supertypeSources;
+    }
+}
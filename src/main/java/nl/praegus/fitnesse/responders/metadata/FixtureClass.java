@@ -0,0 +1,101 @@
+package nl.praegus.fitnesse.responders.metadata;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A class found in an imported package, identified by its name and the classpath entry (jar or directory) it is in.
+ * The entry is {@code null} when the class has no known location on disk.
+ */
+
+public final class FixtureClass {
+    private final String name;
+    private final File classPathEntry;
+
+    public FixtureClass(String name, File classPathEntry) {
+        this.name = name;
+        this.classPathEntry = classPathEntry;
+    }
+
+    public static FixtureClass of(Class<?> klass) {
+        return new FixtureClass(klass.getName(), classPathEntryOf(klass));
+    }
+
+    /**
+     * @return the classes in the packages, in package order, each class once
+     */
+    public static List<FixtureClass> inPackages(Set<String> packageNames,
+                                                Map<String, List<FixtureClass>> classesByPackage) {
+        Map<String, FixtureClass> classList = new LinkedHashMap<>();
+        for (String packageName : packageNames) {
+            for (FixtureClass fixtureClass : classesByPackage.getOrDefault(packageName,
+                    Collections.<FixtureClass>emptyList())) {
+                classList.putIfAbsent(fixtureClass.getName(), fixtureClass);
+            }
+        }
+        return new ArrayList<>(classList.values());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSimpleName() {
+        return TypeName.simpleNameOf(name);
+    }
+
+    public File getClassPathEntry() {
+        return classPathEntry;
+    }
+
+    public String getResourceName() {
+        return name.replace('.', '/') + ".class";
+    }
+
+    /**
+     * @return the jar a class resource is in, or the class file itself when it is in a directory; null when it is not
+     * on disk (e.g. JDK classes)
+     */
+    public static File sourceOf(URL classResource) {
+        if (classResource == null) {
+            return null;
+        }
+        try {
+            URL location = classResource;
+            if ("jar".equals(location.getProtocol())) {
+                String file = location.getFile();
+                int separator = file.indexOf("!/");
+                location = new URL(separator >= 0 ? file.substring(0, separator) : file);
+            }
+            return "file".equals(location.getProtocol()) ? new File(location.toURI()) : null;
+        } catch (URISyntaxException | MalformedURLException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static File classPathEntryOf(Class<?> klass) {
+        CodeSource codeSource = klass.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            return null;
+        }
+        URL location = codeSource.getLocation();
+        try {
+            if ("jar".equals(location.getProtocol())) {
+                String file = location.getFile();
+                location = new URL(file.substring(0, file.indexOf("!/") > 0 ? file.indexOf("!/") : file.length()));
+            }
+            return new File(location.toURI());
+        } catch (URISyntaxException | MalformedURLException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
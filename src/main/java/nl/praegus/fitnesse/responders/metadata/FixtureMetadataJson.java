@@ -0,0 +1,106 @@
+package nl.praegus.fitnesse.responders.metadata;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Turns the signature of a fixture class into the methods and constructors json used by the autocomplete javascript,
+ * including the wiki text to insert for each of them.
+ */
+
+public final class FixtureMetadataJson {
+    public static final String INTERPOSING_SYSPROP = "interposeMethodsInWiki";
+    private static final Set<String> METHODS_TO_IGNORE;
+    private static final String NAME = "name";
+    private static final String READABLE_NAME = "readableName";
+    private static final String TYPE = "type";
+    private static final String EXCEPTIONS = "exceptions";
+    private static final String ANNOTATIONS = "annotations";
+    private static final String PARAMETERS = "parameters";
+    private static final String WIKI_TEXT = "wikiText";
+    private static final String USAGE = "usage";
+    private static final String CONTEXT_STR = "contexthelp";
+
+    static {
+        METHODS_TO_IGNORE = new HashSet<>();
+        METHODS_TO_IGNORE.add("toString");
+        METHODS_TO_IGNORE.add("aroundSlimInvoke");
+        METHODS_TO_IGNORE.add("getClass");
+        METHODS_TO_IGNORE.add("equals");
+        METHODS_TO_IGNORE.add("notify");
+        METHODS_TO_IGNORE.add("notifyAll");
+        METHODS_TO_IGNORE.add("wait");
+        METHODS_TO_IGNORE.add("hashCode");
+    }
+
+    private FixtureMetadataJson() {
+    }
+
+    public static boolean isInterposing() {
+        return System.getProperty(INTERPOSING_SYSPROP, "false").equalsIgnoreCase("true");
+    }
+
+    public static JSONArray constructors(ClassSignature signature) {
+        JSONArray cConstructors = new JSONArray();
+        for (MemberSignature constructor : signature.getConstructors()) {
+            String usage = MemberNames.constructorUsage(signature.getSimpleName(), constructor.getParameterTypes());
+            JSONObject thisConstructor = new JSONObject();
+
+            thisConstructor.put(NAME, signature.getSimpleName());
+            thisConstructor.put(READABLE_NAME, MemberNames.readableName(signature.getSimpleName()));
+            thisConstructor.put(PARAMETERS, parseParameterTypes(constructor.getParameterTypes()));
+            thisConstructor.put(ANNOTATIONS, new JSONArray(constructor.getAnnotations()));
+            thisConstructor.put(EXCEPTIONS, new JSONArray(constructor.getExceptionTypes()));
+            thisConstructor.put(USAGE, usage);
+            thisConstructor.put(WIKI_TEXT, usage.substring(2));
+
+            cConstructors.put(thisConstructor);
+        }
+        return cConstructors;
+    }
+
+    public static JSONArray methods(ClassSignature signature) {
+        JSONArray cMethods = new JSONArray();
+        boolean interposing = isInterposing();
+        for (MemberSignature method : signature.getMethods()) {
+            if (!METHODS_TO_IGNORE.contains(method.getName()) || method.getDeclaringClass().equals(signature.getName())) {
+
+                String readableMethodName = MemberNames.readableName(method.getName());
+                MemberNames.MethodUsage usage =
+                        MemberNames.methodUsage(method.getName(), method.getParameterTypes(), interposing);
+
+                JSONObject thisMethod = new JSONObject();
+
+                thisMethod.put(NAME, readableMethodName);
+                thisMethod.put(READABLE_NAME, readableMethodName);
+                thisMethod.put(PARAMETERS, parseParameterTypes(method.getParameterTypes()));
+                thisMethod.put(EXCEPTIONS, new JSONArray(method.getExceptionTypes()));
+                thisMethod.put(ANNOTATIONS, new JSONArray(method.getAnnotations()));
+                thisMethod.put(USAGE, usage.getUsage());
+                thisMethod.put(CONTEXT_STR, usage.getContextHelp());
+                thisMethod.put(WIKI_TEXT, usage.getWikiText());
+
+                cMethods.put(thisMethod);
+            }
+        }
+        return cMethods;
+    }
+
+    public static String splitCamelCase(String s) {
+        return MemberNames.readableName(s);
+    }
+
+    private static JSONArray parseParameterTypes(List<TypeName> parameterTypes) {
+        JSONArray parameters = new JSONArray();
+        for (TypeName p : parameterTypes) {
+            JSONObject thisParam = new JSONObject();
+            thisParam.put(TYPE, p.getSimpleName());
+            parameters.put(thisParam);
+        }
+        return parameters;
+    }
+}
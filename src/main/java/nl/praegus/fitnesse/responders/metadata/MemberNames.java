@@ -0,0 +1,227 @@
+package nl.praegus.fitnesse.responders.metadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Renders the names of classes and methods as wiki text: readable names (camel case split into lower case words),
+ * usage strings and context help. Fixtures on the same classpath share many method names and signatures, so the
+ * results are memoized process wide; the memo is cleared when it holds more than {@value #MAX_MEMO_SIZE} entries.
+ */
+
+final class MemberNames {
+    static final int MAX_MEMO_SIZE = 100_000;
+    private static final ConcurrentMap<String, String> READABLE_NAMES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, MethodUsage> METHOD_USAGES = new ConcurrentHashMap<>();
+
+    private MemberNames() {
+    }
+
+    /**
+     * Splits a camel case name into lower case words, and separates letters from anything else: {@code getHTTPUrl2}
+     * becomes {@code get http url 2}.
+     */
+    static String readableName(String name) {
+        String readable = READABLE_NAMES.get(name);
+        if (readable == null) {
+            readable = splitCamelCase(name);
+            memoize(READABLE_NAMES, name, readable);
+        }
+        return readable;
+    }
+
+    static MethodUsage methodUsage(String methodName, List<TypeName> parameterTypes, boolean interposing) {
+        StringBuilder key = new StringBuilder(methodName).append(interposing ? ";(" : "(");
+        for (TypeName parameterType : parameterTypes) {
+            key.append(interposing ? parameterType.getName() : parameterType.getSimpleName()).append(',');
+        }
+        String memoKey = key.toString();
+
+        MethodUsage usage = METHOD_USAGES.get(memoKey);
+        if (usage == null) {
+            usage = new MethodUsage(interposing
+                    ? interposingNotationUsageString(methodName, parameterTypes)
+                    : generateMethodUsageString(readableName(methodName), parameterTypes));
+            memoize(METHOD_USAGES, memoKey, usage);
+        }
+        return usage;
+    }
+
+    static String constructorUsage(String simpleName, List<TypeName> parameterTypes) {
+        StringBuilder wikiText = new StringBuilder("| ");
+        wikiText.append(readableName(simpleName))
+                .append(" |");
+        for (TypeName parameterType : parameterTypes) {
+            wikiText.append(" [")
+                    .append(parameterType.getName())
+                    .append("] |");
+        }
+        return wikiText.toString();
+    }
+
+    private static <V> void memoize(ConcurrentMap<String, V> memo, String key, V value) {
+        if (memo.size() >= MAX_MEMO_SIZE) {
+            memo.clear();
+        }
+        memo.put(key, value);
+    }
+
+    static String splitCamelCase(String name) {
+        StringBuilder words = new StringBuilder(name.length() + 8);
+        for (int i = 0; i < name.length(); i++) {
+            if (i > 0 && startsWord(name, i)) {
+                words.append(' ');
+            }
+            words.append(name.charAt(i));
+        }
+        return words.toString().toLowerCase();
+    }
+
+    /**
+     * An upper case letter starts a word unless it follows another one, except when it is the last capital of an
+     * abbreviation (the {@code U} in {@code HTTPUrl}); a letter followed by anything but a letter ends a word.
+     */
+    private static boolean startsWord(String name, int i) {
+        char previous = name.charAt(i - 1);
+        char current = name.charAt(i);
+        if (isUpper(current)) {
+            return !isUpper(previous) || i + 1 < name.length() && isLower(name.charAt(i + 1));
+        }
+        return isLetter(previous) && !isLetter(current);
+    }
+
+    private static boolean isUpper(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isLower(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    private static boolean isLetter(char c) {
+        return isUpper(c) || isLower(c);
+    }
+
+    private static String generateMethodUsageString(String readableMethodName, List<TypeName> parameterTypes) {
+        String[] methodNameParts = readableMethodName.split(" ");
+
+        int numberOfParts = methodNameParts.length;
+        int numberOfParams = parameterTypes.size();
+
+        StringBuilder result = new StringBuilder("| ");
+        if (numberOfParams > numberOfParts) {
+            result.append(readableMethodName)
+                    .append(" | ");
+            for (TypeName param : parameterTypes) {
+                result.append(param.getSimpleName())
+                        .append(", ");
+            }
+            result.append(" |");
+        } else {
+            int totalCells = numberOfParts + numberOfParams;
+
+            List<Integer> paramPositions = new ArrayList<>();
+            int paramPosition = totalCells - 1;
+
+            int n = 0;
+            while (n < numberOfParams) {
+                paramPositions.add(paramPosition);
+                paramPosition -= 2;
+                n++;
+            }
+            int prm = 0;
+            for (int p = 0; p < totalCells; p++) {
+                if (!paramPositions.contains(p)) {
+                    result.append(methodNameParts[p - prm])
+                            .append(" ");
+                } else {
+                    result.append("| [")
+                            .append(parameterTypes.get(prm).getSimpleName())
+                            .append("] | ");
+                    prm++;
+                }
+            }
+            if (numberOfParams == 0) {
+                result.append("|");
+            }
+        }
+        return result.toString();
+    }
+
+    private static String interposingNotationUsageString(String methodName, List<TypeName> parameterTypes) {
+        StringBuilder wikiText = new StringBuilder("| ");
+        wikiText.append(methodName)
+                .append("; |");
+        for (TypeName parameterType : parameterTypes) {
+            wikiText.append(" [")
+                    .append(parameterType.getName())
+                    .append("] |");
+        }
+        return wikiText.toString();
+    }
+
+    /**
+     * Context help is the wiki text without cell separators, parameters shown as {@code &lt;type&gt;}.
+     */
+    static String contextHelp(String wikiText) {
+        StringBuilder help = new StringBuilder(wikiText.length());
+        int i = 0;
+        while (i < wikiText.length()) {
+            int end = parameterEnd(wikiText, i);
+            if (end > 0) {
+                help.append("&lt;").append(wikiText, i + 3, end).append("&gt;");
+                i = end + 3;
+            } else {
+                char c = wikiText.charAt(i++);
+                if (c != '|') {
+                    help.append(c);
+                }
+            }
+        }
+        return help.toString().trim();
+    }
+
+    /**
+     * @return the end of the type name when a {@code | [type] |} parameter starts at i, otherwise -1
+     */
+    private static int parameterEnd(String wikiText, int i) {
+        if (!wikiText.startsWith("| [", i)) {
+            return -1;
+        }
+        int end = i + 3;
+        while (end < wikiText.length() && isWordChar(wikiText.charAt(end))) {
+            end++;
+        }
+        return end > i + 3 && wikiText.startsWith("] |", end) ? end : -1;
+    }
+
+    private static boolean isWordChar(char c) {
+        return isLetter(c) || c >= '0' && c <= '9' || c == '_';
+    }
+
+    static final class MethodUsage {
+        private final String usage;
+        private final String wikiText;
+        private final String contextHelp;
+
+        private MethodUsage(String usage) {
+            this.usage = usage;
+            this.wikiText = usage.substring(2);
+            this.contextHelp = contextHelp(wikiText);
+        }
+
+        String getUsage() {
+            return usage;
+        }
+
+        String getWikiText() {
+            return wikiText;
+        }
+
+        String getContextHelp() {
+            return contextHelp;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package nl.praegus.fitnesse.responders.metadata;
+
+import java.util.List;
+
+/**
+ * Public constructor or method of a fixture class, as far as it is relevant for autocompletion.
+ * Exception and annotation types are kept as simple names.
+ */
+
+public final class MemberSignature {
+    private final String name;
+    private final String declaringClass;
+    private final List<TypeName> parameterTypes;
+    private final List<String> exceptionTypes;
+    private final List<String> annotations;
+
+    public MemberSignature(String name, String declaringClass, List<TypeName> parameterTypes,
+                           List<String> exceptionTypes, List<String> annotations) {
+        this.name = name;
+        this.declaringClass = declaringClass;
+        this.parameterTypes = parameterTypes;
+        this.exceptionTypes = exceptionTypes;
+        this.annotations = annotations;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDeclaringClass() {
+        return declaringClass;
+    }
+
+    public List<TypeName> getParameterTypes() {
+        return parameterTypes;
+    }
+
+    public List<String> getExceptionTypes() {
+        return exceptionTypes;
+    }
+
+    public List<String> getAnnotations() {
+        return annotations;
+    }
+}
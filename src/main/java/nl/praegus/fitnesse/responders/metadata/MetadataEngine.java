@@ -0,0 +1,32 @@
+package nl.praegus.fitnesse.responders.metadata;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.List;
+
+/**
+ * Finds the fixture classes in a package and reads their public constructors and methods.
+ * The engine is chosen with the system property {@value #ENGINE_SYSPROP}: {@code reflection} (default) loads the
+ * classes, {@code classfile} reads the class files without loading them.
+ */
+
+public interface MetadataEngine {
+    String ENGINE_SYSPROP = "autoCompleteMetadataEngine";
+
+    static MetadataEngine fromSystemProperty() {
+        if ("classfile".equalsIgnoreCase(System.getProperty(ENGINE_SYSPROP))) {
+            return ClassFileMetadataEngine.INSTANCE;
+        }
+        return ReflectionMetadataEngine.INSTANCE;
+    }
+
+    String getName();
+
+    /**
+     * @return the fixture classes in the package, in the order they were found on the classpath
+     */
+    List<FixtureClass> findClasses(String packageName, URLClassLoader classLoader)
+            throws IOException, ClassNotFoundException;
+
+    ClassSignature readSignature(FixtureClass fixtureClass, URLClassLoader classLoader);
+}
@@ -0,0 +1,138 @@
+package nl.praegus.fitnesse.responders.metadata;
+
+import nl.praegus.fitnesse.responders.util.ClassFinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.URLClassLoader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads fixture classes and reads their constructors and methods using reflection.
+ */
+
+public final class ReflectionMetadataEngine implements MetadataEngine {
+    static final ReflectionMetadataEngine INSTANCE = new ReflectionMetadataEngine();
+
+    private ReflectionMetadataEngine() {
+    }
+
+    @Override
+    public String getName() {
+        return "reflection";
+    }
+
+    @Override
+    public List<FixtureClass> findClasses(String packageName, URLClassLoader classLoader)
+            throws IOException, ClassNotFoundException {
+        List<FixtureClass> fixtureClasses = new ArrayList<>();
+        for (Class klass : ClassFinder.getClasses(packageName, false, classLoader)) {
+            fixtureClasses.add(FixtureClass.of(klass));
+        }
+        return fixtureClasses;
+    }
+
+    @Override
+    public ClassSignature readSignature(FixtureClass fixtureClass, URLClassLoader classLoader) {
+        Class<?> klass;
+        try {
+            klass = classLoader.loadClass(fixtureClass.getName());
+        } catch (ClassNotFoundException | NoClassDefFoundError e) {
+            return ClassSignature.empty(fixtureClass.getName());
+        }
+        return new ClassSignature(klass.getName(), getConstructors(klass), getMethods(klass),
+                supertypeSources(klass, classLoader));
+    }
+
+    private static Set<File> supertypeSources(Class<?> klass, URLClassLoader classLoader) {
+        Set<File> sources = new LinkedHashSet<>();
+        Set<Class<?>> visited = new HashSet<>();
+        Deque<Class<?>> supertypes = new ArrayDeque<>();
+        addSupertypes(klass, supertypes);
+        while (!supertypes.isEmpty()) {
+            Class<?> supertype = supertypes.poll();
+            if (visited.add(supertype)) {
+                File source = FixtureClass.sourceOf(
+                        classLoader.getResource(supertype.getName().replace('.', '/') + ".class"));
+                if (source != null) {
+                    sources.add(source);
+                }
+                addSupertypes(supertype, supertypes);
+            }
+        }
+        return sources;
+    }
+
+    private static void addSupertypes(Class<?> klass, Deque<Class<?>> supertypes) {
+        if (klass.getSuperclass() != null && klass.getSuperclass() != Object.class) {
+            supertypes.add(klass.getSuperclass());
+        }
+        Collections.addAll(supertypes, klass.getInterfaces());
+    }
+
+    private List<MemberSignature> getConstructors(Class<?> klass) {
+        List<MemberSignature> cConstructors = new ArrayList<>();
+        try {
+            for (Constructor constructor : klass.getConstructors()) {
+                cConstructors.add(new MemberSignature(klass.getSimpleName(), klass.getName(),
+                        typeNames(constructor.getParameterTypes()),
+                        simpleNames(constructor.getExceptionTypes()),
+                        annotationNames(constructor.getDeclaredAnnotations())));
+            }
+        } catch (NoClassDefFoundError err) {
+            //intentionally ignore classes that cannot be found
+            return Collections.emptyList();
+        }
+        return cConstructors;
+    }
+
+    private List<MemberSignature> getMethods(Class<?> klass) {
+        List<MemberSignature> cMethods = new ArrayList<>();
+        try {
+            for (Method method : klass.getMethods()) {
+                cMethods.add(new MemberSignature(method.getName(), method.getDeclaringClass().getName(),
+                        typeNames(method.getParameterTypes()),
+                        simpleNames(method.getExceptionTypes()),
+                        annotationNames(method.getDeclaredAnnotations())));
+            }
+        } catch (NoClassDefFoundError err) {
+            //intentionally ignore classes that cannot be found
+            return Collections.emptyList();
+        }
+        return cMethods;
+    }
+
+    private static List<TypeName> typeNames(Class<?>[] types) {
+        List<TypeName> names = new ArrayList<>();
+        for (Class<?> type : types) {
+            names.add(TypeName.of(type));
+        }
+        return names;
+    }
+
+    private static List<String> simpleNames(Class<?>[] types) {
+        List<String> names = new ArrayList<>();
+        for (Class<?> type : types) {
+            names.add(type.getSimpleName());
+        }
+        return names;
+    }
+
+    private static List<String> annotationNames(Annotation[] annotations) {
+        List<String> names = new ArrayList<>();
+        for (Annotation a : annotations) {
+            names.add(a.annotationType().getSimpleName());
+        }
+        return names;
+    }
+}
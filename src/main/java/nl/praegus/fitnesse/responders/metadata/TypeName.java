@@ -0,0 +1,79 @@
+package nl.praegus.fitnesse.responders.metadata;
+
+/**
+ * Name of a parameter type, both as {@link Class#getName()} and as {@link Class#getSimpleName()} would return it,
+ * so it can be created from a loaded class as well as from a class file descriptor.
+ */
+
+public final class TypeName {
+    private final String name;
+    private final String simpleName;
+
+    private TypeName(String name, String simpleName) {
+        this.name = name;
+        this.simpleName = simpleName;
+    }
+
+    public static TypeName of(Class<?> type) {
+        return new TypeName(type.getName(), type.getSimpleName());
+    }
+
+    /**
+     * @param descriptor a field descriptor, e.g. {@code I}, {@code Ljava/lang/String;} or {@code [[J}
+     */
+    public static TypeName fromDescriptor(String descriptor) {
+        switch (descriptor.charAt(0)) {
+            case 'B':
+                return new TypeName("byte", "byte");
+            case 'C':
+                return new TypeName("char", "char");
+            case 'D':
+                return new TypeName("double", "double");
+            case 'F':
+                return new TypeName("float", "float");
+            case 'I':
+                return new TypeName("int", "int");
+            case 'J':
+                return new TypeName("long", "long");
+            case 'S':
+                return new TypeName("short", "short");
+            case 'Z':
+                return new TypeName("boolean", "boolean");
+            case 'V':
+                return new TypeName("void", "void");
+            case '[':
+                TypeName component = fromDescriptor(descriptor.substring(1));
+                return new TypeName(descriptor.replace('/', '.'), component.simpleName + "[]");
+            case 'L':
+                return fromInternalName(descriptor.substring(1, descriptor.length() - 1));
+            default:
+                throw new IllegalArgumentException("Invalid descriptor: " + descriptor);
+        }
+    }
+
+    /**
+     * @param internalName a class name as used in class files, e.g. {@code java/util/Map$Entry}
+     */
+    public static TypeName fromInternalName(String internalName) {
+        String name = internalName.replace('/', '.');
+        return new TypeName(name, simpleNameOf(name));
+    }
+
+    static String simpleNameOf(String binaryName) {
+        String simpleName = binaryName.substring(binaryName.lastIndexOf('.') + 1);
+        return simpleName.substring(simpleName.lastIndexOf('$') + 1);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSimpleName() {
+        return simpleName;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,315 @@
+package nl.praegus.fitnesse.responders.query;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Searchable index over everything the autocomplete response offers for a page: scenarios, table templates, variables,
+ * and the methods and constructors of all classes. Entries are found by word prefix on their readable name and context
+ * help (all query words must match), and when that gives too few results, by trigram similarity so typos still match.
+ * The index is immutable and can be queried concurrently.
+ */
+
+public final class CompletionIndex {
+    private static final Pattern ENTITIES = Pattern.compile("&\\w+;");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final double MIN_SIMILARITY = 0.3;
+    private static final int PREFIX_SCORE = 1000;
+    private static final int OBJECT_SIZE = 56;
+    private static final int MEMBER_SIZE = 48;
+    private static final int ARRAY_SIZE = 40;
+    private static final int REFERENCE_SIZE = 8;
+    private static final int STRING_SIZE = 40;
+    private static final int BOXED_SIZE = 16;
+
+    private final List<Entry> entries;
+    private final String[] tokens;
+    private final int[] tokenEntries;
+    private final Map<String, int[]> trigramEntries;
+    private final long estimatedBytes;
+
+    private CompletionIndex(List<Entry> entries) {
+        this.entries = entries;
+
+        List<String> entryTokens = new ArrayList<>();
+        List<Integer> tokenIds = new ArrayList<>();
+        Map<String, Set<Integer>> trigrams = new HashMap<>();
+        for (int id = 0; id < entries.size(); id++) {
+            Entry entry = entries.get(id);
+            for (String token : entry.tokens) {
+                entryTokens.add(token);
+                tokenIds.add(id);
+            }
+            for (String trigram : entry.trigrams) {
+                trigrams.computeIfAbsent(trigram, t -> new LinkedHashSet<>()).add(id);
+            }
+        }
+        Integer[] order = new Integer[entryTokens.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> entryTokens.get(a).compareTo(entryTokens.get(b)));
+        tokens = new String[order.length];
+        tokenEntries = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            tokens[i] = entryTokens.get(order[i]);
+            tokenEntries[i] = tokenIds.get(order[i]);
+        }
+        trigramEntries = new HashMap<>();
+        for (Map.Entry<String, Set<Integer>> trigram : trigrams.entrySet()) {
+            trigramEntries.put(trigram.getKey(), trigram.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        estimatedBytes = estimateBytes();
+    }
+
+    /**
+     * @param scenarios scenarios and table templates of the page
+     * @param variables variables defined on the page
+     * @param classes   class metadata, as in the full autocomplete response
+     */
+    public static CompletionIndex build(JSONArray scenarios, JSONArray variables, Iterable<JSONObject> classes) {
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < scenarios.length(); i++) {
+            JSONObject scenario = scenarios.getJSONObject(i);
+            entries.add(new Entry("scenario", null, scenario,
+                    scenario.optString("name"), scenario.optString("contexthelp")));
+        }
+        for (int i = 0; i < variables.length(); i++) {
+            JSONObject variable = variables.getJSONObject(i);
+            entries.add(new Entry("variable", null, variable, variable.optString("varName"), ""));
+        }
+        for (JSONObject fixtureClass : classes) {
+            String className = fixtureClass.optString("qualifiedName");
+            addMembers(entries, "constructor", className, fixtureClass.optJSONArray("constructors"));
+            addMembers(entries, "method", className, fixtureClass.optJSONArray("methods"));
+        }
+        return new CompletionIndex(Collections.unmodifiableList(entries));
+    }
+
+    private static void addMembers(List<Entry> entries, String kind, String className, JSONArray members) {
+        if (members == null) {
+            return;
+        }
+        for (int i = 0; i < members.length(); i++) {
+            JSONObject member = members.getJSONObject(i);
+            entries.add(new Entry(kind, className, member,
+                    member.optString("readableName"), member.optString("contexthelp")));
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the estimated heap used by the index, including the json of its entries; strings the json shares with
+     * the class metadata cache are counted again, as the index keeps them after the metadata is evicted
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    private long estimateBytes() {
+        long size = OBJECT_SIZE + ARRAY_SIZE + (long) REFERENCE_SIZE * entries.size();
+        for (Entry entry : entries) {
+            size += OBJECT_SIZE + sizeOf(entry.json) + sizeOf(entry.text) + ARRAY_SIZE;
+            for (String token : entry.tokens) {
+                size += REFERENCE_SIZE + sizeOf(token);
+            }
+            size += OBJECT_SIZE + (long) MEMBER_SIZE * entry.trigrams.size();
+        }
+        size += 2L * ARRAY_SIZE + (long) (REFERENCE_SIZE + Integer.BYTES) * tokens.length;
+        for (Map.Entry<String, int[]> trigram : trigramEntries.entrySet()) {
+            size += MEMBER_SIZE + sizeOf(trigram.getKey())
+                    + ARRAY_SIZE + (long) Integer.BYTES * trigram.getValue().length;
+        }
+        return size;
+    }
+
+    private static long sizeOf(Object value) {
+        if (value instanceof String) {
+            return STRING_SIZE + 2L * ((String) value).length();
+        }
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            long size = OBJECT_SIZE;
+            for (String name : object.keySet()) {
+                size += MEMBER_SIZE + sizeOf(name) + sizeOf(object.get(name));
+            }
+            return size;
+        }
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            long size = ARRAY_SIZE;
+            for (int i = 0; i < array.length(); i++) {
+                size += REFERENCE_SIZE + sizeOf(array.get(i));
+            }
+            return size;
+        }
+        return BOXED_SIZE;
+    }
+
+    /**
+     * @return the best matching entries, best first; each is a copy of the entry's json with its {@code kind} and,
+     * for methods and constructors, the {@code class} it belongs to
+     */
+    public List<JSONObject> query(String query, int limit) {
+        String[] queryTokens = tokenize(query);
+        List<Match> matches = new ArrayList<>();
+        if (queryTokens.length == 0) {
+            for (int id = 0; id < entries.size() && matches.size() < limit; id++) {
+                matches.add(new Match(id, 0));
+            }
+            return toJson(matches, limit);
+        }
+
+        String queryText = String.join(" ", queryTokens);
+        BitSet prefixMatches = prefixMatches(queryTokens);
+        for (int id = prefixMatches.nextSetBit(0); id >= 0; id = prefixMatches.nextSetBit(id + 1)) {
+            matches.add(new Match(id, PREFIX_SCORE + prefixScore(entries.get(id), queryText, queryTokens)));
+        }
+        if (matches.size() < limit) {
+            addSimilarEntries(queryText, prefixMatches, matches);
+        }
+        matches.sort((a, b) -> a.score != b.score ? Double.compare(b.score, a.score) : Integer.compare(a.id, b.id));
+        return toJson(matches, limit);
+    }
+
+    private BitSet prefixMatches(String[] queryTokens) {
+        BitSet result = null;
+        for (String queryToken : queryTokens) {
+            BitSet tokenMatches = new BitSet(entries.size());
+            for (int i = firstWithPrefix(queryToken); i < tokens.length && tokens[i].startsWith(queryToken); i++) {
+                tokenMatches.set(tokenEntries[i]);
+            }
+            if (result == null) {
+                result = tokenMatches;
+            } else {
+                result.and(tokenMatches);
+            }
+        }
+        return result;
+    }
+
+    private int firstWithPrefix(String prefix) {
+        int index = Arrays.binarySearch(tokens, prefix);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index > 0 && tokens[index - 1].equals(prefix)) {
+            index--;
+        }
+        return index;
+    }
+
+    private static double prefixScore(Entry entry, String queryText, String[] queryTokens) {
+        double score = 0;
+        if (entry.text.startsWith(queryText)) {
+            score += 100;
+        }
+        for (String queryToken : queryTokens) {
+            for (String token : entry.tokens) {
+                if (token.equals(queryToken)) {
+                    score += 10;
+                    break;
+                }
+            }
+        }
+        return score - entry.tokens.length;
+    }
+
+    private void addSimilarEntries(String queryText, BitSet exclude, List<Match> matches) {
+        Set<String> queryTrigrams = trigrams(queryText);
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            int[] ids = trigramEntries.get(trigram);
+            if (ids != null) {
+                for (int id : ids) {
+                    if (!exclude.get(id)) {
+                        shared.merge(id, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<Integer, Integer> candidate : shared.entrySet()) {
+            int entryTrigrams = entries.get(candidate.getKey()).trigrams.size();
+            double similarity = candidate.getValue()
+                    / (double) (queryTrigrams.size() + entryTrigrams - candidate.getValue());
+            if (similarity >= MIN_SIMILARITY) {
+                matches.add(new Match(candidate.getKey(), similarity));
+            }
+        }
+    }
+
+    private List<JSONObject> toJson(List<Match> matches, int limit) {
+        List<JSONObject> results = new ArrayList<>(Math.min(limit, matches.size()));
+        for (Match match : matches.subList(0, Math.min(limit, matches.size()))) {
+            Entry entry = entries.get(match.id);
+            String[] names = JSONObject.getNames(entry.json);
+            JSONObject result = names == null ? new JSONObject() : new JSONObject(entry.json, names);
+            result.put("kind", entry.kind);
+            if (entry.className != null) {
+                result.put("class", entry.className);
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    private static String[] tokenize(String text) {
+        String words = NON_WORD.matcher(ENTITIES.matcher(text).replaceAll(" ")).replaceAll(" ").trim();
+        return words.isEmpty() ? new String[0] : words.toLowerCase(Locale.ROOT).split(" ");
+    }
+
+    private static Set<String> trigrams(String text) {
+        String padded = "  " + text + " ";
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    private static final class Entry {
+        private final String kind;
+        private final String className;
+        private final JSONObject json;
+        private final String text;
+        private final String[] tokens;
+        private final Set<String> trigrams;
+
+        private Entry(String kind, String className, JSONObject json, String name, String contextHelp) {
+            this.kind = kind;
+            this.className = className;
+            this.json = json;
+            String[] nameTokens = tokenize(name);
+            this.text = String.join(" ", nameTokens);
+            Set<String> allTokens = new LinkedHashSet<>(Arrays.asList(nameTokens));
+            allTokens.addAll(Arrays.asList(tokenize(contextHelp)));
+            this.tokens = allTokens.toArray(new String[0]);
+            this.trigrams = trigrams(text);
+        }
+    }
+
+    private static final class Match {
+        private final int id;
+        private final double score;
+
+        private Match(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package nl.praegus.fitnesse.responders.query;
+
+import nl.praegus.fitnesse.responders.util.SingleFlight;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the completion indexes of the most recently queried pages, so each keystroke in the editor is answered from
+ * the index instead of from the page and its classes. Indexes are keyed by a digest of everything they are built from
+ * (page, included pages, classpath, metadata settings). Concurrent requests for an index that is being built wait for
+ * it (see {@link SingleFlight}). An index holds the members of the classes it was built from, also after they are
+ * evicted from the class metadata cache, so the indexes have their own budget: least recently used indexes are
+ * evicted while their estimated size (see {@link CompletionIndex#getEstimatedBytes()}) exceeds
+ * {@value #MAX_MEGABYTES_SYSPROP} megabytes (default 32).
+ */
+
+public final class CompletionIndexCache {
+    public static final String MAX_MEGABYTES_SYSPROP = "autoCompleteQueryIndexCacheMegabytes";
+    private static final CompletionIndexCache INSTANCE = new CompletionIndexCache(
+            Long.getLong(MAX_MEGABYTES_SYSPROP, 32) * 1024 * 1024);
+
+    private final long maxBytes;
+    private final Map<String, CompletionIndex> indexes = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final SingleFlight<String, CompletionIndex> flights = new SingleFlight<>();
+    private long bytes;
+    private long evictions;
+
+    CompletionIndexCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    public static CompletionIndexCache getInstance() {
+        return INSTANCE;
+    }
+
+    public CompletionIndex get(String contentDigest, Supplier<CompletionIndex> builder) {
+        CompletionIndex cached = cached(contentDigest);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        return flights.get(contentDigest, () -> {
+            CompletionIndex index = cached(contentDigest);
+            if (index != null) {
+                hits.incrementAndGet();
+                return index;
+            }
+            misses.incrementAndGet();
+            index = builder.get();
+            put(contentDigest, index);
+            return index;
+        });
+    }
+
+    private synchronized CompletionIndex cached(String contentDigest) {
+        return indexes.get(contentDigest);
+    }
+
+    private synchronized void put(String contentDigest, CompletionIndex index) {
+        CompletionIndex previous = indexes.put(contentDigest, index);
+        bytes += index.getEstimatedBytes() - (previous == null ? 0 : previous.getEstimatedBytes());
+        Iterator<CompletionIndex> eldestFirst = indexes.values().iterator();
+        while (bytes > maxBytes && eldestFirst.hasNext()) {
+            bytes -= eldestFirst.next().getEstimatedBytes();
+            eldestFirst.remove();
+            evictions++;
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public SingleFlight<String, CompletionIndex> getFlights() {
+        return flights;
+    }
+
+    public synchronized int size() {
+        return indexes.size();
+    }
+
+    /**
+     * @return the estimated heap used by the cached indexes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized void clear() {
+        indexes.clear();
+        bytes = 0;
+    }
+}
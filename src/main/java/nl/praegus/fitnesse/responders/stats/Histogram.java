@@ -0,0 +1,63 @@
+package nl.praegus.fitnesse.responders.stats;
+
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * Distribution of a measured value. The total count and maximum are kept for all values, the percentiles are taken
+ * over the most recent {@value #WINDOW_SIZE} values so they follow changes in behaviour.
+ */
+
+public final class Histogram {
+    static final int WINDOW_SIZE = 1024;
+
+    private final long[] window = new long[WINDOW_SIZE];
+    private long count;
+    private long max;
+
+    public synchronized void record(long value) {
+        window[(int) (count % WINDOW_SIZE)] = value;
+        count++;
+        max = Math.max(max, value);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @param percentile 0 - 100
+     * @return the value below which the percentage of the recent values is, 0 without values
+     */
+    public synchronized long percentile(double percentile) {
+        return percentile(recentSorted(), percentile);
+    }
+
+    /**
+     * @param unit the values are divided by it, e.g. 1e6 to show nanoseconds as milliseconds
+     */
+    public synchronized JSONObject toJson(double unit) {
+        long[] sorted = recentSorted();
+        return new JSONObject()
+                .put("count", count)
+                .put("p50", percentile(sorted, 50) / unit)
+                .put("p95", percentile(sorted, 95) / unit)
+                .put("p99", percentile(sorted, 99) / unit)
+                .put("max", max / unit);
+    }
+
+    private long[] recentSorted() {
+        long[] sorted = Arrays.copyOf(window, (int) Math.min(count, WINDOW_SIZE));
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+    }
+}
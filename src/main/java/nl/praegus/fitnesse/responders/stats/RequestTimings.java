@@ -0,0 +1,75 @@
+package nl.praegus.fitnesse.responders.stats;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Time spent per phase of handling one request. Phases can be timed from several threads at once, the time of a
+ * phase that runs more than once (e.g. describing each class) is summed.
+ */
+
+public final class RequestTimings {
+    public static final String SERVER_TIMING = "Server-Timing";
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    public <T> T time(String phase, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            add(phase, System.nanoTime() - start);
+        }
+    }
+
+    public synchronized void add(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * @return the phases in the order they were first timed, with their time in nanoseconds
+     */
+    public synchronized Map<String, Long> getPhases() {
+        return new LinkedHashMap<>(phases);
+    }
+
+    /**
+     * @return the timed phases as value of a {@value #SERVER_TIMING} header, e.g. {@code render;dur=12.5, scan;dur=0.8}
+     */
+    public String serverTiming() {
+        return serverTiming(Collections.<String>emptySet());
+    }
+
+    /**
+     * @param streamedPhases phases that run while the body is sent, after the header: they are left out, as only part
+     *                       of their time is known, and a {@code body} entry without duration names them instead
+     * @return the timed phases as value of a {@value #SERVER_TIMING} header
+     */
+    public synchronized String serverTiming(Collection<String> streamedPhases) {
+        StringBuilder header = new StringBuilder();
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            if (streamedPhases.contains(phase.getKey())) {
+                continue;
+            }
+            if (header.length() > 0) {
+                header.append(", ");
+            }
+            header.append(phase.getKey())
+                    .append(";dur=")
+                    .append(String.format(Locale.ROOT, "%.3f", phase.getValue() / 1e6));
+        }
+        if (!streamedPhases.isEmpty()) {
+            if (header.length() > 0) {
+                header.append(", ");
+            }
+            header.append("body;desc=\"")
+                    .append(String.join(" ", streamedPhases))
+                    .append(" run while streaming, see stats\"");
+        }
+        return header.toString();
+    }
+}
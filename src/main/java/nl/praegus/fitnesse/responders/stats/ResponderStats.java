@@ -0,0 +1,64 @@
+package nl.praegus.fitnesse.responders.stats;
+
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Process-wide statistics of the autocomplete responses: the time per phase (see {@link RequestTimings}) and in
+ * total, the number of classes scanned and the number of bytes returned per response.
+ */
+
+public final class ResponderStats {
+    public static final String TOTAL = "total";
+    private static final ResponderStats INSTANCE = new ResponderStats();
+
+    private final Map<String, Histogram> phases = new TreeMap<>();
+    private final Histogram classesScanned = new Histogram();
+    private final Histogram bytesReturned = new Histogram();
+
+    ResponderStats() {
+    }
+
+    public static ResponderStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param timings        the phases of the request
+     * @param totalNanos     the time from receiving the request until the response was sent
+     * @param classesScanned the number of classes found in the imported packages
+     * @param bytesReturned  the size of the response body
+     */
+    public void record(RequestTimings timings, long totalNanos, int classesScanned, long bytesReturned) {
+        for (Map.Entry<String, Long> phase : timings.getPhases().entrySet()) {
+            histogram(phase.getKey()).record(phase.getValue());
+        }
+        histogram(TOTAL).record(totalNanos);
+        this.classesScanned.record(classesScanned);
+        this.bytesReturned.record(bytesReturned);
+    }
+
+    /**
+     * @return the statistics, with times in milliseconds
+     */
+    public JSONObject toJson() {
+        JSONObject phaseStats = new JSONObject();
+        synchronized (phases) {
+            for (Map.Entry<String, Histogram> phase : phases.entrySet()) {
+                phaseStats.put(phase.getKey(), phase.getValue().toJson(1e6));
+            }
+        }
+        return new JSONObject()
+                .put("phases", phaseStats)
+                .put("classesScanned", classesScanned.toJson(1))
+                .put("bytesReturned", bytesReturned.toJson(1));
+    }
+
+    private Histogram histogram(String phase) {
+        synchronized (phases) {
+            return phases.computeIfAbsent(phase, p -> new Histogram());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package nl.praegus.fitnesse.responders.stats;
+
+import fitnesse.FitNesseContext;
+import fitnesse.Responder;
+import fitnesse.http.Request;
+import fitnesse.http.Response;
+import fitnesse.http.SimpleResponse;
+import nl.praegus.fitnesse.responders.cache.ClassLoaderPool;
+import nl.praegus.fitnesse.responders.cache.ClassMetadataCache;
+import nl.praegus.fitnesse.responders.cache.CompressedResponseCache;
+import nl.praegus.fitnesse.responders.cache.MetadataStore;
+import nl.praegus.fitnesse.responders.cache.PageResultCache;
+import nl.praegus.fitnesse.responders.query.CompletionIndexCache;
+import nl.praegus.fitnesse.responders.util.DirectoryWatcher;
+import nl.praegus.fitnesse.responders.util.SingleFlight;
+import nl.praegus.fitnesse.responders.wiki.ScenarioLibraryIndex;
+import org.json.JSONObject;
+
+/**
+ * Returns the {@link ResponderStats} and the state of the caches as json, for monitoring.
+ * Register it next to the autocomplete responder, e.g. with
+ * {@code Responders=autoCompleteStats:nl.praegus.fitnesse.responders.stats.StatsResponder}.
+ */
+
+public class StatsResponder implements Responder {
+
+    @Override
+    public Response makeResponse(FitNesseContext context, Request request) throws Exception {
+        JSONObject stats = ResponderStats.getInstance().toJson()
+                .put("caches", caches());
+
+        SimpleResponse response = new SimpleResponse();
+        response.setMaxAge(0);
+        response.setContentType("application/json");
+        response.setContent(request.hasInput("pretty") ? stats.toString(3) : stats.toString());
+        return response;
+    }
+
+    private static JSONObject caches() {
+        PageResultCache pageResults = PageResultCache.getInstance();
+        ScenarioLibraryIndex scenarioLibraries = ScenarioLibraryIndex.getInstance();
+        CompletionIndexCache completionIndexes = CompletionIndexCache.getInstance();
+        CompressedResponseCache compressedResponses = CompressedResponseCache.getInstance();
+        ClassLoaderPool classLoaders = ClassLoaderPool.getInstance();
+        DirectoryWatcher watcher = DirectoryWatcher.getInstance();
+        return new JSONObject()
+                .put("pageResults", cache(pageResults.size(), pageResults.getHitCount(), pageResults.getMissCount())
+                        .put("coalescing", coalescing(pageResults.getFlights())))
+                .put("scenarioLibraries", cache(scenarioLibraries.size(), scenarioLibraries.getHitCount(),
+                        scenarioLibraries.getMissCount()))
+                .put("completionIndexes", cache(completionIndexes.size(), completionIndexes.getHitCount(),
+                        completionIndexes.getMissCount())
+                        .put("coalescing", coalescing(completionIndexes.getFlights()))
+                        .put("bytes", completionIndexes.getBytes())
+                        .put("maxBytes", completionIndexes.getMaxBytes())
+                        .put("evictions", completionIndexes.getEvictionCount()))
+                .put("classMetadata", cache(ClassMetadataCache.size(), ClassMetadataCache.getHitCount(),
+                        ClassMetadataCache.getMissCount())
+                        .put("coalescing", coalescing(ClassMetadataCache.getFlights()))
+                        .put("store", store(ClassMetadataCache.getStore()))
+                        .put("diskLoads", ClassMetadataCache.getDiskLoadCount()))
+                .put("compressedResponses", cache(compressedResponses.size(), compressedResponses.getHitCount(),
+                        compressedResponses.getMissCount())
+                        .put("bytes", compressedResponses.getBytes())
+                        .put("maxBytes", compressedResponses.getMaxBytes())
+                        .put("evictions", compressedResponses.getEvictionCount()))
+                .put("classLoaders", new JSONObject()
+                        .put("size", classLoaders.size())
+                        .put("evictions", classLoaders.getEvictionCount()))
+                .put("watchedDirectories", new JSONObject()
+                        .put("size", watcher.getWatchedDirectoryCount())
+                        .put("events", watcher.getEventCount())
+                        .put("changes", watcher.getChangedDirectoryCount()));
+    }
+
+    private static JSONObject store(MetadataStore<?> store) {
+        return new JSONObject()
+                .put("bytes", store.getBytes())
+                .put("maxBytes", store.getMaxBytes())
+                .put("evictions", store.getEvictionCount())
+                .put("softSize", store.softSize())
+                .put("softHits", store.getSoftHitCount())
+                .put("deduplicatedStrings", store.getDeduplicatedCount());
+    }
+
+    private static JSONObject coalescing(SingleFlight<?, ?> flights) {
+        return new JSONObject()
+                .put("coalesced", flights.getCoalescedCount())
+                .put("timeouts", flights.getTimeoutCount());
+    }
+
+    private static JSONObject cache(int size, long hits, long misses) {
+        return new JSONObject()
+                .put("size", size)
+                .put("hits", hits)
+                .put("misses", misses);
+    }
+}
@@ -5,21 +5,22 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 /**
  * Class to find classes by package, from fileSystem or JAR Based on code from:
  * https://dzone.com/articles/get-all-classes-within-package and
  * http://stackoverflow.com/questions/11016092/how-to-load-classes-at-runtime-from-a-folder-or-jar *
+ * The contents of each jar or directory are looked up in its {@link ClassPathIndex}, so a package lookup does not
+ * rescan the jar.
  */
 
 public class ClassFinder {
@@ -28,82 +29,91 @@ public class ClassFinder {
     public static List<Class> getClasses(String packageName, boolean recursive, URLClassLoader classLoader)
             throws ClassNotFoundException, IOException {
 
+        List<Class> classes = new ArrayList<>();
+        for (ClassPathIndex index : findIndexes(packageName, classLoader)) {
+            List<String> classNames = recursive
+                    ? index.getClassNamesInPackageTree(packageName)
+                    : index.getClassNames(packageName);
+            if (index.isJar()) {
+                classes.addAll(loadClassesWithPublicConstructor(classNames, classLoader));
+            } else {
+                for (String className : classNames) {
+                    classes.add(classLoader.loadClass(className));
+                }
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * @return the indexes of all classpath entries (jars or directories) in which the class loader finds the package
+     */
+    public static Set<ClassPathIndex> findIndexes(String packageName, URLClassLoader classLoader) throws IOException {
         String path = packageName.replace('.', '/');
         Enumeration<URL> resources = classLoader.getResources(path);
-        List<File> dirs = new ArrayList<>();
+        Set<ClassPathIndex> indexes = new LinkedHashSet<>();
 
         while (resources.hasMoreElements()) {
-            URL resource = resources.nextElement();
-            dirs.add(new File(URLDecoder.decode(resource.getFile(), "utf-8")));
-        }
-        List<Class> classes = new ArrayList<>();
-        for (File directory : dirs) {
-            classes.addAll(findClasses(directory, packageName, recursive, classLoader));
+            File entry = classPathEntryOf(resources.nextElement(), path);
+            if (entry != null && entry.exists()) {
+                indexes.add(ClassPathIndex.forEntry(entry));
+            }
         }
-        return classes;
+        return indexes;
     }
 
-    private static Set<Class> findClasses(File directory, String packageName, boolean recursive, URLClassLoader classLoader) throws ClassNotFoundException {
-        Set<Class> classes = new HashSet<>();
-        if (!directory.exists()) {
-            if (directory.getPath().contains(".jar")) {
-                String jarFile = directory.getPath().split("!")[0].replace("file:\\", "");
-                jarFile = jarFile.replace("file:", "");
-                classes.addAll(getClassesFromJar(jarFile, packageName, classLoader));
+    /**
+     * @return the indexes of all existing classpath entries of the class loader, in classpath order
+     */
+    public static List<ClassPathIndex> getIndexes(URLClassLoader classLoader) {
+        List<ClassPathIndex> indexes = new ArrayList<>();
+        for (URL url : classLoader.getURLs()) {
+            try {
+                File entry = new File(url.toURI());
+                if (entry.exists()) {
+                    indexes.add(ClassPathIndex.forEntry(entry));
+                }
+            } catch (URISyntaxException | IllegalArgumentException | IOException e) {
+                LOGGER.error("Unable to index classpath entry " + url + ": " + e.getMessage());
             }
-            return classes;
         }
+        return indexes;
+    }
 
-        File[] files = directory.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    if (recursive) {
-                        assert !file.getName().contains(".");
-                        classes.addAll(findClasses(file, packageName + "." + file.getName(), true, classLoader));
-                    }
-                } else if (file.getName().endsWith(".class") && !file.getName().contains("$")) {
-                    classes.add(classLoader.loadClass(packageName + '.' + file.getName().substring(0, file.getName().length() - 6)));
+    private static File classPathEntryOf(URL resource, String path) {
+        try {
+            if ("jar".equals(resource.getProtocol())) {
+                String file = resource.getPath();
+                int separator = file.indexOf("!/");
+                return new File(new URL(separator >= 0 ? file.substring(0, separator) : file).toURI());
+            }
+            if ("file".equals(resource.getProtocol())) {
+                File entry = new File(resource.toURI());
+                int depth = path.isEmpty() ? 0 : path.split("/").length;
+                for (int i = 0; i < depth && entry != null; i++) {
+                    entry = entry.getParentFile();
                 }
+                return entry;
             }
+        } catch (URISyntaxException | MalformedURLException | IllegalArgumentException e) {
+            LOGGER.error("Unable to locate classpath entry for " + resource + ": " + e.getMessage());
         }
-        return classes;
+        return null;
     }
 
-    private static List<Class> getClassesFromJar(String jar, String pkg, URLClassLoader classLoader) {
+    private static List<Class> loadClassesWithPublicConstructor(List<String> classNames, URLClassLoader classLoader) {
         List<Class> jarClasses = new ArrayList<>();
-        try (JarFile jarFile = new JarFile(jar)) {
-            Enumeration<JarEntry> e = jarFile.entries();
-            URL[] urls = {new URL("jar:file:" + jar + "!/")};
-            URLClassLoader cl = new URLClassLoader(urls, classLoader);
-            String pkgName;
-            while (e.hasMoreElements()) {
-                JarEntry je = e.nextElement();
-                if (je.isDirectory() || !je.getName().endsWith(".class") || je.getName().contains("$")) {
-                    continue;
-                }
-                String fqClassName = je.getName().substring(0, je.getName().length() - 6);
-                fqClassName = fqClassName.replace('/', '.');
-                if (fqClassName.lastIndexOf('.') >= 0) {
-                    pkgName = fqClassName.substring(0, fqClassName.lastIndexOf('.'));
-                } else {
-                    pkgName = "";
-                }
-                if (pkgName.equals(pkg)) {
-                    try {
-                        Class c = cl.loadClass(fqClassName);
-                        //Ignore classes without any public constructor
-                        if (c.getConstructors().length > 0) {
-                            jarClasses.add(c);
-                        }
-                    } catch (ClassNotFoundException ex) {
-                        //intentionally ignore classes that cannot be found
-                    }
+        for (String fqClassName : classNames) {
+            try {
+                Class c = classLoader.loadClass(fqClassName);
+                //Ignore classes without any public constructor
+                if (c.getConstructors().length > 0) {
+                    jarClasses.add(c);
                 }
+            } catch (ClassNotFoundException ex) {
+                //intentionally ignore classes that cannot be found
             }
-        } catch (IOException e) {
-            LOGGER.error("IOException: " + e);
         }
         return jarClasses;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,175 @@
+package nl.praegus.fitnesse.responders.util;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Digest of the state of a classpath: size and modification time of every jar, and for class directories the number
+ * of files, their total size and the latest modification time in the tree. Missing entries are part of the digest as
+ * well, so the digest changes when they appear. The tree of a directory watched by the {@link DirectoryWatcher} is
+ * kept per (package) directory, and only the directories the watcher reports changed are listed again; trees that
+ * can't be watched are walked completely each time.
+ */
+
+public final class ClassPathFingerprint {
+    private static final ConcurrentMap<File, DirectoryTree> TREES = new ConcurrentHashMap<>();
+    private static final AtomicLong LISTED_DIRECTORIES = new AtomicLong();
+
+    private ClassPathFingerprint() {
+    }
+
+    public static String of(List<String> classPathElements) {
+        ContentDigest digest = new ContentDigest();
+        for (String element : classPathElements) {
+            File entry = new File(element).getAbsoluteFile();
+            digest.add(entry.getPath());
+            if (entry.isDirectory()) {
+                long[] tree = treeOf(entry);
+                digest.add(tree[0]).add(tree[1]).add(tree[2]);
+            } else if (entry.isFile()) {
+                digest.add(FileFingerprint.of(entry));
+            } else {
+                digest.add("missing");
+            }
+        }
+        return digest.toHex();
+    }
+
+    public static void clear() {
+        TREES.clear();
+    }
+
+    /**
+     * @return the number of directories listed to make fingerprints
+     */
+    static long getListedDirectoryCount() {
+        return LISTED_DIRECTORIES.get();
+    }
+
+    /**
+     * @return number of files, total size and latest modification time of the tree
+     */
+    private static long[] treeOf(File directory) {
+        DirectoryWatcher watcher = DirectoryWatcher.getInstance();
+        if (!watcher.watch(directory)) {
+            TREES.remove(directory);
+            long[] tree = new long[3];
+            addTree(directory, tree);
+            return tree;
+        }
+        long sequence = watcher.getSequence();
+        DirectoryTree tree = TREES.get(directory);
+        Set<File> changed = tree == null ? null : watcher.getChangedSince(directory, tree.sequence);
+        if (changed == null) {
+            tree = DirectoryTree.read(directory, sequence);
+            TREES.put(directory, tree);
+        } else if (changed.isEmpty()) {
+            tree.sequence = Math.max(tree.sequence, sequence);
+        } else {
+            tree = tree.updated(changed, sequence);
+            TREES.put(directory, tree);
+        }
+        return tree.total();
+    }
+
+    private static void addTree(File directory, long[] tree) {
+        tree[2] = Math.max(tree[2], directory.lastModified());
+        File[] files = listFiles(directory);
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addTree(file, tree);
+            } else {
+                tree[0]++;
+                tree[1] += file.length();
+                tree[2] = Math.max(tree[2], file.lastModified());
+            }
+        }
+    }
+
+    private static File[] listFiles(File directory) {
+        LISTED_DIRECTORIES.incrementAndGet();
+        return directory.listFiles();
+    }
+
+    /**
+     * Number of files, total size and latest modification time of the files directly in each directory of a watched
+     * tree, as of a sequence number of the watcher.
+     */
+    private static final class DirectoryTree {
+        private final Map<File, long[]> directories;
+        private volatile long sequence;
+
+        private DirectoryTree(Map<File, long[]> directories, long sequence) {
+            this.directories = directories;
+            this.sequence = sequence;
+        }
+
+        private static DirectoryTree read(File root, long sequence) {
+            Map<File, long[]> directories = new HashMap<>();
+            readTree(root.toPath().toAbsolutePath().normalize().toFile(), directories);
+            return new DirectoryTree(Collections.unmodifiableMap(directories), sequence);
+        }
+
+        private DirectoryTree updated(Set<File> changed, long sequence) {
+            Map<File, long[]> updated = new HashMap<>(directories);
+            for (File directory : changed) {
+                if (directory.isDirectory()) {
+                    updated.remove(directory);
+                } else {
+                    String prefix = directory.getPath() + File.separator;
+                    updated.keySet().removeIf(dir -> dir.equals(directory) || dir.getPath().startsWith(prefix));
+                }
+            }
+            for (File directory : changed) {
+                if (directory.isDirectory() && !updated.containsKey(directory)) {
+                    readTree(directory, updated);
+                }
+            }
+            return new DirectoryTree(Collections.unmodifiableMap(updated), sequence);
+        }
+
+        /**
+         * Reads the directory and its sub directories; the watcher reports all directories of a new tree changed,
+         * so sub directories that are read already are unchanged.
+         */
+        private static void readTree(File directory, Map<File, long[]> directories) {
+            long[] own = new long[]{0, 0, directory.lastModified()};
+            directories.put(directory, own);
+            File[] files = listFiles(directory);
+            if (files == null) {
+                return;
+            }
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    if (!directories.containsKey(file)) {
+                        readTree(file, directories);
+                    }
+                } else {
+                    own[0]++;
+                    own[1] += file.length();
+                    own[2] = Math.max(own[2], file.lastModified());
+                }
+            }
+        }
+
+        private long[] total() {
+            long[] total = new long[3];
+            for (long[] directory : directories.values()) {
+                total[0] += directory[0];
+                total[1] += directory[1];
+                total[2] = Math.max(total[2], directory[2]);
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package nl.praegus.fitnesse.responders.util;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Index of the top level classes in a single classpath entry (jar or directory), grouped by package.
+ * The index is built in one pass over the jar entries or the directory tree and cached per entry for as long as the
+ * entry is unchanged: for jars that is their size and modification time, for directories the modification times of
+ * all (package) directories, which change whenever a class file is added or removed. Directories watched by the
+ * {@link DirectoryWatcher} are not checked that way: only the packages it reports changed are listed again.
+ * The index also records which classes have documentation in {@value #APIDOCS_LOCATION}; documentation is only read
+ * and parsed when it is asked for, once per version of the entry. Indexes of jars are kept on disk as well when the
+ * {@link PersistentJarCache} is enabled.
+ */
+
+public final class ClassPathIndex {
+    public static final String APIDOCS_LOCATION = "META-INF/apidocs/";
+    private static final String APIDOCS_EXTENSION = ".json";
+    private static final String INDEX_SECTION = "index";
+    private static final String PACKAGES = "packages";
+    private static final String DOCUMENTED = "documented";
+    private static final ConcurrentMap<File, ClassPathIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private final File entry;
+    private final Map<String, List<String>> classesByPackage;
+    private final Set<String> documentedClasses;
+    private final Map<File, FileFingerprint> fingerprints;
+    private volatile long watchSequence;
+    private final ConcurrentMap<String, JSONObject> apidocs = new ConcurrentHashMap<>();
+
+    private ClassPathIndex(File entry, Map<String, List<String>> classesByPackage, Set<String> documentedClasses,
+                           Map<File, FileFingerprint> fingerprints, long watchSequence) {
+        this.entry = entry;
+        this.classesByPackage = classesByPackage;
+        this.documentedClasses = documentedClasses;
+        this.fingerprints = fingerprints;
+        this.watchSequence = watchSequence;
+    }
+
+    /**
+     * Returns the (cached) index of a jar file or class directory.
+     */
+    public static ClassPathIndex forEntry(File entry) throws IOException {
+        File key = entry.getAbsoluteFile();
+        ClassPathIndex index = INDEXES.get(key);
+        ClassPathIndex current = index == null ? null : index.current();
+        if (current == null) {
+            current = key.isDirectory() ? indexDirectory(key) : indexJar(key);
+        }
+        if (current != index) {
+            INDEXES.put(key, current);
+        }
+        return current;
+    }
+
+    public static void clear() {
+        INDEXES.clear();
+    }
+
+    public File getEntry() {
+        return entry;
+    }
+
+    public boolean isJar() {
+        return !entry.isDirectory();
+    }
+
+    public boolean hasApidocs() {
+        return !documentedClasses.isEmpty();
+    }
+
+    public boolean hasApidocs(String className) {
+        return documentedClasses.contains(className);
+    }
+
+    /**
+     * @return the parsed documentation of the class, an empty object when it is unreadable, or null when this entry
+     * has no documentation for the class
+     */
+    public JSONObject getApidocs(String className) {
+        if (!hasApidocs(className)) {
+            return null;
+        }
+        return apidocs.computeIfAbsent(className, this::readApidocs);
+    }
+
+    public Set<String> getPackages() {
+        return classesByPackage.keySet();
+    }
+
+    /**
+     * @return the fully qualified names of the top level classes in the package, sorted
+     */
+    public List<String> getClassNames(String packageName) {
+        List<String> classNames = classesByPackage.get(packageName);
+        return classNames == null ? Collections.<String>emptyList() : classNames;
+    }
+
+    /**
+     * @return the fully qualified names of the top level classes in the package and all its sub packages, sorted
+     */
+    public List<String> getClassNamesInPackageTree(String packageName) {
+        List<String> classNames = new ArrayList<>();
+        String prefix = packageName.isEmpty() ? "" : packageName + ".";
+        for (Map.Entry<String, List<String>> pkg : classesByPackage.entrySet()) {
+            if (pkg.getKey().equals(packageName) || pkg.getKey().startsWith(prefix)) {
+                classNames.addAll(pkg.getValue());
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * @return this index when the entry is unchanged, an index in which the packages that changed are listed again
+     * when the entry is a watched directory, or null when the entry has to be indexed again
+     */
+    private ClassPathIndex current() {
+        if (watchSequence < 0) {
+            return isCurrent() ? this : null;
+        }
+        DirectoryWatcher watcher = DirectoryWatcher.getInstance();
+        long sequence = watcher.getSequence();
+        Set<File> changedDirectories = watcher.getChangedSince(entry, watchSequence);
+        if (changedDirectories == null) {
+            return null;
+        }
+        if (changedDirectories.isEmpty()) {
+            // nothing to ask for again, so older changes may be forgotten
+            watchSequence = Math.max(watchSequence, sequence);
+            return this;
+        }
+        return updated(changedDirectories, sequence);
+    }
+
+    private ClassPathIndex updated(Set<File> changedDirectories, long sequence) {
+        Map<String, List<String>> updated = new TreeMap<>(classesByPackage);
+        Path root = entry.toPath().toAbsolutePath().normalize();
+        for (File directory : changedDirectories) {
+            Path relative = root.relativize(directory.toPath());
+            if (relative.startsWith("..")) {
+                continue;
+            }
+            String packageName = relative.toString().replace(File.separatorChar, '.');
+            if (directory.isDirectory()) {
+                List<String> classNames = listClasses(directory, packageName);
+                if (classNames.isEmpty()) {
+                    updated.remove(packageName);
+                } else {
+                    Collections.sort(classNames);
+                    updated.put(packageName, Collections.unmodifiableList(classNames));
+                }
+            } else {
+                String prefix = packageName.isEmpty() ? "" : packageName + ".";
+                updated.keySet().removeIf(pkg -> pkg.equals(packageName) || pkg.startsWith(prefix));
+            }
+        }
+        return new ClassPathIndex(entry, Collections.unmodifiableMap(updated), documentedClasses(entry),
+                fingerprints, sequence);
+    }
+
+    private boolean isCurrent() {
+        for (Map.Entry<File, FileFingerprint> fingerprint : fingerprints.entrySet()) {
+            if (!FileFingerprint.of(fingerprint.getKey()).equals(fingerprint.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private JSONObject readApidocs(String className) {
+        String resourceName = APIDOCS_LOCATION + className + APIDOCS_EXTENSION;
+        try {
+            if (isJar()) {
+                try (JarFile jarFile = new JarFile(entry)) {
+                    JarEntry jarEntry = jarFile.getJarEntry(resourceName);
+                    if (jarEntry != null) {
+                        return parse(jarFile.getInputStream(jarEntry));
+                    }
+                }
+            } else {
+                return parse(new FileInputStream(new File(entry, resourceName)));
+            }
+        } catch (IOException | JSONException e) {
+            //Ignore unreadable documentation
+        }
+        return new JSONObject();
+    }
+
+    private static JSONObject parse(InputStream stream) throws IOException {
+        try (InputStream in = stream) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                bytes.write(buffer, 0, read);
+            }
+            return new JSONObject(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static ClassPathIndex indexJar(File jar) throws IOException {
+        Map<String, List<String>> classesByPackage = new TreeMap<>();
+        Set<String> documentedClasses = new HashSet<>();
+        FileFingerprint fingerprint = FileFingerprint.of(jar);
+        JSONObject persisted = PersistentJarCache.getInstance().read(jar, fingerprint, INDEX_SECTION);
+        if (persisted == null || !restore(persisted, classesByPackage, documentedClasses)) {
+            readJar(jar, classesByPackage, documentedClasses);
+            PersistentJarCache.getInstance().write(jar, fingerprint, INDEX_SECTION,
+                    toJson(classesByPackage, documentedClasses));
+        }
+        return new ClassPathIndex(jar, sorted(classesByPackage), Collections.unmodifiableSet(documentedClasses),
+                Collections.singletonMap(jar, fingerprint), -1);
+    }
+
+    private static void readJar(File jar, Map<String, List<String>> classesByPackage, Set<String> documentedClasses)
+            throws IOException {
+        try (JarFile jarFile = new JarFile(jar)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry je = entries.nextElement();
+                String name = je.getName();
+                if (name.startsWith(APIDOCS_LOCATION)) {
+                    addDocumentedClass(documentedClasses, name.substring(APIDOCS_LOCATION.length()));
+                } else if (!je.isDirectory() && isTopLevelClassFile(name)) {
+                    addClass(classesByPackage, name.substring(0, name.length() - 6).replace('/', '.'));
+                }
+            }
+        }
+    }
+
+    private static JSONObject toJson(Map<String, List<String>> classesByPackage, Set<String> documentedClasses) {
+        JSONObject packages = new JSONObject();
+        for (Map.Entry<String, List<String>> pkg : classesByPackage.entrySet()) {
+            packages.put(pkg.getKey(), new JSONArray(pkg.getValue()));
+        }
+        return new JSONObject()
+                .put(PACKAGES, packages)
+                .put(DOCUMENTED, new JSONArray(documentedClasses));
+    }
+
+    private static boolean restore(JSONObject persisted, Map<String, List<String>> classesByPackage,
+                                   Set<String> documentedClasses) {
+        try {
+            restoreJson(persisted, classesByPackage, documentedClasses);
+            return true;
+        } catch (JSONException e) {
+            classesByPackage.clear();
+            documentedClasses.clear();
+            return false;
+        }
+    }
+
+    private static void restoreJson(JSONObject persisted, Map<String, List<String>> classesByPackage,
+                                    Set<String> documentedClasses) {
+        JSONObject packages = persisted.getJSONObject(PACKAGES);
+        for (String pkg : packages.keySet()) {
+            JSONArray classNames = packages.getJSONArray(pkg);
+            List<String> classes = new ArrayList<>(classNames.length());
+            for (int i = 0; i < classNames.length(); i++) {
+                classes.add(classNames.getString(i));
+            }
+            classesByPackage.put(pkg, classes);
+        }
+        JSONArray documented = persisted.getJSONArray(DOCUMENTED);
+        for (int i = 0; i < documented.length(); i++) {
+            documentedClasses.add(documented.getString(i));
+        }
+    }
+
+    private static ClassPathIndex indexDirectory(File directory) {
+        DirectoryWatcher watcher = DirectoryWatcher.getInstance();
+        // the sequence is taken before listing, so changes made while listing are seen by the next request
+        long watchSequence = watcher.watch(directory) ? watcher.getSequence() : -1;
+        Map<String, List<String>> classesByPackage = new TreeMap<>();
+        Map<File, FileFingerprint> fingerprints = new HashMap<>();
+        indexDirectory(directory, "", classesByPackage, fingerprints);
+        return new ClassPathIndex(directory, sorted(classesByPackage), documentedClasses(directory),
+                watchSequence < 0 ? fingerprints : Collections.<File, FileFingerprint>emptyMap(), watchSequence);
+    }
+
+    private static Set<String> documentedClasses(File directory) {
+        Set<String> documentedClasses = new HashSet<>();
+        String[] apidocFiles = new File(directory, APIDOCS_LOCATION).list();
+        if (apidocFiles != null) {
+            for (String apidocFile : apidocFiles) {
+                addDocumentedClass(documentedClasses, apidocFile);
+            }
+        }
+        return Collections.unmodifiableSet(documentedClasses);
+    }
+
+    private static void addDocumentedClass(Set<String> documentedClasses, String fileName) {
+        if (fileName.endsWith(APIDOCS_EXTENSION) && fileName.indexOf('/') < 0) {
+            documentedClasses.add(fileName.substring(0, fileName.length() - APIDOCS_EXTENSION.length()));
+        }
+    }
+
+    private static void indexDirectory(File directory, String packageName, Map<String, List<String>> classesByPackage,
+                                       Map<File, FileFingerprint> fingerprints) {
+        fingerprints.put(directory, FileFingerprint.of(directory));
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                indexDirectory(file, packageName.isEmpty() ? name : packageName + "." + name,
+                        classesByPackage, fingerprints);
+            } else if (isTopLevelClassFile(name)) {
+                String simpleName = name.substring(0, name.length() - 6);
+                addClass(classesByPackage, packageName.isEmpty() ? simpleName : packageName + "." + simpleName);
+            }
+        }
+    }
+
+    /**
+     * @return the top level classes directly in the package directory
+     */
+    private static List<String> listClasses(File directory, String packageName) {
+        List<String> classNames = new ArrayList<>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (isTopLevelClassFile(name) && new File(directory, name).isFile()) {
+                    String simpleName = name.substring(0, name.length() - 6);
+                    classNames.add(packageName.isEmpty() ? simpleName : packageName + "." + simpleName);
+                }
+            }
+        }
+        return classNames;
+    }
+
+    private static boolean isTopLevelClassFile(String name) {
+        return name.endsWith(".class") && !name.contains("$");
+    }
+
+    private static void addClass(Map<String, List<String>> classesByPackage, String fqClassName) {
+        String pkgName = fqClassName.lastIndexOf('.') >= 0 ? fqClassName.substring(0, fqClassName.lastIndexOf('.')) : "";
+        classesByPackage.computeIfAbsent(pkgName, p -> new ArrayList<>()).add(fqClassName);
+    }
+
+    private static Map<String, List<String>> sorted(Map<String, List<String>> classesByPackage) {
+        for (Map.Entry<String, List<String>> pkg : classesByPackage.entrySet()) {
+            Collections.sort(pkg.getValue());
+            pkg.setValue(Collections.unmodifiableList(pkg.getValue()));
+        }
+        return Collections.unmodifiableMap(classesByPackage);
+    }
+}
@@ -0,0 +1,375 @@
+package nl.praegus.fitnesse.responders.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches class directories on the classpath (e.g. target/classes) for changes, so the caches for a directory can
+ * tell which of its (package) directories changed instead of listing the whole tree, or checking every class file,
+ * on each request. Every change gets a number from a sequence; callers remember the sequence when they read a
+ * directory and later ask which directories changed since. Events are collected by a daemon thread as the platform
+ * delivers them, so requests only read the changes and never wait for each other or for the file system; a class
+ * compiled a few milliseconds before a request may be seen by the next one. Changes older than any sequence still in
+ * use are forgotten through {@link #forgetChangesUpTo(long)}.
+ * Only used when the platform reports file changes natively (a polling watch service notices them seconds late)
+ * and {@value #ENABLED_SYSPROP} is not false. A directory that can't be watched, e.g. because the limit on watches is
+ * reached, is not watched at all, and callers check the files themselves as before.
+ */
+
+public final class DirectoryWatcher {
+    public static final String ENABLED_SYSPROP = "autoCompleteWatchDirectories";
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryWatcher.class);
+    private static final String BARRIER_PREFIX = "barrier-";
+    private static final DirectoryWatcher INSTANCE = new DirectoryWatcher(
+            Boolean.parseBoolean(System.getProperty(ENABLED_SYSPROP, "true")) ? newWatchService() : null);
+
+    private final WatchService watchService;
+    private final File barrierDirectory;
+    private final WatchKey barrierKey;
+    private final Map<File, Root> roots = new HashMap<>();
+    private final Map<WatchKey, Root> rootsByKey = new HashMap<>();
+    private final Set<File> unwatchable = new HashSet<>();
+    private long sequence;
+    private long events;
+    private long barriersCreated;
+    private long barriersSeen;
+    private Thread collector;
+
+    DirectoryWatcher(WatchService watchService) {
+        this.watchService = watchService;
+        File directory = null;
+        WatchKey key = null;
+        if (watchService != null) {
+            try {
+                directory = Files.createTempDirectory("autocomplete-watch").toFile();
+                directory.deleteOnExit();
+                key = directory.toPath().register(watchService, ENTRY_CREATE);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to create barrier directory, waiting for pending changes is not possible: " + e);
+                directory = null;
+            }
+        }
+        this.barrierDirectory = directory;
+        this.barrierKey = key;
+    }
+
+    public static DirectoryWatcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts watching the directory and all its sub directories, unless they are watched already.
+     * @return whether the directory is watched
+     */
+    public synchronized boolean watch(File directory) {
+        if (watchService == null) {
+            return false;
+        }
+        File rootDirectory = normalize(directory);
+        if (roots.containsKey(rootDirectory)) {
+            return true;
+        }
+        if (unwatchable.contains(rootDirectory)) {
+            return false;
+        }
+        startCollector();
+        Root root = new Root(rootDirectory);
+        root.rescanSequence = ++sequence;
+        roots.put(rootDirectory, root);
+        try {
+            register(root, rootDirectory, -1);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to watch " + rootDirectory + ", its files are checked on each request: " + e);
+            drop(root);
+            unwatchable.add(rootDirectory);
+            return false;
+        }
+    }
+
+    /**
+     * Waits (at most the given time) until the changes made in the watched directories before the call are collected.
+     * It creates a file in a private directory and waits for its event: events come in order, so by then the earlier
+     * changes have been delivered too. Requests don't need this, it makes tests independent of the delivery delay.
+     * @return whether the changes were collected in time
+     */
+    boolean awaitPendingChanges(long timeoutMillis) throws InterruptedException {
+        if (barrierDirectory == null || !isWatchingAny()) {
+            return barrierDirectory != null;
+        }
+        long barrier;
+        synchronized (this) {
+            barrier = ++barriersCreated;
+        }
+        try {
+            Files.createFile(new File(barrierDirectory, BARRIER_PREFIX + barrier).toPath());
+        } catch (IOException e) {
+            return false;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (this) {
+            while (barriersSeen < barrier) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return the number of the latest change collected in any watched directory
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the (sub) directories of the watched directory in which files were added, removed or changed after
+     * the given sequence number, or null when that is unknown: the directory is not watched (anymore), or changes
+     * were lost, and it has to be read again completely
+     */
+    public synchronized Set<File> getChangedSince(File directory, long sinceSequence) {
+        Root root = roots.get(normalize(directory));
+        if (root == null || root.rescanSequence > sinceSequence) {
+            return null;
+        }
+        Set<File> changed = new HashSet<>();
+        for (Map.Entry<File, Long> change : root.changes.entrySet()) {
+            if (change.getValue() > sinceSequence) {
+                changed.add(change.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Forgets the changes up to the given sequence number: asking for the changes since an older sequence then
+     * returns null, so the directory is read again.
+     */
+    public synchronized void forgetChangesUpTo(long oldestSequenceInUse) {
+        for (Root root : roots.values()) {
+            Iterator<Long> changes = root.changes.values().iterator();
+            while (changes.hasNext()) {
+                long change = changes.next();
+                if (change <= oldestSequenceInUse) {
+                    root.rescanSequence = Math.max(root.rescanSequence, change);
+                    changes.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of directories for which changes are remembered
+     */
+    public synchronized int getChangedDirectoryCount() {
+        int count = 0;
+        for (Root root : roots.values()) {
+            count += root.changes.size();
+        }
+        return count;
+    }
+
+    public synchronized int getWatchedDirectoryCount() {
+        return rootsByKey.size();
+    }
+
+    /**
+     * @return the number of file events seen
+     */
+    public synchronized long getEventCount() {
+        return events;
+    }
+
+    private synchronized boolean isWatchingAny() {
+        return !rootsByKey.isEmpty();
+    }
+
+    private synchronized void process(WatchKey key) {
+        Root root = rootsByKey.get(key);
+        if (root == null) {
+            key.cancel();
+            return;
+        }
+        File directory = ((Path) key.watchable()).toFile();
+        long change = ++sequence;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            events++;
+            if (event.kind() == OVERFLOW) {
+                root.rescanSequence = change;
+                continue;
+            }
+            root.changes.put(directory, change);
+            File child = new File(directory, event.context().toString());
+            if (event.kind() == ENTRY_CREATE && child.isDirectory()) {
+                try {
+                    register(root, child, change);
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to watch " + child + ", " + root.directory
+                            + " is checked on each request: " + e);
+                    drop(root);
+                    unwatchable.add(root.directory);
+                    break;
+                }
+            } else if (event.kind() == ENTRY_DELETE && root.keys.containsKey(child)) {
+                unregister(root, child);
+                root.changes.put(child, change);
+            }
+        }
+        if (!key.reset() && rootsByKey.remove(key) != null) {
+            root.keys.remove(directory);
+            if (directory.equals(root.directory)) {
+                // the directory itself was removed, e.g. by a clean build; it is watched again when read again
+                drop(root);
+            } else {
+                root.changes.put(directory, change);
+            }
+        }
+    }
+
+    private synchronized void startCollector() {
+        if (collector == null) {
+            collector = new Thread(this::collect, "autocomplete-directory-watcher");
+            collector.setDaemon(true);
+            collector.start();
+        }
+    }
+
+    private void collect() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                if (key == barrierKey) {
+                    seeBarriers(key);
+                } else {
+                    process(key);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // the watch service was closed, there is nothing to collect anymore
+        }
+    }
+
+    private synchronized void seeBarriers(WatchKey key) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            String name = event.context() == null ? "" : event.context().toString();
+            if (name.startsWith(BARRIER_PREFIX)) {
+                new File(barrierDirectory, name).delete();
+                barriersSeen = Math.max(barriersSeen, Long.parseLong(name.substring(BARRIER_PREFIX.length())));
+            } else if (event.kind() == OVERFLOW) {
+                barriersSeen = barriersCreated;
+            }
+        }
+        key.reset();
+        notifyAll();
+    }
+
+    /**
+     * Registers the directory and its sub directories, marking them changed with the given sequence number when it
+     * is not negative.
+     */
+    private void register(Root root, File directory, long change) throws IOException {
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                File file = dir.toFile();
+                if (!root.keys.containsKey(file)) {
+                    WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                    root.keys.put(file, key);
+                    rootsByKey.put(key, root);
+                }
+                if (change >= 0) {
+                    root.changes.put(file, change);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // removed while walking, its parent was marked changed
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Stops watching a removed (or moved) directory and its sub directories.
+     */
+    private void unregister(Root root, File directory) {
+        String prefix = directory.getPath() + File.separator;
+        Iterator<Map.Entry<File, WatchKey>> keys = root.keys.entrySet().iterator();
+        while (keys.hasNext()) {
+            Map.Entry<File, WatchKey> key = keys.next();
+            if (key.getKey().equals(directory) || key.getKey().getPath().startsWith(prefix)) {
+                key.getValue().cancel();
+                rootsByKey.remove(key.getValue());
+                keys.remove();
+            }
+        }
+    }
+
+    private void drop(Root root) {
+        for (WatchKey key : root.keys.values()) {
+            key.cancel();
+            rootsByKey.remove(key);
+        }
+        root.keys.clear();
+        roots.remove(root.directory);
+    }
+
+    private static File normalize(File directory) {
+        return directory.toPath().toAbsolutePath().normalize().toFile();
+    }
+
+    private static WatchService newWatchService() {
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            if (watchService.getClass().getSimpleName().startsWith("Polling")) {
+                watchService.close();
+                return null;
+            }
+            return watchService;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.warn("Unable to watch class directories, their files are checked on each request: " + e);
+            return null;
+        }
+    }
+
+    private static final class Root {
+        private final File directory;
+        private final Map<File, WatchKey> keys = new HashMap<>();
+        private final Map<File, Long> changes = new HashMap<>();
+        private long rescanSequence;
+
+        private Root(File directory) {
+            this.directory = directory;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package nl.praegus.fitnesse.responders.util;
+
+import java.io.File;
+import java.util.Objects;
+
+/**
+ * Cheap identity of a file on disk: its size and last modification time.
+ * Used to detect whether a jar or class file changed since it was last inspected, without reading it.
+ */
+
+public final class FileFingerprint {
+    private final long size;
+    private final long lastModified;
+
+    private FileFingerprint(long size, long lastModified) {
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public static FileFingerprint of(File file) {
+        return new FileFingerprint(file.length(), file.lastModified());
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FileFingerprint)) {
+            return false;
+        }
+        FileFingerprint other = (FileFingerprint) o;
+        return size == other.size && lastModified == other.lastModified;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(size, lastModified);
+    }
+
+    @Override
+    public String toString() {
+        return size + "-" + lastModified;
+    }
+}
@@ -0,0 +1,283 @@
+package nl.praegus.fitnesse.responders.util;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps json derived from jars on disk, so it survives restarts of FitNesse. Content is kept per jar and section
+ * (e.g. its class index, or the metadata of its classes) in files named after the jar and its fingerprint, and is
+ * ignored once the jar changed. Content can be replaced, or appended as a new part holding only what was added; parts
+ * are merged when read, and compacted into one file once there are {@value #MAX_PARTS} of them.
+ * Files of jars that were removed or replaced since are deleted by {@link #prune()}.
+ * The cache is only used when the directory is set with the system property {@value #DIRECTORY_SYSPROP}.
+ * Files are read completely rather than memory mapped: their json is parsed into objects at once, and a mapped file
+ * can't be deleted on Windows (as compaction and pruning do) until the mapping is garbage collected.
+ */
+
+public final class PersistentJarCache {
+    public static final String DIRECTORY_SYSPROP = "autoCompleteDiskCacheDir";
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistentJarCache.class);
+    private static final PersistentJarCache INSTANCE = new PersistentJarCache(directoryFromSystemProperties());
+    private static final int MAX_PARTS = 16;
+    private static final String JAR = "jar";
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String CONTENT = "content";
+    private static final String EXTENSION = ".json";
+    private static final Pattern CACHE_FILE = Pattern.compile("[0-9a-f]{40}-.+-\\d+\\" + EXTENSION);
+    private static final int HEADER_BYTES = 8192;
+
+    private final File directory;
+
+    PersistentJarCache(File directory) {
+        this.directory = directory;
+    }
+
+    public static PersistentJarCache getInstance() {
+        return INSTANCE;
+    }
+
+    static File directoryFromSystemProperties() {
+        String directory = System.getProperty(DIRECTORY_SYSPROP);
+        return directory == null || directory.trim().isEmpty() ? null : new File(directory);
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * @return the content written for this version of the jar, with all appended parts merged into it, or null
+     */
+    public JSONObject read(File jar, FileFingerprint fingerprint, String section) {
+        if (!isEnabled()) {
+            return null;
+        }
+        JSONObject content = null;
+        for (File part : partsOf(jar, fingerprint, section)) {
+            JSONObject partContent = readPart(part, jar, fingerprint);
+            if (partContent != null) {
+                content = content == null ? partContent : merge(content, partContent);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Replaces the content for the jar. Failures are logged, the cache is only an optimization.
+     */
+    public void write(File jar, FileFingerprint fingerprint, String section, JSONObject content) {
+        if (!isEnabled()) {
+            return;
+        }
+        File written = partFile(jar, fingerprint, section, 0);
+        if (writePart(written, jar, fingerprint, content)) {
+            deleteParts(jar, section, part -> !part.equals(written));
+        }
+    }
+
+    /**
+     * Adds content for the jar without reading or rewriting what was written before; objects in it are merged into
+     * those written earlier when read, other values replace them.
+     */
+    public void append(File jar, FileFingerprint fingerprint, String section, JSONObject content) {
+        if (!isEnabled()) {
+            return;
+        }
+        List<File> parts = partsOf(jar, fingerprint, section);
+        if (parts.size() >= MAX_PARTS) {
+            JSONObject written = read(jar, fingerprint, section);
+            write(jar, fingerprint, section, written == null ? content : merge(written, content));
+            return;
+        }
+        int number = parts.isEmpty() ? 0 : partNumber(parts.get(parts.size() - 1)) + 1;
+        if (writePart(partFile(jar, fingerprint, section, number), jar, fingerprint, content) && number == 0) {
+            // parts of earlier versions of the jar are of no use anymore
+            String prefix = partPrefix(jar, fingerprint, section);
+            deleteParts(jar, section, part -> !part.getName().startsWith(prefix));
+        }
+    }
+
+    /**
+     * Deletes the files of jars that no longer exist, or changed since they were written.
+     * Only the start of each file is read, where the jar and its fingerprint are.
+     */
+    public void prune() {
+        File[] files = isEnabled() ? directory.listFiles((dir, name) -> CACHE_FILE.matcher(name).matches()) : null;
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String[] written = jarAndFingerprintOf(file);
+            if (written == null || !new File(written[0]).isFile()
+                    || !FileFingerprint.of(new File(written[0])).toString().equals(written[1])) {
+                if (!file.delete() && file.exists()) {
+                    LOGGER.warn("Unable to delete cache file " + file);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the jar and fingerprint at the start of the file, or null when they can't be read
+     */
+    private static String[] jarAndFingerprintOf(File file) {
+        byte[] start = new byte[HEADER_BYTES];
+        int length = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read >= 0 && length < start.length) {
+                length += read;
+                read = in.read(start, length, start.length - length);
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        try {
+            JSONTokener header = new JSONTokener(new String(start, 0, length, StandardCharsets.UTF_8));
+            String[] written = new String[2];
+            if (header.nextClean() != '{') {
+                return null;
+            }
+            for (int i = 0; i < written.length; i++) {
+                Object name = header.nextValue();
+                if (header.nextClean() != ':') {
+                    return null;
+                }
+                Object value = header.nextValue();
+                if (header.nextClean() != ',') {
+                    return null;
+                }
+                if (JAR.equals(name)) {
+                    written[0] = String.valueOf(value);
+                } else if (FINGERPRINT.equals(name)) {
+                    written[1] = String.valueOf(value);
+                } else {
+                    return null;
+                }
+            }
+            return written[0] == null || written[1] == null ? null : written;
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private JSONObject readPart(File part, File jar, FileFingerprint fingerprint) {
+        try {
+            JSONObject cached = new JSONObject(new String(Files.readAllBytes(part.toPath()), StandardCharsets.UTF_8));
+            if (jar.getAbsolutePath().equals(cached.optString(JAR))
+                    && fingerprint.toString().equals(cached.optString(FINGERPRINT))) {
+                return cached.getJSONObject(CONTENT);
+            }
+        } catch (IOException | JSONException e) {
+            LOGGER.warn("Ignoring unreadable cache file " + part + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    private boolean writePart(File file, File jar, FileFingerprint fingerprint, JSONObject content) {
+        try {
+            Files.createDirectories(directory.toPath());
+            Path temp = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+            try {
+                // jar and fingerprint first, so pruning only reads the start of a file
+                Files.write(temp, ("{" + JSONObject.quote(JAR) + ":" + JSONObject.quote(jar.getAbsolutePath())
+                        + "," + JSONObject.quote(FINGERPRINT) + ":" + JSONObject.quote(fingerprint.toString())
+                        + "," + JSONObject.quote(CONTENT) + ":" + content + "}")
+                        .getBytes(StandardCharsets.UTF_8));
+                move(temp, file.toPath());
+                return true;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write cache file " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static JSONObject merge(JSONObject into, JSONObject from) {
+        for (String name : from.keySet()) {
+            Object value = from.get(name);
+            JSONObject existing = into.optJSONObject(name);
+            if (existing != null && value instanceof JSONObject) {
+                merge(existing, (JSONObject) value);
+            } else {
+                into.put(name, value);
+            }
+        }
+        return into;
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @return the parts for this version of the jar, in the order they were written
+     */
+    private List<File> partsOf(File jar, FileFingerprint fingerprint, String section) {
+        String prefix = partPrefix(jar, fingerprint, section);
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(EXTENSION)
+                && name.substring(prefix.length(), name.length() - EXTENSION.length()).matches("\\d+"));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        List<File> parts = new ArrayList<>(Arrays.asList(files));
+        parts.sort(Comparator.comparingInt(PersistentJarCache::partNumber));
+        return parts;
+    }
+
+    private void deleteParts(File jar, String section, Predicate<File> delete) {
+        String prefix = sectionPrefix(jar, section);
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(EXTENSION));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (delete.test(file) && !file.delete()) {
+                LOGGER.warn("Unable to delete cache file " + file);
+            }
+        }
+    }
+
+    private static int partNumber(File part) {
+        String name = part.getName();
+        return Integer.parseInt(name.substring(name.lastIndexOf('-') + 1, name.length() - EXTENSION.length()));
+    }
+
+    private File partFile(File jar, FileFingerprint fingerprint, String section, int number) {
+        return new File(directory, partPrefix(jar, fingerprint, section) + number + EXTENSION);
+    }
+
+    private static String partPrefix(File jar, FileFingerprint fingerprint, String section) {
+        return sectionPrefix(jar, section) + fingerprint + "-";
+    }
+
+    private static String sectionPrefix(File jar, String section) {
+        return new ContentDigest().add(jar.getAbsolutePath()).toHex() + "-" + section + "-";
+    }
+}
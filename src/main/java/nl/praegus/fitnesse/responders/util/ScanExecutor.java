@@ -0,0 +1,131 @@
+package nl.praegus.fitnesse.responders.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Fixed size worker pool, shared by all requests, for scanning packages and describing classes in parallel.
+ * Because the pool is shared, concurrent requests queue up instead of starting threads of their own.
+ * The number of threads is set with the system property {@value #THREADS_SYSPROP} (default: number of processors);
+ * with 1 thread all work is done on the calling thread.
+ */
+
+public final class ScanExecutor {
+    public static final String THREADS_SYSPROP = "autoCompleteScanThreads";
+    private static final int THREADS = Math.max(1,
+            Integer.getInteger(THREADS_SYSPROP, Runtime.getRuntime().availableProcessors()));
+    private static final ThreadLocal<Boolean> IS_WORKER = ThreadLocal.withInitial(() -> false);
+    private static final ExecutorService EXECUTOR = THREADS > 1 ? Executors.newFixedThreadPool(THREADS, new WorkerFactory()) : null;
+
+    private ScanExecutor() {
+    }
+
+    public static int getThreadCount() {
+        return THREADS;
+    }
+
+    /**
+     * Applies the function to all items on the worker pool.
+     *
+     * @return the results, in the order of the items
+     */
+    public static <T, R> List<R> map(List<T> items, Function<? super T, ? extends R> function) {
+        List<R> results = new ArrayList<>(items.size());
+        // Work submitted from a worker runs inline, waiting for the pool from within the pool could deadlock
+        if (EXECUTOR == null || items.size() < 2 || IS_WORKER.get()) {
+            for (T item : items) {
+                results.add(function.apply(item));
+            }
+            return results;
+        }
+
+        List<Future<? extends R>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(EXECUTOR.submit(() -> function.apply(item)));
+        }
+        try {
+            for (Future<? extends R> future : futures) {
+                results.add(await(future));
+            }
+        } catch (RuntimeException | Error e) {
+            cancel(futures);
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Submits the function for all items to the worker pool without waiting for the results.
+     *
+     * @return the results in the order of the items; iterating waits for each result to become available
+     */
+    public static <T, R> Iterable<R> mapLazily(List<T> items, Function<? super T, ? extends R> function) {
+        if (EXECUTOR == null || items.size() < 2 || IS_WORKER.get()) {
+            return () -> items.stream().<R>map(function).iterator();
+        }
+
+        List<Future<? extends R>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(EXECUTOR.submit(() -> function.apply(item)));
+        }
+        return () -> futures.stream().<R>map(ScanExecutor::await).iterator();
+    }
+
+    /**
+     * Runs the task with everything it maps done on the calling thread, so background work does not compete with
+     * requests for the pool.
+     */
+    public static void runInline(Runnable task) {
+        boolean worker = IS_WORKER.get();
+        IS_WORKER.set(true);
+        try {
+            task.run();
+        } finally {
+            IS_WORKER.set(worker);
+        }
+    }
+
+    private static <R> R await(Future<? extends R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void cancel(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private static final class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(() -> {
+                IS_WORKER.set(true);
+                runnable.run();
+            }, "autocomplete-scan-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
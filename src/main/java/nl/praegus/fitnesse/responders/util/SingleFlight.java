@@ -0,0 +1,78 @@
+package nl.praegus.fitnesse.responders.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent computations of the same value: while a value is being computed for a key, other callers
+ * asking for that key wait for it and share the result instead of computing it again. Waiting is bounded by
+ * {@value #MAX_WAIT_SYSPROP} milliseconds (default 10000); a caller that waited too long, or whose computation failed
+ * for the caller it waited on, computes the value itself.
+ */
+
+public final class SingleFlight<K, V> {
+    public static final String MAX_WAIT_SYSPROP = "autoCompleteCoalesceWaitMillis";
+
+    private final long maxWaitMillis;
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    public SingleFlight() {
+        this(Long.getLong(MAX_WAIT_SYSPROP, 10_000));
+    }
+
+    public SingleFlight(long maxWaitMillis) {
+        this.maxWaitMillis = Math.max(0, maxWaitMillis);
+    }
+
+    public V get(K key, Supplier<V> computation) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = flights.putIfAbsent(key, flight);
+        if (inFlight == null) {
+            try {
+                V value = computation.get();
+                flight.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                flights.remove(key, flight);
+            }
+        }
+
+        try {
+            V value = inFlight.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+            coalesced.incrementAndGet();
+            return value;
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // the failure is reported to the caller that computed it
+        }
+        return computation.get();
+    }
+
+    /**
+     * @return the number of callers that got a value computed for another caller
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of callers that stopped waiting for another caller's computation
+     */
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+}
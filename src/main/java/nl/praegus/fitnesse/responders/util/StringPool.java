@@ -0,0 +1,41 @@
+package nl.praegus.fitnesse.responders.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Canonical instances of equal strings, so strings repeated across cached classes (type, annotation and exception
+ * names) are kept once. The pool only holds its strings weakly: a string no longer referenced from any cache entry
+ * is dropped from the pool as well.
+ */
+
+public final class StringPool {
+    private final Map<String, WeakReference<String>> strings = new WeakHashMap<>();
+    private long deduplicated;
+
+    /**
+     * @return an earlier added string equal to the given one, or the given string, which is added to the pool
+     */
+    public synchronized String canonical(String value) {
+        WeakReference<String> pooled = strings.get(value);
+        String canonical = pooled == null ? null : pooled.get();
+        if (canonical != null) {
+            deduplicated++;
+            return canonical;
+        }
+        strings.put(value, new WeakReference<>(value));
+        return value;
+    }
+
+    /**
+     * @return the number of strings replaced by an earlier added equal string
+     */
+    public synchronized long getDeduplicatedCount() {
+        return deduplicated;
+    }
+
+    public synchronized int size() {
+        return strings.size();
+    }
+}
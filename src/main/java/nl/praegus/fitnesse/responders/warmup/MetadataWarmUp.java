@@ -0,0 +1,120 @@
+package nl.praegus.fitnesse.responders.warmup;
+
+import fitnesse.FitNesseContext;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.WikiPage;
+import fitnesse.wiki.WikiPageUtil;
+import nl.praegus.fitnesse.responders.AutoCompleteResponder;
+import nl.praegus.fitnesse.responders.util.ScanExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Walks the test pages of the given suites and loads the class loaders and class metadata their autocomplete
+ * responses need into the caches, so the first request after a restart does not have to wait for it.
+ * All work is done on the calling thread, a failing page is logged and skipped.
+ * The {@link AutoCompleteResponder} starts a warm-up of the suites listed (comma separated) in the
+ * {@value #SUITES_PROPERTY} property of plugins.properties on its first request, on a background thread with the
+ * lowest priority, as plugins get no hook with the wiki of the running FitNesse before that.
+ */
+
+public final class MetadataWarmUp implements Runnable {
+    public static final String SUITES_PROPERTY = "autoCompleteWarmUpSuites";
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetadataWarmUp.class);
+    private static final AtomicBoolean STARTED = new AtomicBoolean();
+
+    private final WikiPage root;
+    private final List<String> suites;
+    private int warmedUpPages;
+
+    public MetadataWarmUp(WikiPage root, List<String> suites) {
+        this.root = root;
+        this.suites = suites;
+    }
+
+    /**
+     * Starts the warm-up of the suites of the context, unless it was started before.
+     */
+    public static void startOnce(FitNesseContext context) {
+        if (STARTED.compareAndSet(false, true)) {
+            start(context);
+        }
+    }
+
+    /**
+     * @return the thread running the warm-up, or null when no suites are configured
+     */
+    static Thread start(FitNesseContext context) {
+        List<String> suites = suites(context.getProperty(SUITES_PROPERTY));
+        if (suites.isEmpty()) {
+            return null;
+        }
+        Thread thread = new Thread(new MetadataWarmUp(context.getRootPage(), suites), "autocomplete-warm-up");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return thread;
+    }
+
+    private static List<String> suites(String property) {
+        List<String> suites = new ArrayList<>();
+        if (property != null) {
+            for (String suite : property.split(",")) {
+                if (!suite.trim().isEmpty()) {
+                    suites.add(suite.trim());
+                }
+            }
+        }
+        return suites;
+    }
+
+    @Override
+    public void run() {
+        long start = System.currentTimeMillis();
+        ScanExecutor.runInline(() -> {
+            for (String suite : suites) {
+                WikiPage suitePage = root.getPageCrawler().getPage(PathParser.parse(suite));
+                if (suitePage == null) {
+                    LOGGER.warn("Autocomplete warm-up: suite " + suite + " does not exist");
+                } else {
+                    warmUpTestPages(suitePage);
+                }
+            }
+        });
+        LOGGER.info("Autocomplete warm-up of " + warmedUpPages + " pages took "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    public int getWarmedUpPages() {
+        return warmedUpPages;
+    }
+
+    private void warmUpTestPages(WikiPage suitePage) {
+        Deque<WikiPage> pending = new ArrayDeque<>();
+        pending.push(suitePage);
+        while (!pending.isEmpty() && !Thread.currentThread().isInterrupted()) {
+            WikiPage page = pending.pop();
+            if (WikiPageUtil.isTestPage(page)) {
+                warmUp(page);
+            }
+            for (WikiPage child : page.getChildren()) {
+                pending.push(child);
+            }
+        }
+    }
+
+    private void warmUp(WikiPage page) {
+        try {
+            new AutoCompleteResponder().warmUp(page);
+            warmedUpPages++;
+        } catch (Exception e) {
+            LOGGER.warn("Autocomplete warm-up failed for " + PathParser.render(page.getFullPath()) + ": " + e.getMessage());
+        }
+    }
+}
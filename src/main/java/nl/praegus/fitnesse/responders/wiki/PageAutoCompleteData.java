@@ -0,0 +1,39 @@
+package nl.praegus.fitnesse.responders.wiki;
+
+import org.json.JSONArray;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Everything the autocomplete response takes from the tables of a page: scenarios and table templates, variables
+ * defined in the tables and the imported packages. Instances are shared between requests and must not be modified.
+ */
+
+public final class PageAutoCompleteData {
+    private final JSONArray scenarios;
+    private final JSONArray variables;
+    private final Set<String> packages;
+
+    public PageAutoCompleteData(JSONArray scenarios, JSONArray variables, Set<String> packages) {
+        this.scenarios = scenarios;
+        this.variables = variables;
+        this.packages = Collections.unmodifiableSet(new TreeSet<>(packages));
+    }
+
+    public JSONArray getScenarios() {
+        return scenarios;
+    }
+
+    public JSONArray getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return the imported packages, sorted
+     */
+    public Set<String> getPackages() {
+        return packages;
+    }
+}
@@ -0,0 +1,82 @@
+package nl.praegus.fitnesse.responders.wiki;
+
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.WikiPage;
+import fitnesse.wiki.WikiPagePath;
+import nl.praegus.fitnesse.responders.util.ContentDigest;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Digest of all wiki text that can end up in the rendered page: the page itself, its ancestors (variables, paths),
+ * the inherited special pages (set up, tear down, scenario libraries, header and footer) and, transitively, all pages
+ * they include. Computing it only reads page content, it does not render anything.
+ * {@link #ofContent(WikiPage)} is the narrower digest of just a page and the pages it includes.
+ */
+
+public final class PageFingerprint {
+    private static final List<String> INHERITED_PAGES = Arrays.asList(
+            "SuiteSetUp", "SetUp", "TearDown", "SuiteTearDown", "ScenarioLibrary", "PageHeader", "PageFooter");
+    private static final Pattern INCLUDE_PATTERN = Pattern.compile("^!include(?:\\s+-\\w+)*\\s+([<>.]?[\\w.<>]+)",
+            Pattern.MULTILINE);
+
+    private PageFingerprint() {
+    }
+
+    public static String of(WikiPage page) {
+        Deque<WikiPage> pending = new ArrayDeque<>();
+        for (WikiPage ancestor = page; ancestor != null; ancestor = ancestor.isRoot() ? null : ancestor.getParent()) {
+            pending.add(ancestor);
+            for (String name : INHERITED_PAGES) {
+                WikiPage inherited = ancestor.getChildPage(name);
+                if (inherited != null) {
+                    pending.add(inherited);
+                }
+            }
+        }
+        return digest(pending);
+    }
+
+    public static String ofContent(WikiPage page) {
+        Deque<WikiPage> pending = new ArrayDeque<>();
+        if (page != null) {
+            pending.add(page);
+        }
+        return digest(pending);
+    }
+
+    private static String digest(Deque<WikiPage> pending) {
+        ContentDigest digest = new ContentDigest();
+        Set<WikiPagePath> visited = new HashSet<>();
+        while (!pending.isEmpty()) {
+            WikiPage next = pending.poll();
+            if (!visited.add(next.getFullPath())) {
+                continue;
+            }
+            String content = next.getData().getContent();
+            digest.add(PathParser.render(next.getFullPath())).add(content);
+            addIncludedPages(next, content, pending);
+        }
+        return digest.toHex();
+    }
+
+    private static void addIncludedPages(WikiPage page, String content, Deque<WikiPage> pending) {
+        if (content.indexOf("!include") < 0) {
+            return;
+        }
+        Matcher includes = INCLUDE_PATTERN.matcher(content);
+        while (includes.find()) {
+            WikiPage included = page.getPageCrawler().getSiblingPage(PathParser.parse(includes.group(1)));
+            if (included != null) {
+                pending.add(included);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package nl.praegus.fitnesse.responders.wiki;
+
+import fitnesse.wiki.RecentChangesWikiPage;
+import fitnesse.wiki.WikiPage;
+
+/**
+ * Keeps track of recent changes like FitNesse does by default, and lets the {@link ScenarioLibraryIndex} know which
+ * page was saved; the index is only used when it is configured. Enable it in plugins.properties with
+ * {@code RecentChanges=nl.praegus.fitnesse.responders.wiki.ScenarioIndexingRecentChanges}.
+ */
+
+public class ScenarioIndexingRecentChanges extends RecentChangesWikiPage {
+
+    public ScenarioIndexingRecentChanges() {
+        ScenarioLibraryIndex.getInstance().trackChanges();
+    }
+
+    @Override
+    public void updateRecentChanges(WikiPage page) {
+        super.updateRecentChanges(page);
+        ScenarioLibraryIndex.getInstance().pageChanged(page);
+    }
+}
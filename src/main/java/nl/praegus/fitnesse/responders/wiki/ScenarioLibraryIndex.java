@@ -0,0 +1,136 @@
+package nl.praegus.fitnesse.responders.wiki;
+
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.WikiPage;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Suite wide index of the tables in scenario libraries. A scenario library is usually included in every test page
+ * of a suite, so instead of reading it again for each page its tables are read once and shared by all pages including
+ * it, until a page they were read from is saved. The index relies on {@link ScenarioIndexingRecentChanges} to be
+ * told which pages are saved, and is only used when that is configured. Pages removed or renamed are not reported
+ * by FitNesse: an entry is read again when one of the pages it was read from no longer exists, and entries of
+ * libraries that are no longer asked for are evicted, least recently used first, beyond {@value #MAX_SIZE_SYSPROP}
+ * (default 64) libraries.
+ * The index can be switched off with the system property {@value #ENABLED_SYSPROP}.
+ */
+
+public final class ScenarioLibraryIndex {
+    public static final String ENABLED_SYSPROP = "autoCompleteScenarioIndex";
+    public static final String MAX_SIZE_SYSPROP = "autoCompleteScenarioIndexSize";
+    private static final ScenarioLibraryIndex INSTANCE = new ScenarioLibraryIndex(
+            Integer.getInteger(MAX_SIZE_SYSPROP, 64));
+
+    private final int maxSize;
+    private final Map<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile boolean trackingChanges;
+
+    ScenarioLibraryIndex(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ScenarioLibraryIndex.this.maxSize;
+            }
+        };
+    }
+
+    public static ScenarioLibraryIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return whether the index is switched on and is told which pages are saved
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty(ENABLED_SYSPROP, "true")) && INSTANCE.trackingChanges;
+    }
+
+    /**
+     * Tells the index it will be told which pages are saved, so its entries can be used without checking them.
+     */
+    public void trackChanges() {
+        trackingChanges = true;
+    }
+
+    /**
+     * @return the relevant tables of the scenario library, as they are rendered when it is included in a test page,
+     * or null when the library has to be rendered to know them
+     */
+    public List<SourceTable> getTables(WikiPage library) {
+        String path = PathParser.render(library.getFullPath());
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(path);
+        }
+        if (cached != null && allExist(cached.sourcePages, library)) {
+            hits.incrementAndGet();
+            return cached.tables;
+        }
+
+        misses.incrementAndGet();
+        WikiSourceTableScanner scanner = WikiSourceTableScanner.scanContent(library);
+        Entry entry = scanner == null
+                ? new Entry(Collections.singleton(path), null)
+                : new Entry(scanner.getSourcePages(), scanner.getTables());
+        synchronized (this) {
+            entries.put(path, entry);
+        }
+        return entry.tables;
+    }
+
+    /**
+     * Evicts the libraries that were read from the page.
+     */
+    public synchronized void pageChanged(WikiPage page) {
+        String path = PathParser.render(page.getFullPath());
+        entries.values().removeIf(entry -> entry.sourcePages.contains(path));
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private static boolean allExist(Set<String> pagePaths, WikiPage library) {
+        WikiPage root = library;
+        while (!root.isRoot()) {
+            root = root.getParent();
+        }
+        for (String pagePath : pagePaths) {
+            if (root.getPageCrawler().getPage(PathParser.parse(pagePath)) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Entry {
+        private final Set<String> sourcePages;
+        private final List<SourceTable> tables;
+
+        private Entry(Set<String> sourcePages, List<SourceTable> tables) {
+            this.sourcePages = sourcePages;
+            this.tables = tables;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package nl.praegus.fitnesse.responders.wiki;
+
+import fitnesse.testsystems.TestResult;
+import fitnesse.testsystems.slim.Table;
+import fitnesse.testsystems.slim.results.SlimExceptionResult;
+import fitnesse.testsystems.slim.results.SlimTestResult;
+
+import java.util.List;
+
+/**
+ * Read only table taken from the wiki source of a page, see {@link WikiSourceTableScanner}.
+ */
+
+public final class SourceTable implements Table {
+    private final List<List<String>> rows;
+
+    SourceTable(List<List<String>> rows) {
+        this.rows = rows;
+    }
+
+    @Override
+    public boolean isTearDown() {
+        return false;
+    }
+
+    @Override
+    public String getCellContents(int columnIndex, int rowIndex) {
+        return rows.get(rowIndex).get(columnIndex);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCountInRow(int rowIndex) {
+        return rows.get(rowIndex).size();
+    }
+
+    @Override
+    public void substitute(int col, int row, String contents) {
+        throw readOnly();
+    }
+
+    @Override
+    public int addRow(List<String> list) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addColumnToRow(int row, String contents) {
+        throw readOnly();
+    }
+
+    @Override
+    public void appendChildTable(int row, Table table) {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateContent(int row, TestResult testResult) {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateContent(int col, int row, SlimTestResult testResult) {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateContent(int col, int row, SlimExceptionResult exceptionResult) {
+        throw readOnly();
+    }
+
+    @Override
+    public Table asTemplate(CellContentSubstitution substitution) {
+        throw readOnly();
+    }
+
+    @Override
+    public String toString() {
+        return rows.toString();
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Tables read from the wiki source are read only");
+    }
+}
@@ -0,0 +1,224 @@
+package nl.praegus.fitnesse.responders.wiki;
+
+import fitnesse.testsystems.slim.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The table templates of a page and what they use from each other. The inputs ({@code @{input}}) and outputs
+ * ({@code $output=}) of a template are those in its own rows plus those of the templates its rows call. Templates are
+ * added in page order, and a template only sees the templates added before it, the last definition of each name;
+ * the templates it calls are expanded with that same view, so they may see templates defined after them.
+ * Resolved templates are kept until a template they (indirectly) look up is added. Templates that (indirectly) call
+ * themselves are reported; the templates of such a cycle, a strongly connected component of the calls, all get the
+ * inputs and outputs of the whole component, whichever of them is called first.
+ */
+
+public final class TableTemplates {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableTemplates.class);
+    private static final Pattern ARG_PATTERN = Pattern.compile("@\\{(.+?)}");
+    private static final Pattern OUT_PATTERN = Pattern.compile("\\$(.+?)=");
+
+    private final Map<String, Table> templates = new HashMap<>();
+    private final Map<String, Parameters> resolved = new HashMap<>();
+    private final Map<String, Set<String>> lookedUpBy = new HashMap<>();
+    private final List<String> cycles = new ArrayList<>();
+
+    /**
+     * Adds a template table, replacing an earlier template with the same name for the templates added after it.
+     * @return the inputs and outputs of the template, including those of the templates it calls
+     */
+    public Parameters add(Table template) {
+        Parameters parameters = collect(template, new Resolution());
+        String name = nameOf(template);
+        templates.put(name, template);
+        for (int row = 1; row < template.getRowCount(); row++) {
+            lookedUpBy.computeIfAbsent(calledTemplate(template, row), called -> new HashSet<>()).add(name);
+        }
+        forget(name);
+        return parameters;
+    }
+
+    /**
+     * @return the cycles found, e.g. {@code a -> b -> a}
+     */
+    public List<String> getCycles() {
+        return Collections.unmodifiableList(cycles);
+    }
+
+    private Parameters collect(Table template, Resolution resolution) {
+        Parameters parameters = new Parameters();
+        for (int row = 1; row < template.getRowCount(); row++) {
+            for (int col = 0; col < template.getColumnCountInRow(row); col++) {
+                String cellContent = template.getCellContents(col, row);
+                addAllMatches(ARG_PATTERN, cellContent, parameters.inputs);
+                addAllMatches(OUT_PATTERN, cellContent, parameters.outputs);
+            }
+
+            String called = calledTemplate(template, row);
+            if (templates.containsKey(called)) {
+                parameters.addAll(resolution.call(called));
+            }
+        }
+        return parameters;
+    }
+
+    private static String calledTemplate(Table template, int row) {
+        StringBuilder calledTemplate = new StringBuilder();
+        for (int col = 0; col < template.getColumnCountInRow(row); col += 2) {
+            calledTemplate.append(template.getCellContents(col, row))
+                    .append(" ");
+        }
+        return calledTemplate.toString().trim().replaceAll(";$", "");
+    }
+
+    /**
+     * Forgets the parameters of the template and of the templates that look it up, directly or through others,
+     * as they may call it now.
+     */
+    private void forget(String name) {
+        Set<String> forgotten = new HashSet<>();
+        Deque<String> toForget = new ArrayDeque<>();
+        toForget.push(name);
+        while (!toForget.isEmpty()) {
+            String template = toForget.pop();
+            resolved.remove(template);
+            for (String caller : lookedUpBy.getOrDefault(template, Collections.emptySet())) {
+                if (forgotten.add(caller)) {
+                    toForget.push(caller);
+                }
+            }
+        }
+    }
+
+    private static void addAllMatches(Pattern pattern, String cellContent, Set<String> found) {
+        Matcher m = pattern.matcher(cellContent);
+        while (m.find()) {
+            found.add(m.group(1));
+        }
+    }
+
+    private void reportCycle(String name, Deque<String> resolving) {
+        List<String> path = new ArrayList<>();
+        for (Iterator<String> callers = resolving.descendingIterator(); callers.hasNext(); ) {
+            String caller = callers.next();
+            if (!path.isEmpty() || caller.equals(name)) {
+                path.add(caller);
+            }
+        }
+        path.add(name);
+        String cycle = String.join(" -> ", path);
+        cycles.add(cycle);
+        LOGGER.warn("Table template calls itself: " + cycle);
+    }
+
+    /**
+     * Resolves the templates called from one template, finding the strongly connected components of the calls the
+     * way Tarjan's algorithm does. Parameters of a template in a component are only kept once the component is
+     * complete, so no partial result of a cycle is remembered.
+     */
+    private final class Resolution {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final Map<String, Integer> lowLinks = new HashMap<>();
+        private final Map<String, Parameters> ownParameters = new HashMap<>();
+        private final Deque<String> component = new ArrayDeque<>();
+        private final Deque<String> resolving = new ArrayDeque<>();
+
+        /**
+         * @return the parameters of the called template, or none yet when it is in the same component as the caller
+         */
+        private Parameters call(String name) {
+            Parameters parameters = resolved.get(name);
+            if (parameters != null) {
+                return parameters;
+            }
+            if (!indexes.containsKey(name)) {
+                resolveComponentOf(name);
+                parameters = resolved.get(name);
+                if (parameters != null) {
+                    return parameters;
+                }
+            } else if (resolving.contains(name)) {
+                reportCycle(name, resolving);
+            }
+            String caller = resolving.peek();
+            if (caller != null) {
+                lowLinks.merge(caller, lowLinks.get(name), Math::min);
+            }
+            return Parameters.NONE;
+        }
+
+        private void resolveComponentOf(String name) {
+            int index = indexes.size();
+            indexes.put(name, index);
+            lowLinks.put(name, index);
+            component.push(name);
+            resolving.push(name);
+            ownParameters.put(name, collect(templates.get(name), this));
+            resolving.pop();
+            if (lowLinks.get(name) != index) {
+                return;
+            }
+
+            List<String> members = new ArrayList<>();
+            String member;
+            do {
+                member = component.pop();
+                members.add(0, member);
+            } while (!member.equals(name));
+            if (members.size() == 1) {
+                resolved.put(name, ownParameters.get(name));
+                return;
+            }
+            for (String cycleMember : members) {
+                Parameters parameters = new Parameters();
+                parameters.addAll(ownParameters.get(cycleMember));
+                for (String other : members) {
+                    parameters.addAll(ownParameters.get(other));
+                }
+                resolved.put(cycleMember, parameters);
+            }
+        }
+    }
+
+    private static String nameOf(Table template) {
+        return template.getCellContents(1, 0);
+    }
+
+    /**
+     * Inputs and outputs of a table template, in the order they are used.
+     */
+    public static final class Parameters {
+        private static final Parameters NONE = new Parameters();
+
+        private final Set<String> inputs = new LinkedHashSet<>();
+        private final Set<String> outputs = new LinkedHashSet<>();
+
+        private void addAll(Parameters parameters) {
+            inputs.addAll(parameters.inputs);
+            outputs.addAll(parameters.outputs);
+        }
+
+        public Set<String> getInputs() {
+            return Collections.unmodifiableSet(inputs);
+        }
+
+        public Set<String> getOutputs() {
+            return Collections.unmodifiableSet(outputs);
+        }
+    }
+}
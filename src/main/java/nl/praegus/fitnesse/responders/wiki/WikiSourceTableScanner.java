@@ -0,0 +1,298 @@
+package nl.praegus.fitnesse.responders.wiki;
+
+import fitnesse.testrunner.TestPageWithSuiteSetUpAndTearDown;
+import fitnesse.testsystems.slim.TableScanner;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.WikiPage;
+import fitnesse.wiki.WikiPageUtil;
+import fitnesse.wiki.WikitextPage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the tables autocomplete is interested in straight from the wiki source of a page and the pages it includes,
+ * instead of rendering the page to html and parsing that. Only tables that start with a keyword (import, library,
+ * scenario, table template) or contain a {@code $variable=} row are returned, with the same cell contents the html
+ * table scanner gives for the rendered page.
+ * This is only possible for plain wiki text: when a relevant table, or the page structure around it, uses anything
+ * that changes while rendering (variables, links, formatting, literals, ...) {@link #scan(WikiPage)} returns null and
+ * the page has to be rendered. Reading from source can be switched off with the system property
+ * {@value #ENABLED_SYSPROP}.
+ * The tables of scenario libraries included in test pages are taken from the {@link ScenarioLibraryIndex}.
+ */
+
+public final class WikiSourceTableScanner implements TableScanner<SourceTable> {
+    public static final String ENABLED_SYSPROP = "autoCompleteSourceScanner";
+    private static final List<String> KEYWORDS = Arrays.asList(
+            "import", "library", "scenario", "looping scenario", "conditional scenario", "table template");
+    private static final List<String> TABLE_PREFIXES = Arrays.asList("-!|", "-|", "!|", "|");
+    private static final Pattern INCLUDE_PATTERN = Pattern.compile("^!include(?:\\s+-\\w+)*\\s+([<>.]?[\\w.<>]+)\\s*$");
+    private static final Pattern DEFINE_PATTERN = Pattern.compile(
+            "^!define\\s+\\w+\\s*(?:\\{[^}]*}|\\([^)]*\\)|\\[[^]]*])\\s*$");
+    private static final Pattern COLLAPSIBLE_PATTERN = Pattern.compile("^(?:!\\*+[<>]?(?:\\s.*)?|\\*+!)\\s*$");
+    private static final Pattern VARIABLE_ROW_PATTERN = Pattern.compile("\\$\\S+=");
+    private static final Pattern NOT_PLAIN_PATTERN = Pattern.compile(
+            "[!<>&]|\\$\\{|''|--|://|\\[\\[|\\w@\\w|\\b[A-Z][a-z0-9]+[A-Z]");
+    private static final String[] UNSUPPORTED_BLOCKS = {"{{{", "!-", "!<", "!["};
+    private static final int MAX_INCLUDE_DEPTH = 20;
+
+    private final List<SourceTable> tables;
+    private final Set<String> sourcePages;
+
+    private WikiSourceTableScanner(List<SourceTable> tables, Set<String> sourcePages) {
+        this.tables = tables;
+        this.sourcePages = sourcePages;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty(ENABLED_SYSPROP, "true"));
+    }
+
+    /**
+     * @return the relevant tables of the page as they would be rendered, or null when the page has to be rendered to
+     * know them
+     */
+    public static WikiSourceTableScanner scan(WikiPage page) {
+        if (!(page instanceof WikitextPage) || hasTables(page, "PageHeader") || hasTables(page, "PageFooter")) {
+            return null;
+        }
+        if (!WikiPageUtil.isTestPage(page)) {
+            return scanContent(page);
+        }
+
+        DecoratedTestPage testPage = new DecoratedTestPage(page, ScenarioLibraryIndex.isEnabled());
+        WikiSourceTableScanner scanner = scanSource(page, testPage.getDecoratedContent());
+        if (scanner == null || testPage.indexedLibraries.isEmpty()) {
+            return scanner;
+        }
+        List<SourceTable> tables = new ArrayList<>();
+        for (WikiPage library : testPage.indexedLibraries) {
+            List<SourceTable> libraryTables = ScenarioLibraryIndex.getInstance().getTables(library);
+            if (libraryTables == null) {
+                return null;
+            }
+            tables.addAll(libraryTables);
+        }
+        tables.addAll(scanner.tables);
+        return new WikiSourceTableScanner(Collections.unmodifiableList(tables), scanner.sourcePages);
+    }
+
+    /**
+     * Reads the tables of the page content as is, without set ups or scenario libraries, like it is rendered when it
+     * is included in another page.
+     */
+    static WikiSourceTableScanner scanContent(WikiPage page) {
+        return scanSource(page, page.getData().getContent());
+    }
+
+    private static WikiSourceTableScanner scanSource(WikiPage page, String source) {
+        List<String> lines = new ArrayList<>();
+        Set<String> sourcePages = new HashSet<>();
+        if (!expandIncludes(page, source, new ArrayDeque<>(), lines, sourcePages)) {
+            return null;
+        }
+        List<SourceTable> tables = findTables(lines);
+        return tables == null ? null : new WikiSourceTableScanner(tables, Collections.unmodifiableSet(sourcePages));
+    }
+
+    /**
+     * @return the full paths of the pages the tables were read from: the page and all pages it includes
+     */
+    public Set<String> getSourcePages() {
+        return sourcePages;
+    }
+
+    List<SourceTable> getTables() {
+        return tables;
+    }
+
+    @Override
+    public int getTableCount() {
+        return tables.size();
+    }
+
+    @Override
+    public SourceTable getTable(int i) {
+        return tables.get(i);
+    }
+
+    @Override
+    public Iterator<SourceTable> iterator() {
+        return tables.iterator();
+    }
+
+    private static boolean hasTables(WikiPage page, String inheritedPageName) {
+        WikiPage inherited = page.getPageCrawler().getClosestInheritedPage(inheritedPageName);
+        return inherited != null && inherited.getData().getContent().indexOf('|') >= 0;
+    }
+
+    private static boolean expandIncludes(WikiPage page, String source, Deque<WikiPage> including, List<String> lines,
+                                          Set<String> sourcePages) {
+        sourcePages.add(PathParser.render(page.getFullPath()));
+        for (String block : UNSUPPORTED_BLOCKS) {
+            if (source.contains(block)) {
+                return false;
+            }
+        }
+
+        including.push(page);
+        try {
+            for (String line : source.split("\r?\n", -1)) {
+                if (!line.startsWith("!include")) {
+                    lines.add(line);
+                    continue;
+                }
+                Matcher include = INCLUDE_PATTERN.matcher(line);
+                if (!include.matches() || including.size() > MAX_INCLUDE_DEPTH) {
+                    return false;
+                }
+                WikiPage included = page.getPageCrawler().getSiblingPage(PathParser.parse(include.group(1)));
+                if (included == null) {
+                    // rendered as an error message, which contains no tables
+                    lines.add("");
+                    continue;
+                }
+                lines.add("");
+                if (including.contains(included)
+                        || !expandIncludes(included, included.getData().getContent(), including, lines, sourcePages)) {
+                    return false;
+                }
+                lines.add("");
+            }
+            return true;
+        } finally {
+            including.pop();
+        }
+    }
+
+    private static List<SourceTable> findTables(List<String> lines) {
+        List<SourceTable> tables = new ArrayList<>();
+        List<List<String>> rows = new ArrayList<>();
+        for (String line : lines) {
+            String prefix = !rows.isEmpty() && line.startsWith("|") ? "|" : null;
+            if (prefix == null) {
+                if (!addTable(rows, tables)) {
+                    return null;
+                }
+                rows = new ArrayList<>();
+                prefix = tablePrefix(line);
+                if (prefix == null) {
+                    if (!isPlainLine(line)) {
+                        return null;
+                    }
+                    continue;
+                }
+            }
+
+            String row = trimTrailing(line);
+            if (row.length() <= prefix.length() || !row.endsWith("|")) {
+                return null;
+            }
+            List<String> cells = new ArrayList<>();
+            for (String cell : row.substring(prefix.length(), row.length() - 1).split("\\|", -1)) {
+                cells.add(cell.trim());
+            }
+            rows.add(cells);
+        }
+        if (!addTable(rows, tables)) {
+            return null;
+        }
+        return Collections.unmodifiableList(tables);
+    }
+
+    /**
+     * Adds the table when it is relevant for autocomplete.
+     *
+     * @return false when the table might be relevant, but can't be read from source
+     */
+    private static boolean addTable(List<List<String>> rows, List<SourceTable> tables) {
+        if (rows.isEmpty()) {
+            return true;
+        }
+        boolean relevant = false;
+        for (List<String> row : rows) {
+            String firstCell = row.get(0);
+            if (firstCell.contains("!") || firstCell.contains("${")) {
+                return false;
+            }
+            relevant |= VARIABLE_ROW_PATTERN.matcher(firstCell).matches();
+        }
+        relevant |= KEYWORDS.contains(rows.get(0).get(0).toLowerCase());
+        if (!relevant) {
+            return true;
+        }
+
+        for (List<String> row : rows) {
+            for (String cell : row) {
+                if (NOT_PLAIN_PATTERN.matcher(cell).find()) {
+                    return false;
+                }
+            }
+        }
+        tables.add(new SourceTable(rows));
+        return true;
+    }
+
+    private static String tablePrefix(String line) {
+        for (String prefix : TABLE_PREFIXES) {
+            if (line.startsWith(prefix)) {
+                return prefix;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lines outside tables are fine unless they might turn into (part of) a table while rendering.
+     */
+    private static boolean isPlainLine(String line) {
+        String trimmed = line.trim();
+        if (trimmed.startsWith("!define")) {
+            return DEFINE_PATTERN.matcher(trimmed).matches();
+        }
+        return !trimmed.startsWith("|") && !trimmed.startsWith("#")
+                && (!trimmed.contains("*") || !trimmed.contains("!") || COLLAPSIBLE_PATTERN.matcher(trimmed).matches());
+    }
+
+    private static String trimTrailing(String line) {
+        int end = line.length();
+        while (end > 0 && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        return line.substring(0, end);
+    }
+
+    private static final class DecoratedTestPage extends TestPageWithSuiteSetUpAndTearDown {
+        private final boolean indexLibraries;
+        private List<WikiPage> indexedLibraries = Collections.emptyList();
+
+        private DecoratedTestPage(WikiPage page, boolean indexLibraries) {
+            super(page);
+            this.indexLibraries = indexLibraries;
+        }
+
+        @Override
+        protected void includeScenarioLibraries(StringBuilder decoratedContent) {
+            if (indexLibraries) {
+                indexedLibraries = getScenarioLibraries();
+            } else {
+                super.includeScenarioLibraries(decoratedContent);
+            }
+        }
+
+        @Override
+        protected String getDecoratedContent() {
+            return super.getDecoratedContent();
+        }
+    }
+}
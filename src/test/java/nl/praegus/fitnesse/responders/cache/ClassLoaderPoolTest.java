@@ -0,0 +1,52 @@
+package nl.praegus.fitnesse.responders.cache;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClassLoaderPoolTest {
+    private final String testJar = new File("src/test/resources/dir with spaces/TestClass.jar").getPath();
+    private final String classesDir = new File("target/classes").getPath();
+
+    @Test
+    public void requests_with_the_same_classpath_share_a_loader() {
+        ClassLoaderPool pool = new ClassLoaderPool(4, 60000);
+
+        try (ClassLoaderPool.Lease first = pool.acquire(Collections.singletonList(testJar));
+             ClassLoaderPool.Lease second = pool.acquire(Arrays.asList("./" + testJar, testJar))) {
+            assertThat(second.getClassLoader()).isSameAs(first.getClassLoader());
+        }
+        assertThat(pool.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void least_recently_used_loader_is_evicted_when_pool_is_full() throws Exception {
+        ClassLoaderPool pool = new ClassLoaderPool(1, 60000);
+
+        ClassLoaderPool.Lease jarLease = pool.acquire(Collections.singletonList(testJar));
+        jarLease.getClassLoader().loadClass("nl.praegus.testclass.Main");
+        jarLease.close();
+        pool.acquire(Collections.singletonList(classesDir)).close();
+
+        assertThat(pool.size()).isEqualTo(1);
+        assertThat(pool.getEvictionCount()).isEqualTo(1);
+        try (ClassLoaderPool.Lease lease = pool.acquire(Collections.singletonList(testJar))) {
+            assertThat(lease.getClassLoader()).isNotSameAs(jarLease.getClassLoader());
+        }
+    }
+
+    @Test
+    public void idle_loaders_are_evicted() {
+        ClassLoaderPool pool = new ClassLoaderPool(4, -1);
+
+        pool.acquire(Collections.singletonList(testJar)).close();
+        pool.acquire(Collections.singletonList(classesDir)).close();
+
+        assertThat(pool.size()).isEqualTo(1);
+        assertThat(pool.getEvictionCount()).isEqualTo(1);
+    }
+}
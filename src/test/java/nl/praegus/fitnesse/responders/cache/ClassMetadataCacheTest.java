@@ -0,0 +1,163 @@
+package nl.praegus.fitnesse.responders.cache;
+
+import nl.praegus.fitnesse.responders.metadata.FixtureClass;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClassMetadataCacheTest {
+    private static final String CLASS_PATH = ClassMetadataCache.classPathKey(Collections.singletonList("TestClass.jar"));
+    private final AtomicInteger builds = new AtomicInteger();
+    private final Function<Set<File>, JSONObject> builder =
+            sources -> new JSONObject().put("build", builds.incrementAndGet());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void clearCache() {
+        ClassMetadataCache.clear();
+    }
+
+    @Test
+    public void metadata_is_reused_for_unchanged_jar() throws Exception {
+        FixtureClass klass = FixtureClass.of(testJarClassLoader().loadClass("nl.praegus.testclass.Main"));
+
+        JSONObject first = ClassMetadataCache.get(klass, CLASS_PATH, "default", builder);
+        JSONObject second = ClassMetadataCache.get(klass, CLASS_PATH, "default", builder);
+
+        assertThat(second).isSameAs(first);
+        assertThat(builds.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void metadata_is_rebuilt_for_other_variant() throws Exception {
+        FixtureClass klass = FixtureClass.of(testJarClassLoader().loadClass("nl.praegus.testclass.Main"));
+
+        ClassMetadataCache.get(klass, CLASS_PATH, "default", builder);
+        ClassMetadataCache.get(klass, CLASS_PATH, "interposing", builder);
+
+        assertThat(builds.get()).isEqualTo(2);
+        assertThat(ClassMetadataCache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void metadata_is_rebuilt_when_a_jar_with_a_super_class_changed() throws Exception {
+        FixtureClass klass = FixtureClass.of(testJarClassLoader().loadClass("nl.praegus.testclass.Main"));
+        File baseJar = folder.newFile("base.jar");
+        Function<Set<File>, JSONObject> readingBase = sources -> {
+            sources.add(baseJar);
+            return builder.apply(sources);
+        };
+
+        ClassMetadataCache.get(klass, CLASS_PATH, "default", readingBase);
+        ClassMetadataCache.get(klass, CLASS_PATH, "default", readingBase);
+        assertThat(builds.get()).isEqualTo(1);
+
+        Files.write(baseJar.toPath(), new byte[]{1});
+        ClassMetadataCache.get(klass, CLASS_PATH, "default", readingBase);
+
+        assertThat(builds.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void metadata_is_not_shared_between_classpaths_with_other_base_jars() throws Exception {
+        FixtureClass klass = FixtureClass.of(testJarClassLoader().loadClass("nl.praegus.testclass.Main"));
+        String fixtureJar = klass.getClassPathEntry().getPath();
+        File baseA = folder.newFile("base-a.jar");
+        File baseB = folder.newFile("base-b.jar");
+        String withA = ClassMetadataCache.classPathKey(Arrays.asList(fixtureJar, baseA.getPath()));
+        String withB = ClassMetadataCache.classPathKey(Arrays.asList(fixtureJar, baseB.getPath()));
+
+        JSONObject fromA = ClassMetadataCache.get(klass, withA, "default", readingBase(baseA));
+        JSONObject fromB = ClassMetadataCache.get(klass, withB, "default", readingBase(baseB));
+
+        assertThat(fromA.getString("base")).isEqualTo("base-a.jar");
+        assertThat(fromB.getString("base")).isEqualTo("base-b.jar");
+        assertThat(ClassMetadataCache.get(klass, withA, "default", readingBase(baseA))).isSameAs(fromA);
+        assertThat(builds.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void description_for_another_classpath_does_not_wait_for_one_in_flight() throws Exception {
+        FixtureClass klass = FixtureClass.of(testJarClassLoader().loadClass("nl.praegus.testclass.Main"));
+        String fixtureJar = klass.getClassPathEntry().getPath();
+        File baseA = folder.newFile("base-a.jar");
+        File baseB = folder.newFile("base-b.jar");
+        CountDownLatch describingA = new CountDownLatch(1);
+        CountDownLatch describedB = new CountDownLatch(1);
+        long coalesced = ClassMetadataCache.getFlights().getCoalescedCount();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<JSONObject> fromA = executor.submit(() -> ClassMetadataCache.get(klass,
+                    ClassMetadataCache.classPathKey(Arrays.asList(fixtureJar, baseA.getPath())), "default",
+                    sources -> {
+                        describingA.countDown();
+                        await(describedB);
+                        return readingBase(baseA).apply(sources);
+                    }));
+            describingA.await();
+
+            JSONObject fromB = ClassMetadataCache.get(klass,
+                    ClassMetadataCache.classPathKey(Arrays.asList(fixtureJar, baseB.getPath())), "default",
+                    readingBase(baseB));
+            describedB.countDown();
+
+            assertThat(fromB.getString("base")).isEqualTo("base-b.jar");
+            assertThat(fromA.get(10, TimeUnit.SECONDS).getString("base")).isEqualTo("base-a.jar");
+            assertThat(ClassMetadataCache.getFlights().getCoalescedCount()).isEqualTo(coalesced);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void classes_without_location_are_not_cached() {
+        FixtureClass klass = FixtureClass.of(String.class);
+
+        ClassMetadataCache.get(klass, CLASS_PATH, "default", builder);
+        ClassMetadataCache.get(klass, CLASS_PATH, "default", builder);
+
+        assertThat(builds.get()).isEqualTo(2);
+        assertThat(ClassMetadataCache.size()).isZero();
+    }
+
+    private Function<Set<File>, JSONObject> readingBase(File baseJar) {
+        return sources -> {
+            sources.add(baseJar);
+            return builder.apply(sources).put("base", baseJar.getName());
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private URLClassLoader testJarClassLoader() throws Exception {
+        URL[] url = new URL[]{getClass().getClassLoader().getResource("dir with spaces/TestClass.jar").toURI().toURL()};
+        return new URLClassLoader(url, ClassLoader.getSystemClassLoader());
+    }
+}
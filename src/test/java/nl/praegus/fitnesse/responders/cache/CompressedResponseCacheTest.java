@@ -0,0 +1,32 @@
+package nl.praegus.fitnesse.responders.cache;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompressedResponseCacheTest {
+    private final CompressedResponseCache cache = new CompressedResponseCache(3000);
+
+    @Test
+    public void least_recently_used_bodies_are_evicted_beyond_the_budget() {
+        cache.put("\"one\"", new byte[1000]);
+        cache.put("\"two\"", new byte[1000]);
+        cache.get("\"one\"");
+        cache.put("\"three\"", new byte[1000]);
+
+        assertThat(cache.get("\"one\"")).hasSize(1000);
+        assertThat(cache.get("\"two\"")).isNull();
+        assertThat(cache.get("\"three\"")).hasSize(1000);
+        assertThat(cache.getBytes()).isLessThanOrEqualTo(3000);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void body_larger_than_the_budget_is_not_kept() {
+        cache.put("\"large\"", new byte[5000]);
+
+        assertThat(cache.get("\"large\"")).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getBytes()).isZero();
+    }
+}
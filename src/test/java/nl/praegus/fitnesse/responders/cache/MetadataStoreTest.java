@@ -0,0 +1,93 @@
+package nl.praegus.fitnesse.responders.cache;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MetadataStoreTest {
+
+    @Test
+    public void least_recently_used_entries_are_evicted_beyond_budget() {
+        long one = sizeOf(metadata("a.A", "first"));
+        long two = sizeOf(metadata("a.A", "first"), metadata("a.B", "second"));
+        MetadataStore<String> store = new MetadataStore<>(two + (two - one) / 2, false);
+
+        store.put("a.A", "v1", metadata("a.A", "first"));
+        store.put("a.B", "v1", metadata("a.B", "second"));
+        store.get("a.A", "v1");
+        store.put("a.C", "v1", metadata("a.C", "third"));
+
+        assertThat(store.get("a.A", "v1")).isNotNull();
+        assertThat(store.get("a.B", "v1")).isNull();
+        assertThat(store.get("a.C", "v1")).isNotNull();
+        assertThat(store.getEvictionCount()).isEqualTo(1);
+        assertThat(store.getBytes()).isLessThanOrEqualTo(store.getMaxBytes());
+    }
+
+    @Test
+    public void evicted_entries_are_kept_softly() {
+        MetadataStore<String> store = new MetadataStore<>(0, true);
+        JSONObject metadata = metadata("a.A", "first");
+
+        store.put("a.A", "v1", metadata);
+
+        assertThat(store.size()).isZero();
+        assertThat(store.softSize()).isEqualTo(1);
+        assertThat(store.get("a.A", "v2")).isNull();
+        JSONObject stored = store.put("a.A", "v1", metadata);
+        assertThat(store.get("a.A", "v1")).isSameAs(stored);
+        assertThat(store.getSoftHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void repeated_strings_are_shared_and_counted_once() {
+        MetadataStore<String> store = new MetadataStore<>(1 << 20, false);
+        String secondType = new String("java.util.List");
+        JSONObject second = metadata("a.B", secondType);
+
+        JSONObject first = store.put("a.A", "v1", metadata("a.A", new String("java.util.List")));
+        long firstSize = store.getBytes();
+        JSONObject storedSecond = store.put("a.B", "v1", second);
+
+        assertThat(type(storedSecond)).isSameAs(type(first));
+        assertThat(type(second)).isSameAs(secondType);
+        assertThat(store.getDeduplicatedCount()).isPositive();
+        assertThat(store.getBytes() - firstSize).isLessThan(firstSize);
+    }
+
+    @Test
+    public void shared_strings_stay_counted_while_any_entry_holds_them() {
+        MetadataStore<String> store = new MetadataStore<>(1 << 20, false);
+        store.put("a.A", "v1", metadata("a.A", "java.util.List"));
+        store.put("a.B", "v1", metadata("a.B", "java.util.List"));
+        store.put("a.A", "v2", new JSONObject());
+        MetadataStore<String> expected = new MetadataStore<>(1 << 20, false);
+        expected.put("a.B", "v1", metadata("a.B", "java.util.List"));
+        expected.put("a.A", "v2", new JSONObject());
+
+        assertThat(store.getBytes()).isEqualTo(expected.getBytes());
+    }
+
+    private static long sizeOf(JSONObject... metadata) {
+        MetadataStore<String> store = new MetadataStore<>(Long.MAX_VALUE, false);
+        for (int i = 0; i < metadata.length; i++) {
+            store.put("a." + i, "", metadata[i]);
+        }
+        return store.getBytes();
+    }
+
+    private static JSONObject metadata(String className, String parameterType) {
+        return new JSONObject()
+                .put("qualifiedName", className)
+                .put("methods", new JSONArray().put(new JSONObject()
+                        .put("name", "click on")
+                        .put("parameters", new JSONArray().put(new JSONObject().put("type", parameterType)))
+                        .put("annotations", new JSONArray().put("Deprecated"))));
+    }
+
+    private static Object type(JSONObject metadata) {
+        return metadata.getJSONArray("methods").getJSONObject(0).getJSONArray("parameters").getJSONObject(0).get("type");
+    }
+}
@@ -0,0 +1,48 @@
+package nl.praegus.fitnesse.responders.cache;
+
+import nl.praegus.fitnesse.responders.wiki.PageAutoCompleteData;
+import org.json.JSONArray;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PageResultCacheTest {
+    private final PageResultCache cache = new PageResultCache(2);
+    private final AtomicInteger builds = new AtomicInteger();
+
+    @Test
+    public void page_is_scanned_again_only_when_its_fingerprint_changes() {
+        PageAutoCompleteData first = cache.get("FrontPage", "v1", this::build);
+        PageAutoCompleteData second = cache.get("FrontPage", "v1", this::build);
+        PageAutoCompleteData changed = cache.get("FrontPage", "v2", this::build);
+
+        assertThat(second).isSameAs(first);
+        assertThat(changed).isNotSameAs(first);
+        assertThat(builds).hasValue(2);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void least_recently_used_page_is_evicted() {
+        cache.get("PageOne", "v1", this::build);
+        cache.get("PageTwo", "v1", this::build);
+        cache.get("PageOne", "v1", this::build);
+        cache.get("PageThree", "v1", this::build);
+
+        cache.get("PageOne", "v1", this::build);
+        assertThat(builds).hasValue(3);
+        cache.get("PageTwo", "v1", this::build);
+        assertThat(builds).hasValue(4);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    private PageAutoCompleteData build() {
+        builds.incrementAndGet();
+        return new PageAutoCompleteData(new JSONArray(), new JSONArray(), Collections.singleton("nl.praegus"));
+    }
+}
@@ -0,0 +1,252 @@
+package nl.praegus.fitnesse.responders.http;
+
+import fitnesse.FitNesseContext;
+import fitnesse.http.MockRequest;
+import fitnesse.http.MockResponseSender;
+import fitnesse.testutil.FitNesseUtil;
+import fitnesse.wiki.PageData;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.WikiPage;
+import fitnesse.wiki.WikiPageUtil;
+import nl.praegus.fitnesse.responders.AutoCompleteResponder;
+import nl.praegus.fitnesse.responders.cache.CompressedResponseCache;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AutoCompleteResponderTest {
+    private static final String TEST_PAGE = "SuitePage.TestPage";
+    private static final String PAGE_CONTENT = "!define greeting {hello}\n"
+            + "|import|\n|nl.praegus.testclass|\n\n"
+            + "|scenario|log in|user|with|password|\n|check|logged in|@user|\n\n"
+            + "|table template|login table|\n|log in|@{name}|with|@{secret}|\n|$result=|echo|\n\n"
+            + "|table template|checked login|\n|login table;|\n|check|@{expected}|\n\n"
+            + "|script|\n|$answer=|echo|42|\n\n"
+            + "|login table|\n|name|secret|result?|\n|bob|pw|ok|\n";
+
+    private FitNesseContext context;
+    private WikiPage testPage;
+
+    @Before
+    public void makeWiki() throws Exception {
+        context = FitNesseUtil.makeTestContext();
+        WikiPage root = context.getRootPage();
+        String jar = new File(getClass().getClassLoader().getResource("dir with spaces/TestClass.jar").toURI())
+                .getAbsolutePath();
+        WikiPageUtil.addPage(root, PathParser.parse("SuitePage"), "!path " + jar + "\n");
+        testPage = WikiPageUtil.addPage(root, PathParser.parse(TEST_PAGE), PAGE_CONTENT);
+        PageData data = testPage.getData();
+        data.setAttribute("Test", "true");
+        testPage.commit(data);
+    }
+
+    @Test
+    public void response_is_the_same_json_as_before() throws Exception {
+        Sent sent = send(request());
+
+        assertThat(sent.status).isEqualTo(200);
+        assertThat(sent.json().similar(new JSONObject(resource("responses/test-page.json")))).isTrue();
+    }
+
+    @Test
+    public void matching_entity_tag_gives_not_modified() throws Exception {
+        String etag = send(request()).headers.get(EntityTags.ETAG);
+        MockRequest again = request();
+        again.addHeader(EntityTags.IF_NONE_MATCH, etag);
+
+        Sent notModified = send(again);
+
+        assertThat(notModified.status).isEqualTo(304);
+        assertThat(notModified.headers.get(EntityTags.ETAG)).isEqualTo(etag);
+        assertThat(notModified.body).isEmpty();
+    }
+
+    @Test
+    public void changed_page_is_sent_again_for_old_entity_tag() throws Exception {
+        String etag = send(request()).headers.get(EntityTags.ETAG);
+        PageData data = testPage.getData();
+        data.setContent(PAGE_CONTENT + "\n|script|\n|$other=|echo|1|\n");
+        testPage.commit(data);
+        MockRequest again = request();
+        again.addHeader(EntityTags.IF_NONE_MATCH, etag);
+
+        Sent changed = send(again);
+
+        assertThat(changed.status).isEqualTo(200);
+        assertThat(changed.headers.get(EntityTags.ETAG)).isNotEqualTo(etag);
+        assertThat(changed.json().getJSONArray("variables").length()).isEqualTo(3);
+    }
+
+    @Test
+    public void gzip_body_is_valid_and_kept_for_the_next_request() throws Exception {
+        MockRequest request = request();
+        request.addHeader(ContentEncoding.ACCEPT_ENCODING, ContentEncoding.GZIP);
+        long hits = CompressedResponseCache.getInstance().getHitCount();
+
+        Sent streamed = send(request);
+        Sent cached = send(request);
+
+        assertThat(streamed.headers.get(ContentEncoding.CONTENT_ENCODING)).isEqualTo(ContentEncoding.GZIP);
+        assertThat(new JSONObject(gunzip(streamed.body)).similar(send(request()).json())).isTrue();
+        assertThat(cached.headers.get(ContentEncoding.CONTENT_ENCODING)).isEqualTo(ContentEncoding.GZIP);
+        assertThat(cached.body).isEqualTo(streamed.body);
+        assertThat(CompressedResponseCache.getInstance().getHitCount()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    public void summary_has_names_of_classes_and_variables_only() throws Exception {
+        MockRequest request = request();
+        request.addInput("summary", "");
+
+        JSONObject summary = send(request).json();
+
+        assertThat(summary.getJSONArray("classes").getJSONObject(0).keySet())
+                .containsExactlyInAnyOrder("qualifiedName", "readableName");
+        assertThat(summary.getJSONArray("variables").getJSONObject(0).keySet()).containsExactly("varName");
+        assertThat(summary.getJSONArray("scenarios").getJSONObject(0).keySet())
+                .containsExactlyInAnyOrder("name", "insertText", "parameters");
+    }
+
+    @Test
+    public void query_returns_the_matching_scenario_first() throws Exception {
+        MockRequest request = request();
+        request.addInput("q", "log in");
+
+        JSONObject result = send(request).json();
+
+        assertThat(result.getString("query")).isEqualTo("log in");
+        JSONObject best = result.getJSONArray("results").getJSONObject(0);
+        assertThat(best.getString("kind")).isEqualTo("scenario");
+        assertThat(best.getString("name")).isEqualTo("log in with ");
+    }
+
+    @Test
+    public void class_has_the_same_details_as_the_full_response() throws Exception {
+        MockRequest request = request();
+        request.addInput("class", "nl.praegus.testclass.Main");
+
+        Sent sent = send(request);
+
+        assertThat(sent.status).isEqualTo(200);
+        assertThat(sent.json().getJSONObject("class").similar(new JSONObject(resource("responses/test-page.json"))
+                .getJSONArray("classes").getJSONObject(0))).isTrue();
+    }
+
+    @Test
+    public void unknown_class_is_not_found() throws Exception {
+        MockRequest request = request();
+        request.addInput("class", "nl.praegus.testclass.Missing");
+
+        Sent sent = send(request);
+
+        assertThat(sent.status).isEqualTo(404);
+        assertThat(sent.json().getString("error")).contains("nl.praegus.testclass.Missing");
+    }
+
+    @Test
+    public void pages_share_the_classes_they_import() throws Exception {
+        WikiPageUtil.addPage(context.getRootPage(), PathParser.parse("SuitePage.OtherPage"),
+                "|import|\n|nl.praegus.testclass|\n");
+        MockRequest request = new MockRequest();
+        request.addInput("pages", TEST_PAGE + ",SuitePage.OtherPage,SuitePage.MissingPage");
+
+        JSONObject batch = send(request).json();
+
+        JSONObject expected = new JSONObject(resource("responses/test-page.json"));
+        assertThat(batch.getJSONArray("classes").length()).isEqualTo(1);
+        assertThat(batch.getJSONArray("classes").getJSONObject(0)
+                .similar(expected.getJSONArray("classes").getJSONObject(0))).isTrue();
+        JSONArray pages = batch.getJSONArray("pages");
+        assertThat(pages.getJSONObject(0).getString("page")).isEqualTo(TEST_PAGE);
+        assertThat(pages.getJSONObject(0).getJSONArray("scenarios").similar(expected.getJSONArray("scenarios")))
+                .isTrue();
+        assertThat(pages.getJSONObject(0).getJSONArray("classes").toList()).containsExactly(0);
+        assertThat(pages.getJSONObject(1).getJSONArray("classes").toList()).containsExactly(0);
+        assertThat(pages.getJSONObject(2).getString("error")).isEqualTo("Page not found");
+    }
+
+    private MockRequest request() {
+        MockRequest request = new MockRequest();
+        request.setResource(TEST_PAGE);
+        return request;
+    }
+
+    private Sent send(MockRequest request) throws Exception {
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        new MockResponseSender(sent).doSending(new AutoCompleteResponder().makeResponse(context, request));
+        return new Sent(sent.toByteArray());
+    }
+
+    private static String resource(String name) throws Exception {
+        return new String(Files.readAllBytes(Paths.get(
+                AutoCompleteResponderTest.class.getClassLoader().getResource(name).toURI())), StandardCharsets.UTF_8);
+    }
+
+    private static String gunzip(byte[] compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Status, headers and (de-chunked) body of a response as it was sent.
+     */
+    private static final class Sent {
+        private final int status;
+        private final Map<String, String> headers = new HashMap<>();
+        private final byte[] body;
+
+        private Sent(byte[] sent) {
+            String text = new String(sent, StandardCharsets.ISO_8859_1);
+            int headerEnd = text.indexOf("\r\n\r\n");
+            String[] lines = text.substring(0, headerEnd).split("\r\n");
+            status = Integer.parseInt(lines[0].split(" ")[1]);
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                headers.put(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+            }
+            body = "chunked".equals(headers.get("Transfer-Encoding"))
+                    ? dechunk(sent, text, headerEnd + 4)
+                    : Arrays.copyOfRange(sent, headerEnd + 4, sent.length);
+        }
+
+        private JSONObject json() {
+            return new JSONObject(new String(body, StandardCharsets.UTF_8));
+        }
+
+        private static byte[] dechunk(byte[] sent, String text, int start) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            int pos = start;
+            while (true) {
+                int lineEnd = text.indexOf("\r\n", pos);
+                int size = Integer.parseInt(text.substring(pos, lineEnd), 16);
+                if (size == 0) {
+                    return body.toByteArray();
+                }
+                body.write(sent, lineEnd + 2, size);
+                pos = lineEnd + 2 + size + 2;
+            }
+        }
+    }
+}
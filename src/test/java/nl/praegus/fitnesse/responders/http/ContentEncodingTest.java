@@ -0,0 +1,28 @@
+package nl.praegus.fitnesse.responders.http;
+
+import fitnesse.http.MockRequest;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ContentEncodingTest {
+
+    @Test
+    public void gzip_is_accepted_unless_refused() {
+        assertThat(acceptsGzip(null)).isFalse();
+        assertThat(acceptsGzip("identity")).isFalse();
+        assertThat(acceptsGzip("gzip, deflate, br")).isTrue();
+        assertThat(acceptsGzip("br;q=1.0, GZIP;q=0.5")).isTrue();
+        assertThat(acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(acceptsGzip("*")).isTrue();
+        assertThat(acceptsGzip("*, gzip;q=0")).isFalse();
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        MockRequest request = new MockRequest();
+        if (acceptEncoding != null) {
+            request.addHeader(ContentEncoding.ACCEPT_ENCODING, acceptEncoding);
+        }
+        return ContentEncoding.acceptsGzip(request);
+    }
+}
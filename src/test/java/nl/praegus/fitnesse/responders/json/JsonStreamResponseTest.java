@@ -0,0 +1,152 @@
+package nl.praegus.fitnesse.responders.json;
+
+import fitnesse.http.MockResponseSender;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JsonStreamResponseTest {
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    @Test
+    public void body_is_streamed_as_compact_json() throws Exception {
+        String body = send(false);
+
+        assertThat(body).doesNotContain("\n");
+        JSONObject json = new JSONObject(body);
+        assertThat(json.getJSONArray("scenarios").getJSONObject(0).getString("name")).isEqualTo("log in");
+        assertThat(json.getJSONArray("classes").length()).isEqualTo(2);
+        assertThat(json.getJSONArray("variables").length()).isZero();
+        assertThat(completed).isTrue();
+    }
+
+    @Test
+    public void pretty_json_is_indented_and_equivalent() throws Exception {
+        String compact = send(false);
+        String pretty = send(true);
+
+        assertThat(pretty).contains("\n   \"scenarios\": [\n      {");
+        assertThat(new JSONObject(pretty).similar(new JSONObject(compact))).isTrue();
+    }
+
+    @Test
+    public void completion_callback_runs_when_body_fails() throws Exception {
+        JsonStreamResponse response = new JsonStreamResponse(false, json -> {
+            json.beginObject();
+            throw new IllegalStateException("broken");
+        }, () -> completed.set(true));
+
+        new MockResponseSender().doSending(response.getResponse());
+
+        assertThat(completed).isTrue();
+    }
+
+    @Test
+    public void completion_callback_runs_once_when_headers_cannot_be_sent() {
+        AtomicInteger completions = new AtomicInteger();
+        AtomicBoolean bodyWritten = new AtomicBoolean();
+        JsonStreamResponse response = new JsonStreamResponse(false, json -> bodyWritten.set(true),
+                completions::incrementAndGet);
+
+        assertThatThrownBy(() -> response.getResponse().sendTo(new MockResponseSender() {
+            @Override
+            public void send(byte[] bytes) throws IOException {
+                throw new IOException("client disconnected");
+            }
+        })).isInstanceOf(IOException.class);
+
+        assertThat(bodyWritten).isFalse();
+        assertThat(completions).hasValue(1);
+    }
+
+    @Test
+    public void completion_callback_runs_once_when_body_is_sent() throws Exception {
+        AtomicInteger completions = new AtomicInteger();
+        JsonStreamResponse response = new JsonStreamResponse(false, json -> json.beginObject().endObject(),
+                completions::incrementAndGet);
+
+        new MockResponseSender().doSending(response.getResponse());
+
+        assertThat(completions).hasValue(1);
+    }
+
+    @Test
+    public void gzip_body_is_compressed_and_kept() throws Exception {
+        JsonStreamResponse response = response(false, true);
+        byte[] sent = dechunk(sendTo(response));
+
+        assertThat(response.getResponse().getHeader("Content-Encoding")).isEqualTo("gzip");
+        assertThat(new JSONObject(gunzip(sent)).similar(new JSONObject(send(false)))).isTrue();
+        assertThat(response.getCompressedBody()).isEqualTo(sent);
+        assertThat(response.getBytesWritten()).isEqualTo(sent.length);
+    }
+
+    @Test
+    public void incomplete_gzip_body_is_not_kept() throws Exception {
+        JsonStreamResponse response = new JsonStreamResponse(false, true, json -> {
+            json.beginObject();
+            throw new IllegalStateException("broken");
+        }, () -> completed.set(true));
+
+        sendTo(response);
+
+        assertThat(response.getCompressedBody()).isNull();
+    }
+
+    private String send(boolean pretty) throws Exception {
+        return new String(dechunk(sendTo(response(pretty, false))), StandardCharsets.UTF_8);
+    }
+
+    private JsonStreamResponse response(boolean pretty, boolean gzip) {
+        return new JsonStreamResponse(pretty, gzip, json -> json.beginObject()
+                .array("scenarios", Arrays.asList(new JSONObject().put("name", "log in").put("parameters", new JSONArray())))
+                .array("variables", new JSONArray())
+                .array("classes", Arrays.asList(new JSONObject().put("qualifiedName", "a.B"), new JSONObject()))
+                .endObject(), () -> completed.set(true));
+    }
+
+    private static byte[] sendTo(JsonStreamResponse response) throws IOException {
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        new MockResponseSender(sent).doSending(response.getResponse());
+        return sent.toByteArray();
+    }
+
+    private static byte[] dechunk(byte[] sentData) {
+        String chunked = new String(sentData, StandardCharsets.ISO_8859_1);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int pos = chunked.indexOf("\r\n\r\n") + 4;
+        while (true) {
+            int lineEnd = chunked.indexOf("\r\n", pos);
+            int size = Integer.parseInt(chunked.substring(pos, lineEnd), 16);
+            if (size == 0) {
+                return body.toByteArray();
+            }
+            body.write(sentData, lineEnd + 2, size);
+            pos = lineEnd + 2 + size + 2;
+        }
+    }
+
+    private static String gunzip(byte[] compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package nl.praegus.fitnesse.responders.metadata;
+
+import org.json.JSONArray;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClassFileMetadataEngineTest {
+    private final URLClassLoader classLoader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+    private final FixtureClass fixture = new FixtureClass(SampleFixture.class.getName(), null);
+
+    @Test
+    public void class_file_engine_produces_same_methods_as_reflection() {
+        ClassSignature fromReflection = ReflectionMetadataEngine.INSTANCE.readSignature(fixture, classLoader);
+        ClassSignature fromClassFile = ClassFileMetadataEngine.INSTANCE.readSignature(fixture, classLoader);
+
+        assertThat(sorted(FixtureMetadataJson.methods(fromClassFile)))
+                .isNotEmpty()
+                .isEqualTo(sorted(FixtureMetadataJson.methods(fromReflection)));
+    }
+
+    @Test
+    public void class_file_engine_produces_same_methods_as_reflection_for_generics_and_covariant_returns() {
+        FixtureClass covariant = new FixtureClass(CovariantFixture.class.getName(), null);
+        ClassSignature fromReflection = ReflectionMetadataEngine.INSTANCE.readSignature(covariant, classLoader);
+        ClassSignature fromClassFile = ClassFileMetadataEngine.INSTANCE.readSignature(covariant, classLoader);
+
+        assertThat(sorted(FixtureMetadataJson.methods(fromClassFile)))
+                .isEqualTo(sorted(FixtureMetadataJson.methods(fromReflection)));
+        // the covariant override and its bridge method
+        assertThat(fromClassFile.getMethods())
+                .extracting(MemberSignature::getName)
+                .filteredOn("copy"::equals).hasSize(2);
+    }
+
+    @Test
+    public void class_file_engine_produces_same_constructors_as_reflection() {
+        ClassSignature fromReflection = ReflectionMetadataEngine.INSTANCE.readSignature(fixture, classLoader);
+        ClassSignature fromClassFile = ClassFileMetadataEngine.INSTANCE.readSignature(fixture, classLoader);
+
+        assertThat(sorted(FixtureMetadataJson.constructors(fromClassFile)))
+                .hasSize(2)
+                .isEqualTo(sorted(FixtureMetadataJson.constructors(fromReflection)));
+    }
+
+    @Test
+    public void both_engines_report_the_sources_of_super_types() {
+        ClassSignature fromReflection = ReflectionMetadataEngine.INSTANCE.readSignature(fixture, classLoader);
+        ClassSignature fromClassFile = ClassFileMetadataEngine.INSTANCE.readSignature(fixture, classLoader);
+
+        assertThat(fromClassFile.getSupertypeSources())
+                .isNotEmpty()
+                .isEqualTo(fromReflection.getSupertypeSources());
+    }
+
+    @Test
+    public void class_file_engine_finds_classes_with_public_constructor_in_jar() throws Exception {
+        URL[] url = new URL[]{getClass().getClassLoader().getResource("dir with spaces/TestClass.jar").toURI().toURL()};
+        URLClassLoader jarClassLoader = new URLClassLoader(url, ClassLoader.getSystemClassLoader());
+
+        List<FixtureClass> classes = ClassFileMetadataEngine.INSTANCE.findClasses("nl.praegus.testclass", jarClassLoader);
+
+        assertThat(classes).extracting(FixtureClass::getName).containsExactly("nl.praegus.testclass.Main");
+    }
+
+    private static List<String> sorted(JSONArray members) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < members.length(); i++) {
+            result.add(members.getJSONObject(i).toString());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    public static class BaseFixture {
+        public String baseValue() {
+            return "";
+        }
+
+        public void overridden(int value) {
+        }
+
+        protected void notVisible() {
+        }
+    }
+
+    public interface Greeter {
+        default String greetPerson(String name) {
+            return name;
+        }
+
+        static void helper() {
+        }
+    }
+
+    public static class SampleFixture extends BaseFixture implements Greeter {
+        public SampleFixture() {
+        }
+
+        @Deprecated
+        public SampleFixture(String[] names, int count) throws IOException {
+        }
+
+        private SampleFixture(long hidden) {
+        }
+
+        @Deprecated
+        public void clickOn(String locator) throws IllegalStateException, IOException {
+        }
+
+        public boolean isVisibleWithinSeconds(Map.Entry<String, Integer> element, long timeout) {
+            return true;
+        }
+
+        @Override
+        public void overridden(int value) {
+        }
+
+        public List<String> convert(byte[][] raw, char separator, double factor, boolean strict) {
+            return null;
+        }
+
+        public static int staticHelper(float value) {
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return "sample";
+        }
+    }
+
+    static class HiddenBase {
+        public String hiddenBaseMethod() {
+            return "";
+        }
+    }
+
+    public abstract static class GenericBase<T extends Number> extends HiddenBase {
+        public T value(T input) {
+            return input;
+        }
+
+        public GenericBase<T> copy() {
+            return this;
+        }
+
+        public abstract void accept(T value);
+    }
+
+    public interface Source<T> {
+        T next();
+
+        default Source<T> self() {
+            return this;
+        }
+    }
+
+    public static class CovariantFixture extends GenericBase<Integer>
+            implements Source<String>, Comparable<CovariantFixture> {
+        @Override
+        public Integer value(Integer input) {
+            return input;
+        }
+
+        @Override
+        public CovariantFixture copy() {
+            return this;
+        }
+
+        @Override
+        public void accept(Integer value) {
+        }
+
+        @Override
+        public String next() {
+            return "";
+        }
+
+        @Override
+        public CovariantFixture self() {
+            return this;
+        }
+
+        @Override
+        public int compareTo(CovariantFixture other) {
+            return 0;
+        }
+    }
+}
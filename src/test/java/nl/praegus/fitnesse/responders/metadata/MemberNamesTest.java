@@ -0,0 +1,77 @@
+package nl.praegus.fitnesse.responders.metadata;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MemberNamesTest {
+    private static final String ALPHABET = "aAbBzZ019_$|[] .;\u00e9\u00c9\u0130\u00df";
+
+    @Test
+    public void camel_case_is_split_like_the_regular_expression_did() {
+        for (String name : Arrays.asList("getHTTPUrl2", "clickOn", "ABC", "aB", "x", "", "userID", "page2Html",
+                "SCREAMING_SNAKE", "valueOf$", "\u0130stanbulCity", "na\u00efveCase")) {
+            assertThat(MemberNames.splitCamelCase(name)).as(name).isEqualTo(regexSplitCamelCase(name));
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            String name = randomText(random);
+            assertThat(MemberNames.splitCamelCase(name)).as(name).isEqualTo(regexSplitCamelCase(name));
+        }
+    }
+
+    @Test
+    public void context_help_is_made_like_the_regular_expression_did() {
+        for (String wikiText : Arrays.asList("click | [String] | on | [int] | ", "log in; | [java.lang.String] |",
+                "run | [byte[]] | ", "get | [] | x |", "a | [b] | [c] | d", "| [x_1] |")) {
+            assertThat(MemberNames.contextHelp(wikiText)).as(wikiText).isEqualTo(regexContextHelp(wikiText));
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            String wikiText = randomText(random);
+            assertThat(MemberNames.contextHelp(wikiText)).as(wikiText).isEqualTo(regexContextHelp(wikiText));
+        }
+    }
+
+    @Test
+    public void usages_are_memoized_per_notation() {
+        MemberNames.MethodUsage usage = MemberNames.methodUsage("clickOnButton",
+                Arrays.asList(TypeName.of(String.class)), false);
+        MemberNames.MethodUsage interposing = MemberNames.methodUsage("clickOnButton",
+                Arrays.asList(TypeName.of(String.class)), true);
+
+        assertThat(usage.getUsage()).isEqualTo("| click on button | [String] | ");
+        assertThat(usage.getContextHelp()).isEqualTo("click on button &lt;String&gt;");
+        assertThat(interposing.getUsage()).isEqualTo("| clickOnButton; | [java.lang.String] |");
+        assertThat(MemberNames.methodUsage("clickOnButton", Arrays.asList(TypeName.of(String.class)), false))
+                .isSameAs(usage);
+    }
+
+    private static String randomText(Random random) {
+        char[] chars = new char[random.nextInt(12)];
+        for (int c = 0; c < chars.length; c++) {
+            chars[c] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        }
+        return new String(chars);
+    }
+
+    private static String regexSplitCamelCase(String s) {
+        return s.replaceAll(
+                String.format("%s|%s|%s",
+                        "(?<=[A-Z])(?=[A-Z][a-z])",
+                        "(?<=[^A-Z])(?=[A-Z])",
+                        "(?<=[A-Za-z])(?=[^A-Za-z])"
+                ),
+                " "
+        ).toLowerCase();
+    }
+
+    private static String regexContextHelp(String wikiText) {
+        return wikiText.replaceAll("\\| \\[(\\w+)] \\|", "&lt;$1&gt;")
+                .replace("|", "")
+                .trim();
+    }
+}
@@ -0,0 +1,88 @@
+package nl.praegus.fitnesse.responders.query;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompletionIndexTest {
+    private final CompletionIndex index = CompletionIndex.build(
+            new JSONArray().put(new JSONObject().put("name", "log in with").put("contexthelp", "log in &lt;user&gt;")),
+            new JSONArray().put(new JSONObject().put("varName", "$orderId")),
+            Collections.singletonList(new JSONObject()
+                    .put("qualifiedName", "nl.praegus.Browser")
+                    .put("constructors", new JSONArray().put(member("browser", "browser")))
+                    .put("methods", new JSONArray()
+                            .put(member("click", "click &lt;String&gt;"))
+                            .put(member("click on", "click on &lt;String&gt;"))
+                            .put(member("double click on", "double click on &lt;String&gt;"))
+                            .put(member("log out", "log out")))));
+
+    @Test
+    public void word_prefix_matches_come_before_similar_names() {
+        assertThat(names(index.query("cli on", 2))).containsExactly("click on", "double click on");
+        assertThat(names(index.query("log", 10))).startsWith("log out", "log in with");
+    }
+
+    @Test
+    public void names_starting_with_the_query_rank_first() {
+        assertThat(names(index.query("click", 3))).containsExactly("click", "click on", "double click on");
+    }
+
+    @Test
+    public void results_describe_their_origin_and_are_limited() {
+        List<JSONObject> results = index.query("click", 1);
+
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).getString("kind")).isEqualTo("method");
+        assertThat(results.get(0).getString("class")).isEqualTo("nl.praegus.Browser");
+        assertThat(index.query("orderid", 5).get(0).getString("kind")).isEqualTo("variable");
+    }
+
+    @Test
+    public void similar_names_are_found_when_words_do_not_match() {
+        assertThat(names(index.query("dubble clik on", 10))).startsWith("double click on");
+    }
+
+    @Test
+    public void least_recently_used_indexes_are_evicted_beyond_their_estimated_size() {
+        CompletionIndexCache cache = new CompletionIndexCache(2 * index.getEstimatedBytes());
+        AtomicInteger builds = new AtomicInteger();
+        Supplier<CompletionIndex> builder = () -> {
+            builds.incrementAndGet();
+            return index;
+        };
+
+        cache.get("PageOne", builder);
+        cache.get("PageTwo", builder);
+        cache.get("PageOne", builder);
+        cache.get("PageThree", builder);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getBytes()).isEqualTo(2 * index.getEstimatedBytes());
+        cache.get("PageOne", builder);
+        assertThat(builds).hasValue(3);
+        cache.get("PageTwo", builder);
+        assertThat(builds).hasValue(4);
+        assertThat(cache.getEvictionCount()).isEqualTo(2);
+    }
+
+    private static JSONObject member(String readableName, String contextHelp) {
+        return new JSONObject().put("readableName", readableName).put("contexthelp", contextHelp);
+    }
+
+    private static List<String> names(List<JSONObject> results) {
+        List<String> names = new ArrayList<>();
+        for (JSONObject result : results) {
+            names.add(result.has("readableName") ? result.getString("readableName") : result.getString("name"));
+        }
+        return names;
+    }
+}
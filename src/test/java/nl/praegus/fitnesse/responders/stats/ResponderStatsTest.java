@@ -0,0 +1,68 @@
+package nl.praegus.fitnesse.responders.stats;
+
+import fitnesse.http.MockRequest;
+import fitnesse.http.SimpleResponse;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResponderStatsTest {
+
+    @Test
+    public void percentiles_are_taken_over_recent_values() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertThat(histogram.percentile(50)).isEqualTo(50);
+        assertThat(histogram.percentile(99)).isEqualTo(99);
+
+        for (int i = 0; i < Histogram.WINDOW_SIZE; i++) {
+            histogram.record(1000);
+        }
+        assertThat(histogram.percentile(50)).isEqualTo(1000);
+        assertThat(histogram.getCount()).isEqualTo(100 + Histogram.WINDOW_SIZE);
+    }
+
+    @Test
+    public void phases_are_summed_and_listed_in_server_timing_format() {
+        RequestTimings timings = new RequestTimings();
+        timings.add("render", 2_500_000);
+        timings.add("describe", 1_000_000);
+        timings.add("describe", 500_000);
+
+        assertThat(timings.serverTiming()).isEqualTo("render;dur=2.500, describe;dur=1.500");
+    }
+
+    @Test
+    public void streamed_phases_are_named_in_server_timing_without_duration() {
+        RequestTimings timings = new RequestTimings();
+        timings.add("render", 2_500_000);
+        timings.add("describe", 1_000_000);
+
+        assertThat(timings.serverTiming(Arrays.asList("describe", "write")))
+                .isEqualTo("render;dur=2.500, body;desc=\"describe write run while streaming, see stats\"");
+    }
+
+    @Test
+    public void stats_are_returned_as_json_in_milliseconds() throws Exception {
+        ResponderStats stats = new ResponderStats();
+        RequestTimings timings = new RequestTimings();
+        timings.add("scan", 3_000_000);
+        stats.record(timings, 4_000_000, 12, 2048);
+
+        JSONObject json = stats.toJson();
+
+        assertThat(json.getJSONObject("phases").getJSONObject("scan").getDouble("p95")).isEqualTo(3.0);
+        assertThat(json.getJSONObject("phases").getJSONObject(ResponderStats.TOTAL).getDouble("max")).isEqualTo(4.0);
+        assertThat(json.getJSONObject("classesScanned").getDouble("p50")).isEqualTo(12.0);
+
+        SimpleResponse response = (SimpleResponse) new StatsResponder().makeResponse(null, new MockRequest());
+        JSONObject served = new JSONObject(response.getContent());
+        assertThat(served.getJSONObject("caches").getJSONObject("pageResults").has("hits")).isTrue();
+    }
+}
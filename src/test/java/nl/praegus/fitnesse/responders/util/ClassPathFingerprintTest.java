@@ -0,0 +1,63 @@
+package nl.praegus.fitnesse.responders.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class ClassPathFingerprintTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void unchanged_watched_directory_is_not_listed_again() throws Exception {
+        File root = folder.newFolder("classes");
+        File fixtures = new File(root, "fixtures");
+        assertThat(new File(root, "other").mkdirs() && fixtures.mkdirs()).isTrue();
+        assertThat(new File(fixtures, "First.class").createNewFile()).isTrue();
+        assumeTrue(DirectoryWatcher.getInstance().watch(root));
+        List<String> classPath = Collections.singletonList(root.getPath());
+        String first = ClassPathFingerprint.of(classPath);
+        long listed = ClassPathFingerprint.getListedDirectoryCount();
+
+        DirectoryWatcher.getInstance().awaitPendingChanges(5000);
+
+        assertThat(ClassPathFingerprint.of(classPath)).isEqualTo(first);
+        assertThat(ClassPathFingerprint.getListedDirectoryCount()).isEqualTo(listed);
+    }
+
+    @Test
+    public void only_changed_package_of_watched_directory_is_listed_again() throws Exception {
+        File root = folder.newFolder("classes");
+        File fixtures = new File(root, "fixtures");
+        assertThat(new File(root, "other").mkdirs() && fixtures.mkdirs()).isTrue();
+        assertThat(new File(fixtures, "First.class").createNewFile()).isTrue();
+        assumeTrue(DirectoryWatcher.getInstance().watch(root));
+        List<String> classPath = Collections.singletonList(root.getPath());
+        String first = ClassPathFingerprint.of(classPath);
+        long listed = ClassPathFingerprint.getListedDirectoryCount();
+
+        assertThat(new File(fixtures, "Second.class").createNewFile()).isTrue();
+        DirectoryWatcher.getInstance().awaitPendingChanges(5000);
+
+        assertThat(ClassPathFingerprint.of(classPath)).isNotEqualTo(first);
+        assertThat(ClassPathFingerprint.getListedDirectoryCount()).isEqualTo(listed + 1);
+    }
+
+    @Test
+    public void missing_entry_changes_fingerprint_when_it_appears() throws Exception {
+        File jar = new File(folder.getRoot(), "fixtures.jar");
+        List<String> classPath = Collections.singletonList(jar.getPath());
+        String missing = ClassPathFingerprint.of(classPath);
+
+        assertThat(jar.createNewFile()).isTrue();
+
+        assertThat(ClassPathFingerprint.of(classPath)).isNotEqualTo(missing);
+    }
+}
@@ -0,0 +1,78 @@
+package nl.praegus.fitnesse.responders.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClassPathIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void jar_is_indexed_by_package() throws Exception {
+        ClassPathIndex index = ClassPathIndex.forEntry(new File("src/test/resources/dir with spaces/TestClass.jar"));
+
+        assertThat(index.isJar()).isTrue();
+        assertThat(index.getPackages()).containsExactly("nl.praegus.testclass");
+        assertThat(index.getClassNames("nl.praegus.testclass")).containsExactly("nl.praegus.testclass.Main");
+        assertThat(index.getClassNames("nl.praegus")).isEmpty();
+        assertThat(index.hasApidocs()).isFalse();
+    }
+
+    @Test
+    public void directory_is_indexed_by_package_without_inner_classes() throws Exception {
+        File root = folder.newFolder("classes");
+        File pkg = new File(root, "nl/praegus/fixtures");
+        assertThat(pkg.mkdirs()).isTrue();
+        assertThat(new File(pkg, "Browser.class").createNewFile()).isTrue();
+        assertThat(new File(pkg, "Browser$1.class").createNewFile()).isTrue();
+        assertThat(new File(pkg.getParentFile(), "Base.class").createNewFile()).isTrue();
+
+        ClassPathIndex index = ClassPathIndex.forEntry(root);
+
+        assertThat(index.isJar()).isFalse();
+        assertThat(index.getClassNames("nl.praegus.fixtures")).containsExactly("nl.praegus.fixtures.Browser");
+        assertThat(index.getClassNamesInPackageTree("nl.praegus"))
+                .containsExactly("nl.praegus.Base", "nl.praegus.fixtures.Browser");
+    }
+
+    @Test
+    public void directory_index_is_rebuilt_when_a_class_is_added() throws Exception {
+        File root = folder.newFolder("classes");
+        File pkg = new File(root, "fixtures");
+        assertThat(pkg.mkdirs()).isTrue();
+        assertThat(new File(pkg, "First.class").createNewFile()).isTrue();
+        ClassPathIndex first = ClassPathIndex.forEntry(root);
+
+        assertThat(new File(pkg, "Second.class").createNewFile()).isTrue();
+        assertThat(pkg.setLastModified(pkg.lastModified() + 2000)).isTrue();
+        DirectoryWatcher.getInstance().awaitPendingChanges(5000);
+
+        assertThat(ClassPathIndex.forEntry(root).getClassNames("fixtures"))
+                .containsExactly("fixtures.First", "fixtures.Second");
+        assertThat(ClassPathIndex.forEntry(root)).isNotSameAs(first);
+    }
+
+    @Test
+    public void apidocs_are_indexed_and_parsed_once() throws Exception {
+        File root = folder.newFolder("classes");
+        File apidocs = new File(root, "META-INF/apidocs");
+        assertThat(apidocs.mkdirs()).isTrue();
+        Files.write(new File(apidocs, "fixtures.Browser.json").toPath(),
+                "{\"publicMethods\": [], \"constructors\": []}".getBytes(StandardCharsets.UTF_8));
+
+        ClassPathIndex index = ClassPathIndex.forEntry(root);
+
+        assertThat(index.hasApidocs()).isTrue();
+        assertThat(index.hasApidocs("fixtures.Browser")).isTrue();
+        assertThat(index.getApidocs("fixtures.Browser").has("publicMethods")).isTrue();
+        assertThat(index.getApidocs("fixtures.Browser")).isSameAs(index.getApidocs("fixtures.Browser"));
+        assertThat(index.getApidocs("fixtures.Other")).isNull();
+    }
+}
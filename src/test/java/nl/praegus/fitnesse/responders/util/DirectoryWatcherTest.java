@@ -0,0 +1,152 @@
+package nl.praegus.fitnesse.responders.util;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.WatchService;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DirectoryWatcherTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final WatchService watchService = newWatchService();
+    private final DirectoryWatcher watcher = new DirectoryWatcher(watchService);
+
+    @After
+    public void closeWatchService() throws Exception {
+        watchService.close();
+    }
+
+    @Test
+    public void only_the_package_with_a_new_class_is_changed() throws Exception {
+        File root = folder.newFolder("classes");
+        File fixtures = mkdirs(root, "nl/praegus/fixtures");
+        mkdirs(root, "nl/praegus/other");
+        assertThat(watcher.watch(root)).isTrue();
+        long sequence = watcher.getSequence();
+
+        assertThat(new File(fixtures, "Browser.class").createNewFile()).isTrue();
+
+        assertThat(awaitChanges(root, sequence)).containsExactly(fixtures);
+        assertThat(watcher.getChangedSince(root, watcher.getSequence())).isEmpty();
+    }
+
+    @Test
+    public void new_package_directories_are_changed_and_watched() throws Exception {
+        File root = folder.newFolder("classes");
+        assertThat(watcher.watch(root)).isTrue();
+        long sequence = watcher.getSequence();
+
+        File fixtures = mkdirs(root, "fixtures/web");
+        Set<File> changed = awaitChanges(root, sequence);
+        assertThat(changed).contains(root);
+        sequence = watcher.getSequence();
+        assertThat(new File(fixtures, "Browser.class").createNewFile()).isTrue();
+
+        assertThat(awaitChanges(root, sequence)).containsExactly(fixtures);
+    }
+
+    @Test
+    public void removed_directory_has_to_be_read_again() throws Exception {
+        File root = folder.newFolder("classes");
+        assertThat(watcher.watch(root)).isTrue();
+        long sequence = watcher.getSequence();
+
+        assertThat(root.delete()).isTrue();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (watcher.getChangedSince(root, sequence) != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(watcher.getChangedSince(root, sequence)).isNull();
+        assertThat(watcher.getWatchedDirectoryCount()).isZero();
+    }
+
+    @Test
+    public void changes_are_collected_without_being_asked_for() throws Exception {
+        File root = folder.newFolder("classes");
+        File fixtures = mkdirs(root, "fixtures");
+        assertThat(watcher.watch(root)).isTrue();
+        long sequence = watcher.getSequence();
+
+        assertThat(new File(fixtures, "Browser.class").createNewFile()).isTrue();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (watcher.getChangedSince(root, sequence).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(watcher.getChangedSince(root, sequence)).containsExactly(fixtures);
+    }
+
+    @Test
+    public void changes_made_before_awaiting_are_collected_when_it_returns() throws Exception {
+        File root = folder.newFolder("classes");
+        File fixtures = mkdirs(root, "fixtures");
+        assertThat(watcher.watch(root)).isTrue();
+        long sequence = watcher.getSequence();
+
+        assertThat(new File(fixtures, "Browser.class").createNewFile()).isTrue();
+
+        assertThat(watcher.awaitPendingChanges(5000)).isTrue();
+        assertThat(watcher.getChangedSince(root, sequence)).containsExactly(fixtures);
+    }
+
+    @Test
+    public void forgotten_changes_have_to_be_read_again() throws Exception {
+        File root = folder.newFolder("classes");
+        File fixtures = mkdirs(root, "fixtures");
+        assertThat(watcher.watch(root)).isTrue();
+        long before = watcher.getSequence();
+        assertThat(new File(fixtures, "Browser.class").createNewFile()).isTrue();
+        assertThat(awaitChanges(root, before)).containsExactly(fixtures);
+        long after = watcher.getSequence();
+
+        watcher.forgetChangesUpTo(after);
+
+        assertThat(watcher.getChangedDirectoryCount()).isZero();
+        assertThat(watcher.getChangedSince(root, after)).isEmpty();
+        assertThat(watcher.getChangedSince(root, before)).isNull();
+    }
+
+    @Test
+    public void nothing_is_watched_without_watch_service() throws Exception {
+        DirectoryWatcher disabled = new DirectoryWatcher(null);
+        File root = folder.newFolder("classes");
+
+        assertThat(disabled.watch(root)).isFalse();
+        assertThat(disabled.getChangedSince(root, disabled.getSequence())).isNull();
+    }
+
+    private Set<File> awaitChanges(File root, long sequence) throws InterruptedException {
+        // file events are delivered asynchronously
+        long deadline = System.currentTimeMillis() + 5000;
+        watcher.awaitPendingChanges(5000);
+        Set<File> changed = watcher.getChangedSince(root, sequence);
+        while (changed.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            changed = watcher.getChangedSince(root, sequence);
+        }
+        return changed;
+    }
+
+    private static File mkdirs(File root, String path) {
+        File directory = new File(root, path);
+        assertThat(directory.mkdirs()).isTrue();
+        return directory;
+    }
+
+    private static WatchService newWatchService() {
+        try {
+            return FileSystems.getDefault().newWatchService();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
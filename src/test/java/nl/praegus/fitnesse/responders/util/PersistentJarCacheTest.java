@@ -0,0 +1,122 @@
+package nl.praegus.fitnesse.responders.util;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PersistentJarCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void content_is_read_back_for_the_same_jar_version() throws Exception {
+        File jar = folder.newFile("fixtures.jar");
+        PersistentJarCache cache = new PersistentJarCache(folder.newFolder("cache"));
+
+        cache.write(jar, FileFingerprint.of(jar), "index", new JSONObject().put("packages", "fixtures"));
+
+        assertThat(cache.read(jar, FileFingerprint.of(jar), "index").getString("packages")).isEqualTo("fixtures");
+        assertThat(cache.read(jar, FileFingerprint.of(jar), "classes")).isNull();
+        assertThat(new PersistentJarCache(new File(folder.getRoot(), "cache"))
+                .read(jar, FileFingerprint.of(jar), "index")).isNotNull();
+    }
+
+    @Test
+    public void content_is_ignored_once_the_jar_changed() throws Exception {
+        File jar = folder.newFile("fixtures.jar");
+        PersistentJarCache cache = new PersistentJarCache(folder.newFolder("cache"));
+        cache.write(jar, FileFingerprint.of(jar), "index", new JSONObject());
+
+        Files.write(jar.toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(cache.read(jar, FileFingerprint.of(jar), "index")).isNull();
+    }
+
+    @Test
+    public void unreadable_content_is_ignored() throws Exception {
+        File jar = folder.newFile("fixtures.jar");
+        File directory = folder.newFolder("cache");
+        PersistentJarCache cache = new PersistentJarCache(directory);
+        cache.write(jar, FileFingerprint.of(jar), "index", new JSONObject());
+
+        for (File file : directory.listFiles()) {
+            Files.write(file.toPath(), "{truncated".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(cache.read(jar, FileFingerprint.of(jar), "index")).isNull();
+    }
+
+    @Test
+    public void appended_parts_are_merged_and_compacted() throws Exception {
+        File jar = folder.newFile("fixtures.jar");
+        File directory = folder.newFolder("cache");
+        PersistentJarCache cache = new PersistentJarCache(directory);
+        cache.write(jar, FileFingerprint.of(jar), "classes", new JSONObject()
+                .put("default", new JSONObject().put("fixtures.First", 1)));
+
+        for (int i = 0; i < 40; i++) {
+            cache.append(jar, FileFingerprint.of(jar), "classes", new JSONObject()
+                    .put("default", new JSONObject().put("fixtures.Class" + i, i)));
+        }
+
+        JSONObject classes = cache.read(jar, FileFingerprint.of(jar), "classes").getJSONObject("default");
+        assertThat(classes.keySet()).hasSize(41).contains("fixtures.First", "fixtures.Class39");
+        assertThat(directory.listFiles()).hasSizeLessThanOrEqualTo(16);
+    }
+
+    @Test
+    public void parts_of_an_earlier_jar_version_are_removed() throws Exception {
+        File jar = folder.newFile("fixtures.jar");
+        File directory = folder.newFolder("cache");
+        PersistentJarCache cache = new PersistentJarCache(directory);
+        cache.append(jar, FileFingerprint.of(jar), "classes", new JSONObject());
+        cache.append(jar, FileFingerprint.of(jar), "classes", new JSONObject());
+
+        Files.write(jar.toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+        cache.append(jar, FileFingerprint.of(jar), "classes", new JSONObject().put("fixtures.First", 1));
+
+        assertThat(directory.listFiles()).hasSize(1);
+        assertThat(cache.read(jar, FileFingerprint.of(jar), "classes").has("fixtures.First")).isTrue();
+    }
+
+    @Test
+    public void files_of_removed_and_replaced_jars_are_pruned() throws Exception {
+        File kept = folder.newFile("kept.jar");
+        File replaced = folder.newFile("replaced.jar");
+        File removed = folder.newFile("removed.jar");
+        File directory = folder.newFolder("cache");
+        PersistentJarCache cache = new PersistentJarCache(directory);
+        for (File jar : new File[]{kept, replaced, removed}) {
+            cache.write(jar, FileFingerprint.of(jar), "index", new JSONObject());
+            cache.append(jar, FileFingerprint.of(jar), "classes", new JSONObject());
+        }
+        File unrelated = new File(directory, "notes.txt");
+        Files.write(unrelated.toPath(), "keep".getBytes(StandardCharsets.UTF_8));
+
+        Files.write(replaced.toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+        assertThat(removed.delete()).isTrue();
+        cache.prune();
+
+        assertThat(directory.listFiles()).hasSize(3).contains(unrelated);
+        assertThat(cache.read(kept, FileFingerprint.of(kept), "index")).isNotNull();
+        assertThat(cache.read(kept, FileFingerprint.of(kept), "classes")).isNotNull();
+    }
+
+    @Test
+    public void nothing_is_kept_without_a_directory() throws Exception {
+        File jar = folder.newFile("fixtures.jar");
+        PersistentJarCache cache = new PersistentJarCache(null);
+
+        cache.write(jar, FileFingerprint.of(jar), "index", new JSONObject());
+
+        assertThat(cache.isEnabled()).isFalse();
+        assertThat(cache.read(jar, FileFingerprint.of(jar), "index")).isNull();
+    }
+}
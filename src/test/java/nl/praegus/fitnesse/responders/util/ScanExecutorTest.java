@@ -0,0 +1,54 @@
+package nl.praegus.fitnesse.responders.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ScanExecutorTest {
+
+    @Test
+    public void results_are_in_order_of_items() {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            items.add(i);
+        }
+
+        List<Integer> results = ScanExecutor.map(items, i -> {
+            sleep((50 - i) % 7);
+            return i * 2;
+        });
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(results.get(i)).isEqualTo(i * 2);
+        }
+    }
+
+    @Test
+    public void nested_work_does_not_deadlock() {
+        List<List<String>> results = ScanExecutor.map(Arrays.asList("a", "b", "c"),
+                s -> ScanExecutor.map(Arrays.asList(1, 2), i -> s + i));
+
+        assertThat(results).containsExactly(
+                Arrays.asList("a1", "a2"), Arrays.asList("b1", "b2"), Arrays.asList("c1", "c2"));
+    }
+
+    @Test
+    public void runtime_exceptions_are_rethrown() {
+        assertThatThrownBy(() -> ScanExecutor.map(Arrays.asList(1, 2), i -> {
+            throw new IllegalArgumentException("item " + i);
+        })).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package nl.praegus.fitnesse.responders.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlightTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountDownLatch computing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger computations = new AtomicInteger();
+
+    @Test
+    public void concurrent_callers_share_one_computation() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<>(10_000);
+        Future<String> first = executor.submit(() -> flights.get("page", this::slowValue));
+        computing.await();
+        Future<String> second = executor.submit(() -> flights.get("page", this::slowValue));
+        Future<String> other = executor.submit(() -> flights.get("other page", () -> "other"));
+
+        awaitWaiting(second);
+        release.countDown();
+
+        assertThat(first.get()).isEqualTo("value 1");
+        assertThat(second.get()).isEqualTo("value 1");
+        assertThat(other.get()).isEqualTo("other");
+        assertThat(computations).hasValue(1);
+        assertThat(flights.getCoalescedCount()).isEqualTo(1);
+        assertThat(flights.get("page", this::slowValue)).isEqualTo("value 2");
+    }
+
+    @Test
+    public void callers_compute_themselves_after_waiting_too_long() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<>(10);
+        Future<String> first = executor.submit(() -> flights.get("page", this::slowValue));
+        computing.await();
+
+        assertThat(flights.get("page", () -> "own value")).isEqualTo("own value");
+        assertThat(flights.getTimeoutCount()).isEqualTo(1);
+        release.countDown();
+        assertThat(first.get()).isEqualTo("value 1");
+    }
+
+    @Test
+    public void failures_are_not_shared() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<>(10_000);
+        Future<String> first = executor.submit(() -> flights.get("page", () -> {
+            slowValue();
+            throw new IllegalStateException("broken");
+        }));
+        computing.await();
+        Future<String> second = executor.submit(() -> flights.get("page", () -> "own value"));
+
+        awaitWaiting(second);
+        release.countDown();
+
+        assertThatThrownBy(first::get).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(second.get()).isEqualTo("own value");
+        assertThat(flights.getCoalescedCount()).isZero();
+    }
+
+    private String slowValue() {
+        int computation = computations.incrementAndGet();
+        computing.countDown();
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "value " + computation;
+    }
+
+    private static void awaitWaiting(Future<String> caller) throws InterruptedException {
+        // there is no way to observe a caller waiting, give it time to get there
+        Thread.sleep(100);
+        assertThat(caller.isDone()).isFalse();
+    }
+}
@@ -0,0 +1,60 @@
+package nl.praegus.fitnesse.responders.warmup;
+
+import fitnesse.FitNesseContext;
+import fitnesse.testutil.FitNesseUtil;
+import fitnesse.wiki.PageData;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.WikiPage;
+import fitnesse.wiki.WikiPageUtil;
+import nl.praegus.fitnesse.responders.cache.ClassMetadataCache;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MetadataWarmUpTest {
+
+    @Test
+    public void metadata_of_classes_imported_on_test_pages_is_cached() throws Exception {
+        WikiPage root = FitNesseUtil.makeTestContext().getRootPage();
+        WikiPageUtil.addPage(root, PathParser.parse("SuitePage"),
+                "!path " + new File("target/classes").getAbsolutePath() + "\n");
+        testPage(WikiPageUtil.addPage(root, PathParser.parse("SuitePage.TestPage"),
+                "|import|\n|nl.praegus.fitnesse.responders.metadata|\n"));
+        WikiPageUtil.addPage(root, PathParser.parse("SuitePage.NoTestPage"), "|import|\n|nl.praegus.other|\n");
+        ClassMetadataCache.clear();
+
+        MetadataWarmUp warmUp = new MetadataWarmUp(root, Arrays.asList("SuitePage", "MissingSuite"));
+        warmUp.run();
+
+        assertThat(warmUp.getWarmedUpPages()).isEqualTo(1);
+        assertThat(ClassMetadataCache.size()).isPositive();
+    }
+
+    @Test
+    public void suites_of_the_context_are_warmed_up_in_the_background() throws Exception {
+        FitNesseContext context = FitNesseUtil.makeTestContext();
+        WikiPage root = context.getRootPage();
+        WikiPageUtil.addPage(root, PathParser.parse("SuitePage"),
+                "!path " + new File("target/classes").getAbsolutePath() + "\n");
+        testPage(WikiPageUtil.addPage(root, PathParser.parse("SuitePage.TestPage"),
+                "|import|\n|nl.praegus.fitnesse.responders.metadata|\n"));
+        ClassMetadataCache.clear();
+
+        assertThat(MetadataWarmUp.start(context)).isNull();
+        context.getProperties().setProperty(MetadataWarmUp.SUITES_PROPERTY, " SuitePage, ");
+        Thread warmUp = MetadataWarmUp.start(context);
+        warmUp.join(30000);
+
+        assertThat(warmUp.isDaemon()).isTrue();
+        assertThat(ClassMetadataCache.size()).isPositive();
+    }
+
+    private static void testPage(WikiPage page) {
+        PageData data = page.getData();
+        data.setAttribute("Test", "true");
+        page.commit(data);
+    }
+}
@@ -0,0 +1,66 @@
+package nl.praegus.fitnesse.responders.wiki;
+
+import fitnesse.testutil.FitNesseUtil;
+import fitnesse.wiki.PageData;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.WikiPage;
+import fitnesse.wiki.WikiPageUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PageFingerprintTest {
+    private WikiPage root;
+    private WikiPage testPage;
+
+    @Before
+    public void setUp() throws Exception {
+        root = FitNesseUtil.makeTestContext().getRootPage();
+        WikiPageUtil.addPage(root, PathParser.parse("SuitePage"), "!path lib/*.jar");
+        WikiPageUtil.addPage(root, PathParser.parse("SuitePage.ScenarioLibrary"), "|scenario|log in|");
+        WikiPageUtil.addPage(root, PathParser.parse("SharedTables"), "|import|\n|nl.praegus|");
+        testPage = WikiPageUtil.addPage(root, PathParser.parse("SuitePage.TestPage"),
+                "!include -seamless .SharedTables\n|script|");
+    }
+
+    @Test
+    public void fingerprint_is_stable() {
+        assertThat(PageFingerprint.of(testPage)).isEqualTo(PageFingerprint.of(testPage));
+    }
+
+    @Test
+    public void fingerprint_changes_with_page_content() {
+        assertChangesWhenEdited(testPage);
+    }
+
+    @Test
+    public void fingerprint_changes_with_ancestor_and_inherited_pages() {
+        assertChangesWhenEdited(testPage.getParent());
+        assertChangesWhenEdited(testPage.getParent().getChildPage("ScenarioLibrary"));
+    }
+
+    @Test
+    public void fingerprint_changes_with_included_pages() {
+        assertChangesWhenEdited(root.getChildPage("SharedTables"));
+    }
+
+    @Test
+    public void unrelated_pages_do_not_change_the_fingerprint() {
+        String before = PageFingerprint.of(testPage);
+
+        WikiPageUtil.addPage(root, PathParser.parse("OtherPage"), "|import|\n|other|");
+
+        assertThat(PageFingerprint.of(testPage)).isEqualTo(before);
+    }
+
+    private void assertChangesWhenEdited(WikiPage page) {
+        String before = PageFingerprint.of(testPage);
+
+        PageData data = page.getData();
+        data.setContent(data.getContent() + "\n|note|");
+        page.commit(data);
+
+        assertThat(PageFingerprint.of(testPage)).isNotEqualTo(before);
+    }
+}
@@ -0,0 +1,95 @@
+package nl.praegus.fitnesse.responders.wiki;
+
+import fitnesse.testutil.FitNesseUtil;
+import fitnesse.wiki.PageData;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.WikiPage;
+import fitnesse.wiki.WikiPageUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ScenarioLibraryIndexTest {
+    private final ScenarioLibraryIndex index = new ScenarioLibraryIndex(2);
+    private WikiPage root;
+    private WikiPage library;
+
+    @Before
+    public void setUp() throws Exception {
+        root = FitNesseUtil.makeTestContext().getRootPage();
+        WikiPageUtil.addPage(root, PathParser.parse("SharedScenarios"), "|scenario|log out|\n|click|logout|\n");
+        library = WikiPageUtil.addPage(root, PathParser.parse("SuitePage.ScenarioLibrary"),
+                "|scenario|log in _|user|\n|enter|@user|\n\n!include .SharedScenarios\n");
+    }
+
+    @Test
+    public void tables_are_read_again_once_the_library_is_saved() {
+        assertThat(index.getTables(library)).hasSize(2);
+        assertThat(index.getTables(library)).hasSize(2);
+        assertThat(index.getMissCount()).isEqualTo(1);
+        assertThat(index.getHitCount()).isEqualTo(1);
+
+        setContent(library, "|scenario|log in _|user|\n|enter|@user|\n\n|scenario|wait|\n|pause|\n");
+        index.pageChanged(library);
+
+        List<SourceTable> tables = index.getTables(library);
+        assertThat(tables).hasSize(2);
+        assertThat(tables.get(1).getCellContents(1, 0)).isEqualTo("wait");
+        assertThat(index.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void saving_an_included_page_evicts_the_library() {
+        index.getTables(library);
+
+        index.pageChanged(library.getParent().getParent().getChildPage("SuitePage"));
+        assertThat(index.size()).isEqualTo(1);
+
+        index.pageChanged(library.getParent().getParent().getChildPage("SharedScenarios"));
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    public void library_is_read_again_when_an_included_page_was_removed() {
+        index.getTables(library);
+
+        root.removeChildPage("SharedScenarios");
+
+        assertThat(index.getTables(library)).hasSize(1);
+        assertThat(index.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void least_recently_used_libraries_are_evicted() {
+        WikiPage other = WikiPageUtil.addPage(root, PathParser.parse("OtherSuite.ScenarioLibrary"), "");
+        WikiPage third = WikiPageUtil.addPage(root, PathParser.parse("ThirdSuite.ScenarioLibrary"), "");
+
+        index.getTables(library);
+        index.getTables(other);
+        index.getTables(library);
+        index.getTables(third);
+
+        assertThat(index.size()).isEqualTo(2);
+        index.getTables(library);
+        assertThat(index.getHitCount()).isEqualTo(2);
+        index.getTables(other);
+        assertThat(index.getMissCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void libraries_that_need_rendering_have_no_tables() {
+        setContent(library, "|scenario|log in ${user}|\n");
+
+        assertThat(index.getTables(library)).isNull();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    private static void setContent(WikiPage page, String content) {
+        PageData data = page.getData();
+        data.setContent(content);
+        page.commit(data);
+    }
+}
@@ -0,0 +1,104 @@
+package nl.praegus.fitnesse.responders.wiki;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TableTemplatesTest {
+    private final TableTemplates templates = new TableTemplates();
+
+    @Test
+    public void parameters_of_called_templates_are_included_in_order() {
+        templates.add(template("order", row("place order", "@{product}"), row("$id=", "order id")));
+
+        TableTemplates.Parameters parameters = templates.add(
+                template("pay", row("order"), row("pay", "@{amount}", "for", "@{product}")));
+
+        assertThat(parameters.getInputs()).containsExactly("product", "amount");
+        assertThat(parameters.getOutputs()).containsExactly("id");
+    }
+
+    @Test
+    public void templates_only_see_the_templates_defined_before_them() {
+        TableTemplates.Parameters first = templates.add(template("first", row("@{x}"), row("second"), row("first")));
+        templates.add(template("second", row("$y=", "get")));
+        templates.add(template("first", row("@{old}")));
+        TableTemplates.Parameters third = templates.add(template("third", row("first")));
+
+        assertThat(first.getInputs()).containsExactly("x");
+        assertThat(first.getOutputs()).isEmpty();
+        assertThat(third.getInputs()).containsExactly("old");
+        assertThat(templates.getCycles()).isEmpty();
+    }
+
+    @Test
+    public void called_templates_see_the_templates_defined_before_the_caller() {
+        templates.add(template("a", row("@{x}"), row("b")));
+        templates.add(template("b", row("$y=", "get")));
+
+        TableTemplates.Parameters c = templates.add(template("c", row("a")));
+
+        assertThat(c.getInputs()).containsExactly("x");
+        assertThat(c.getOutputs()).containsExactly("y");
+    }
+
+    @Test
+    public void templates_calling_themselves_are_reported() {
+        templates.add(template("a", row("@{x}"), row("b;")));
+        templates.add(template("b", row("$y=", "get"), row("a")));
+        templates.add(template("self", row("@{z}")));
+        templates.add(template("self", row("self"), row("@{z}")));
+
+        TableTemplates.Parameters user = templates.add(template("user", row("a"), row("self")));
+
+        assertThat(user.getInputs()).containsExactly("x", "z");
+        assertThat(user.getOutputs()).containsExactly("y");
+        assertThat(templates.getCycles()).containsExactly("a -> b -> a", "self -> self");
+    }
+
+    @Test
+    public void templates_in_a_cycle_get_the_same_parameters_in_either_order() {
+        for (boolean aFirst : new boolean[]{true, false}) {
+            TableTemplates cyclic = new TableTemplates();
+            cyclic.add(template("a", row("@{x}"), row("b;")));
+            cyclic.add(template("b", row("$y=", "get"), row("a"), row("c")));
+            cyclic.add(template("c", row("use", "@{w}")));
+
+            TableTemplates.Parameters first = cyclic.add(template("first", row(aFirst ? "a" : "b")));
+            TableTemplates.Parameters second = cyclic.add(template("second", row(aFirst ? "b" : "a")));
+
+            assertThat(first.getInputs()).containsExactlyInAnyOrder("x", "w");
+            assertThat(first.getOutputs()).containsExactly("y");
+            assertThat(second.getInputs()).containsExactlyInAnyOrder("x", "w");
+            assertThat(second.getOutputs()).containsExactly("y");
+            assertThat(cyclic.getCycles()).hasSize(1);
+        }
+    }
+
+    @Test
+    public void long_chains_are_resolved_once_per_template() {
+        TableTemplates.Parameters last = null;
+        for (int i = 0; i < 2000; i++) {
+            last = templates.add(i == 0
+                    ? template("t0", row("@{first}"))
+                    : template("t" + i, row("t" + (i - 1)), row("@{p" + i + "}")));
+        }
+
+        assertThat(last.getInputs()).hasSize(2000).startsWith("first", "p1");
+    }
+
+    private static SourceTable template(String name, List<String>... rows) {
+        List<List<String>> table = new ArrayList<>();
+        table.add(Arrays.asList("table template", name));
+        table.addAll(Arrays.asList(rows));
+        return new SourceTable(table);
+    }
+
+    private static List<String> row(String... cells) {
+        return Arrays.asList(cells);
+    }
+}
@@ -0,0 +1,129 @@
+package nl.praegus.fitnesse.responders.wiki;
+
+import fitnesse.FitNesseContext;
+import fitnesse.responders.WikiPageResponder;
+import fitnesse.testsystems.slim.HtmlTableScanner;
+import fitnesse.testsystems.slim.Table;
+import fitnesse.testsystems.slim.TableScanner;
+import fitnesse.testutil.FitNesseUtil;
+import fitnesse.wiki.PageData;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.WikiPage;
+import fitnesse.wiki.WikiPageUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WikiSourceTableScannerTest {
+    private FitNesseContext context;
+    private WikiPage root;
+
+    @Before
+    public void setUp() throws Exception {
+        context = FitNesseUtil.makeTestContext();
+        root = context.getRootPage();
+        WikiPageUtil.addPage(root, PathParser.parse("SuitePage"), "!define TEST_SYSTEM {slim}\n!contents -R2");
+        WikiPageUtil.addPage(root, PathParser.parse("SuitePage.ScenarioLibrary"),
+                "|scenario|log in _ with _|user, password|\n|enter|@user|\n\n"
+                        + "|table template|order|\n|place order|@{product}|\n|$id=|order id|\n");
+        WikiPageUtil.addPage(root, PathParser.parse("SuitePage.SetUp"), "!|import|\n|nl.praegus.fixtures|\n");
+        WikiPageUtil.addPage(root, PathParser.parse("SharedTables"), "-|library|\n|nl.praegus.Library|\n");
+        WikiPageUtil.addPage(root, PathParser.parse("SharedTables.NestedTables"),
+                "|looping scenario|repeat _|times|\n|note|again|\n");
+    }
+
+    @Test
+    public void source_tables_equal_rendered_tables() {
+        WikiPage page = testPage("!include -seamless .SharedTables\n"
+                + "!*** Details\n"
+                + "!include -c .SharedTables.NestedTables\n"
+                + "***!\n"
+                + "!1 Orders\n"
+                + "|script|\n"
+                + "|$product=|echo|pizza \"quattro\" 'stagioni'|\n"
+                + "|check|total|12.50|\n"
+                + "!|table template|cancel|\n"
+                + "|cancel|@{id}|\n"
+                + "|order|\n"
+                + "|product|id?|\n"
+                + "|pizza|$id=|\n");
+
+        WikiSourceTableScanner scanner = WikiSourceTableScanner.scan(page);
+
+        assertThat(scanner).isNotNull();
+        assertThat(cells(scanner)).isEqualTo(relevantCells(new HtmlTableScanner(render(page))));
+        assertThat(scanner.getTableCount()).isEqualTo(7);
+    }
+
+    @Test
+    public void pages_that_are_no_test_page_are_not_decorated() {
+        WikiPage page = root.getChildPage("SharedTables");
+
+        assertThat(cells(WikiSourceTableScanner.scan(page))).isEqualTo(relevantCells(new HtmlTableScanner(render(page))));
+    }
+
+    @Test
+    public void pages_that_need_rendering_are_not_scanned_from_source() {
+        assertThat(WikiSourceTableScanner.scan(testPage("|scenario|log in ${user}|\n"))).isNull();
+        assertThat(WikiSourceTableScanner.scan(testPage("|scenario|open FrontPage|\n"))).isNull();
+        assertThat(WikiSourceTableScanner.scan(testPage("|script|\n|$x=|''bold''|\n"))).isNull();
+        assertThat(WikiSourceTableScanner.scan(testPage("{{{\n|import|\n|a.b|\n}}}\n"))).isNull();
+        assertThat(WikiSourceTableScanner.scan(testPage("!define tables (\n|import|\n|a.b|\n)\n"))).isNull();
+    }
+
+    @Test
+    public void other_tables_do_not_need_to_be_plain() {
+        WikiPage page = testPage("|script|BrowserTest|\n|open|http://example.com|\n\n|import|\n|a.b|\n");
+
+        assertThat(cells(WikiSourceTableScanner.scan(page))).isEqualTo(relevantCells(new HtmlTableScanner(render(page))));
+    }
+
+    private WikiPage testPage(String content) {
+        WikiPage page = WikiPageUtil.addPage(root, PathParser.parse("SuitePage.TestPage"), content);
+        PageData data = page.getData();
+        data.setAttribute("Test", "true");
+        page.commit(data);
+        return page;
+    }
+
+    private String render(WikiPage page) {
+        return new WikiPageResponder().makeHtml(context, page);
+    }
+
+    private static List<List<List<String>>> relevantCells(TableScanner<? extends Table> scanner) {
+        List<List<List<String>>> tables = new ArrayList<>();
+        for (List<List<String>> table : cells(scanner)) {
+            boolean relevant = Arrays.asList("import", "library", "scenario", "looping scenario", "table template")
+                    .contains(table.get(0).get(0).toLowerCase());
+            for (List<String> row : table) {
+                relevant |= row.get(0).matches("\\$\\S+=");
+            }
+            if (relevant) {
+                tables.add(table);
+            }
+        }
+        return tables;
+    }
+
+    private static List<List<List<String>>> cells(TableScanner<? extends Table> scanner) {
+        List<List<List<String>>> tables = new ArrayList<>();
+        for (int i = 0; i < scanner.getTableCount(); i++) {
+            Table table = scanner.getTable(i);
+            List<List<String>> rows = new ArrayList<>();
+            for (int row = 0; row < table.getRowCount(); row++) {
+                List<String> cells = new ArrayList<>();
+                for (int col = 0; col < table.getColumnCountInRow(row); col++) {
+                    cells.add(table.getCellContents(col, row));
+                }
+                rows.add(cells);
+            }
+            tables.add(rows);
+        }
+        return tables;
+    }
+}